@@ -0,0 +1,116 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Exception;
+import io.cucumber.messages.types.PickleTable;
+import io.cucumber.messages.types.PickleTableCell;
+import io.cucumber.messages.types.PickleTableRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats data tables and stack traces in isolation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatterBenchmark {
+
+    // More than the render cache holds, so every stack trace is rendered
+    private static final int DISTINCT_STACK_TRACES = 128;
+
+    @Param({"10", "1000"})
+    public int tableRows;
+
+    @Param({"none", "cucumber"})
+    public String theme;
+
+    private LineBuilder lineBuilder;
+    private PickleTable table;
+    private PickleTableFormatter tableFormatter;
+    private ExceptionFormatter exceptionFormatter;
+    private ExceptionFormatter foldingExceptionFormatter;
+    private final List<Exception> exceptions = new ArrayList<>();
+    private int nextException;
+
+    @Setup
+    public void setUp() {
+        lineBuilder = new LineBuilder("cucumber".equals(theme) ? Theme.cucumber() : Theme.none(), false);
+        List<PickleTableRow> rows = new ArrayList<>();
+        for (int i = 0; i < tableRows; i++) {
+            rows.add(new PickleTableRow(List.of(
+                    new PickleTableCell("row " + i),
+                    new PickleTableCell("value " + i * 31),
+                    new PickleTableCell(i % 2 == 0 ? "even" : "odd"))));
+        }
+        table = new PickleTable(rows);
+        tableFormatter = PickleTableFormatter.builder().build();
+        exceptionFormatter = ExceptionFormatter.builder().build();
+        foldingExceptionFormatter = ExceptionFormatter.builder()
+                .excludeFramesOf(List.of("org.junit", "io.cucumber.core", "jdk.internal", "java.lang.reflect"))
+                .build();
+        for (int i = 0; i < DISTINCT_STACK_TRACES; i++) {
+            exceptions.add(new Exception("java.lang.AssertionError", "expected " + i, stackTrace(i)));
+        }
+    }
+
+    private static String stackTrace(int i) {
+        StringBuilder stackTrace = new StringBuilder("java.lang.AssertionError: expected " + i + "\n");
+        stackTrace.append("\tat com.example.Steps.check(Steps.java:").append(i).append(")\n");
+        for (int frame = 0; frame < 40; frame++) {
+            stackTrace.append(frame % 3 == 0
+                    ? "\tat java.base/jdk.internal.reflect.DirectMethodHandleAccessor.invoke(DirectMethodHandleAccessor.java:103)\n"
+                    : "\tat io.cucumber.core.runner.Runner.run(Runner.java:" + frame + ")\n");
+        }
+        return stackTrace.toString();
+    }
+
+    @Benchmark
+    public LineBuilder formatTable() {
+        lineBuilder.reset();
+        tableFormatter.formatTo(table, 6, lineBuilder);
+        return lineBuilder;
+    }
+
+    @Benchmark
+    public LineBuilder formatStackTrace() {
+        lineBuilder.reset();
+        exceptionFormatter.formatTo(nextException(), 6, lineBuilder);
+        return lineBuilder;
+    }
+
+    @Benchmark
+    public LineBuilder formatFoldedStackTrace() {
+        lineBuilder.reset();
+        foldingExceptionFormatter.formatTo(nextException(), 6, lineBuilder);
+        return lineBuilder;
+    }
+
+    @Benchmark
+    public LineBuilder replayStackTrace() {
+        lineBuilder.reset();
+        exceptionFormatter.formatTo(exceptions.get(0), 6, lineBuilder);
+        return lineBuilder;
+    }
+
+    private Exception nextException() {
+        Exception exception = exceptions.get(nextException);
+        nextException = (nextException + 1) % DISTINCT_STACK_TRACES;
+        return exception;
+    }
+}
@@ -0,0 +1,121 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.prettyformatter.WriterBenchmark.CountingOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import static io.cucumber.messages.types.TestStepResultStatus.FAILED;
+import static io.cucumber.messages.types.TestStepResultStatus.PASSED;
+import static io.cucumber.prettyformatter.Theme.Element.LOCATION;
+import static io.cucumber.prettyformatter.Theme.Element.STEP;
+import static io.cucumber.prettyformatter.Theme.Element.STEP_ARGUMENT;
+import static io.cucumber.prettyformatter.Theme.Element.STEP_KEYWORD;
+import static io.cucumber.prettyformatter.Theme.Element.STEP_TEXT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Builds and writes step lines, and measures the width of text.
+ * <p>
+ * The {@code bytes} counter reports the number of bytes written per second,
+ * compare it with and without {@code compactAnsi} to see the effect of
+ * compaction on the size of the output.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LineBuilderBenchmark {
+
+    @Param({"none", "plain", "cucumber"})
+    public String theme;
+
+    @Param({"false", "true"})
+    public boolean compactAnsi;
+
+    @Param({"ascii", "cjk", "emoji", "combining"})
+    public String text;
+
+    private LineBuilder lineBuilder;
+    private CountingOutputStream out;
+    private PrintWriter writer;
+    private String stepText;
+
+    @Setup
+    public void setUp() {
+        Theme theme = switch (this.theme) {
+            case "plain" -> Theme.plain();
+            case "cucumber" -> Theme.cucumber();
+            default -> Theme.none();
+        };
+        lineBuilder = new LineBuilder(theme, compactAnsi);
+        out = new CountingOutputStream();
+        writer = new PrintWriter(new OutputStreamWriter(out, UTF_8));
+        stepText = switch (text) {
+            case "cjk" -> "ユーザーが「こんにちは」と入力する";
+            case "emoji" -> "the user sends 👍 and 🎉 to the chat";
+            case "combining" -> "the user types café and naïve";
+            default -> "the user types hello and world";
+        };
+    }
+
+    @Benchmark
+    public void writeStepLines(Counters counters) {
+        long before = out.count;
+        for (int i = 0; i < 10; i++) {
+            lineBuilder.indent(4)
+                    .begin(STEP, i % 5 == 0 ? FAILED : PASSED)
+                    .append(STEP_KEYWORD, "Given ")
+                    .begin(STEP_TEXT)
+                    .append(stepText)
+                    .end(STEP_TEXT)
+                    .append(" ")
+                    .append(STEP_ARGUMENT, "\"42\"")
+                    .end(STEP, i % 5 == 0 ? FAILED : PASSED)
+                    .addPaddingUpTo(60)
+                    .append(LOCATION, "# com.example.Steps.step(java.lang.String)")
+                    .newLine();
+        }
+        lineBuilder.writeTo(writer);
+        writer.flush();
+        counters.bytes += out.count - before;
+    }
+
+    @Benchmark
+    public int measureDisplayWidth() {
+        // Measuring a range is not cached
+        return DisplayWidth.of(stepText, 0, stepText.length());
+    }
+
+    @Benchmark
+    public int measureCachedDisplayWidth() {
+        return DisplayWidth.of(stepText);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static io.cucumber.prettyformatter.MessagesToProgressWriter.ProgressFeature.USE_WORKER_LANES;
+
+/**
+ * Replays a sample through the pretty, summary and progress writers and
+ * measures the memory they retain before they are closed.
+ * <p>
+ * Reports the size of the objects reachable from the writers as
+ * {@code retainedBytes}. Objects reachable from several writers, like the
+ * messages, are counted once. The object graph is walked with JOL, so unlike
+ * the heap usage the size does not depend on the garbage collector.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RetainedSizeBenchmark {
+
+    @Param({"minimal", "attachments", "data-tables", "examples-tables", "stack-traces", "all-statuses"})
+    public String sample;
+
+    @Param({"1", "100"})
+    public int amplification;
+
+    @Param({"separate", "composite"})
+    public String writer;
+
+    private List<Envelope> envelopes;
+
+    @Setup
+    public void readSample() throws IOException {
+        envelopes = Samples.read(sample, amplification);
+    }
+
+    @Benchmark
+    public void retain(Counters counters) throws IOException {
+        OutputStream out = OutputStream.nullOutputStream();
+        List<MessagesWriter> writers = switch (writer) {
+            case "separate" -> List.of(
+                    MessagesToPrettyWriter.builder().build(out),
+                    MessagesToSummaryWriter.builder().build(out),
+                    MessagesToProgressWriter.builder().feature(USE_WORKER_LANES, true).build(out));
+            case "composite" -> List.of(CompositeMessagesWriter.builder()
+                    .pretty(MessagesToPrettyWriter.builder(), out)
+                    .summary(MessagesToSummaryWriter.builder(), out)
+                    .progress(MessagesToProgressWriter.builder().feature(USE_WORKER_LANES, true), out)
+                    .build());
+            default -> throw new IllegalArgumentException("Unknown writer " + writer);
+        };
+        try {
+            for (Envelope envelope : envelopes) {
+                for (MessagesWriter writer : writers) {
+                    writer.write(envelope);
+                }
+            }
+            counters.retainedBytes = GraphLayout.parseInstance(writers.toArray()).totalSize();
+        } finally {
+            writers.forEach(MessagesWriter::close);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the samples from the {@code testdata} directory.
+ * <p>
+ * Samples can be amplified. The test cases of an amplified sample are
+ * executed several times, each execution with its own test case started id.
+ */
+final class Samples {
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    // Messages that belong to the execution of a test case
+    private static final Pattern TEST_CASE_MESSAGE = Pattern.compile(
+            "^\\{\"(testCaseStarted|testStepStarted|testStepFinished|testCaseFinished|attachment)\":.*\"(id|testCaseStartedId)\":\"[^\"]+\".*");
+    private static final Pattern TEST_CASE_STARTED_ID = Pattern.compile(
+            "(\\{\"testCaseStarted\":\\{\"id\"|\"testCaseStartedId\"):\"([^\"]+)\"");
+
+    private Samples() {
+    }
+
+    /**
+     * The directory with the samples, defaults to the {@code testdata} of
+     * this repository when run from the benchmarks directory.
+     */
+    static Path directory() {
+        return Paths.get(System.getProperty("testdata", Paths.get("..", "..", "testdata", "src").toString()));
+    }
+
+    static List<Envelope> read(String name, int amplification) throws IOException {
+        List<String> lines = Files.readAllLines(directory().resolve(name + ".ndjson"), UTF_8);
+        return parse(amplify(lines, amplification));
+    }
+
+    /**
+     * Repeats the execution of the test cases. The copies are written after
+     * the last test case finished, before the test run finishes.
+     */
+    private static List<String> amplify(List<String> lines, int amplification) {
+        int lastTestCaseMessage = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            if (TEST_CASE_MESSAGE.matcher(lines.get(i)).matches()) {
+                lastTestCaseMessage = i;
+            }
+        }
+        if (amplification <= 1 || lastTestCaseMessage < 0) {
+            return lines;
+        }
+        List<String> amplified = new ArrayList<>(lines.subList(0, lastTestCaseMessage + 1));
+        for (int copy = 1; copy < amplification; copy++) {
+            for (int i = 0; i <= lastTestCaseMessage; i++) {
+                String line = lines.get(i);
+                if (TEST_CASE_MESSAGE.matcher(line).matches()) {
+                    amplified.add(renameTestCaseStartedId(line, copy));
+                }
+            }
+        }
+        amplified.addAll(lines.subList(lastTestCaseMessage + 1, lines.size()));
+        return amplified;
+    }
+
+    private static String renameTestCaseStartedId(String line, int copy) {
+        Matcher matcher = TEST_CASE_STARTED_ID.matcher(line);
+        return matcher.replaceAll(result -> Matcher.quoteReplacement(
+                result.group(1) + ":\"" + result.group(2) + "-" + copy + "\""));
+    }
+
+    private static List<Envelope> parse(List<String> lines) throws IOException {
+        byte[] bytes = String.join("\n", lines).getBytes(UTF_8);
+        try (InputStream in = new ByteArrayInputStream(bytes);
+             NdjsonToMessageReader reader = new NdjsonToMessageReader(in, deserializer)) {
+            return reader.lines().toList();
+        }
+    }
+}
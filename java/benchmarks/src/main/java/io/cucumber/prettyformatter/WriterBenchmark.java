@@ -0,0 +1,157 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.prettyformatter.MessagesToSummaryWriter.SummaryFeature;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.USE_COMPACT_ANSI;
+
+/**
+ * Replays a sample through a writer.
+ * <p>
+ * Besides the number of replays per second, reports the number of
+ * {@code envelopes} and output {@code bytes} per second. Run with
+ * {@code -prof gc} to report the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+
+    @Param({"minimal", "attachments", "data-tables", "examples-tables", "stack-traces", "all-statuses"})
+    public String sample;
+
+    @Param({"1", "100"})
+    public int amplification;
+
+    @Param({"pretty", "pretty-compact", "summary", "summary-compact", "progress", "separate", "composite"})
+    public String writer;
+
+    @Param({"none", "plain", "cucumber"})
+    public String theme;
+
+    private List<Envelope> envelopes;
+
+    @Setup
+    public void readSample() throws IOException {
+        envelopes = Samples.read(sample, amplification);
+    }
+
+    @Benchmark
+    public void write(Counters counters) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        Theme theme = theme();
+        switch (writer) {
+            case "pretty", "pretty-compact" -> {
+                try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder()
+                        .theme(theme)
+                        .feature(USE_COMPACT_ANSI, this.writer.endsWith("-compact"))
+                        .build(out)) {
+                    for (Envelope envelope : envelopes) {
+                        writer.write(envelope);
+                    }
+                }
+            }
+            case "summary", "summary-compact" -> {
+                try (MessagesToSummaryWriter writer = MessagesToSummaryWriter.builder()
+                        .theme(theme)
+                        .feature(SummaryFeature.USE_COMPACT_ANSI, this.writer.endsWith("-compact"))
+                        .build(out)) {
+                    for (Envelope envelope : envelopes) {
+                        writer.write(envelope);
+                    }
+                }
+            }
+            case "progress" -> {
+                try (MessagesToProgressWriter writer = MessagesToProgressWriter.builder()
+                        .theme(theme)
+                        .build(out)) {
+                    for (Envelope envelope : envelopes) {
+                        writer.write(envelope);
+                    }
+                }
+            }
+            case "separate" -> {
+                try (MessagesToPrettyWriter prettyWriter = MessagesToPrettyWriter.builder().theme(theme).build(out);
+                     MessagesToSummaryWriter summaryWriter = MessagesToSummaryWriter.builder().theme(theme).build(out);
+                     MessagesToProgressWriter progressWriter = MessagesToProgressWriter.builder().theme(theme).build(out)) {
+                    for (Envelope envelope : envelopes) {
+                        prettyWriter.write(envelope);
+                        summaryWriter.write(envelope);
+                        progressWriter.write(envelope);
+                    }
+                }
+            }
+            case "composite" -> {
+                try (CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                        .pretty(MessagesToPrettyWriter.builder().theme(theme), out)
+                        .summary(MessagesToSummaryWriter.builder().theme(theme), out)
+                        .progress(MessagesToProgressWriter.builder().theme(theme), out)
+                        .build()) {
+                    for (Envelope envelope : envelopes) {
+                        writer.write(envelope);
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown writer " + writer);
+        }
+        counters.envelopes += envelopes.size();
+        counters.bytes += out.count;
+    }
+
+    private Theme theme() {
+        return switch (theme) {
+            case "none" -> Theme.none();
+            case "plain" -> Theme.plain();
+            case "cucumber" -> Theme.cucumber();
+            default -> throw new IllegalArgumentException("Unknown theme " + theme);
+        };
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long envelopes;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            envelopes = 0;
+            bytes = 0;
+        }
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
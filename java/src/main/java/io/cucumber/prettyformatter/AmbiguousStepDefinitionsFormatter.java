@@ -3,18 +3,17 @@ package io.cucumber.prettyformatter;
 import io.cucumber.messages.types.StepDefinition;
 
 import java.util.List;
+import java.util.Optional;
 
 import static io.cucumber.prettyformatter.Theme.Element.LOCATION;
 
 final class AmbiguousStepDefinitionsFormatter {
 
-    private final int indentation;
     private final SourceReferenceFormatter sourceReferenceFormatter;
     private final Theme theme;
 
-    private AmbiguousStepDefinitionsFormatter(Theme theme, int indentation, SourceReferenceFormatter sourceReferenceFormatter) {
+    private AmbiguousStepDefinitionsFormatter(Theme theme, SourceReferenceFormatter sourceReferenceFormatter) {
         this.theme = theme;
-        this.indentation = indentation;
         this.sourceReferenceFormatter = sourceReferenceFormatter;
     }
 
@@ -22,7 +21,7 @@ final class AmbiguousStepDefinitionsFormatter {
         return new Builder(sourceReferenceFormatter, theme);
     }
 
-    void formatTo(List<StepDefinition> stepDefinitions, LineBuilder lineBuilder) {
+    void formatTo(List<StepDefinition> stepDefinitions, int indentation, LineBuilder lineBuilder) {
         lineBuilder.indent(indentation)
                 .append("Multiple matching step definitions found:")
                 .newLine();
@@ -32,8 +31,14 @@ final class AmbiguousStepDefinitionsFormatter {
                     .append(theme.bulletPointIcon())
                     .append(" ")
                     .append(stepDefinition.getPattern().getSource());
-            sourceReferenceFormatter.format(stepDefinition.getSourceReference())
-                    .ifPresent(location -> lineBuilder.append(" ").append(LOCATION, "# " + location));
+            Optional<String> location = sourceReferenceFormatter.format(stepDefinition);
+            if (location.isPresent()) {
+                lineBuilder.append(" ")
+                        .begin(LOCATION)
+                        .append("# ")
+                        .append(location.get())
+                        .end(LOCATION);
+            }
             lineBuilder.newLine();
         }
     }
@@ -41,20 +46,14 @@ final class AmbiguousStepDefinitionsFormatter {
     static final class Builder {
         private final SourceReferenceFormatter sourceReferenceFormatter;
         private final Theme theme;
-        private int indentation = 0;
 
         private Builder(SourceReferenceFormatter sourceReferenceFormatter, Theme theme) {
             this.sourceReferenceFormatter = sourceReferenceFormatter;
             this.theme = theme;
         }
 
-        Builder indentation(int indentation) {
-            this.indentation = indentation;
-            return this;
-        }
-
         AmbiguousStepDefinitionsFormatter build() {
-            return new AmbiguousStepDefinitionsFormatter(theme, indentation, sourceReferenceFormatter);
+            return new AmbiguousStepDefinitionsFormatter(theme, sourceReferenceFormatter);
         }
     }
 }
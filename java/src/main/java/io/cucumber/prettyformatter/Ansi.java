@@ -10,6 +10,7 @@ public final class Ansi {
     private static final char FIRST_ESCAPE = 27;
     private static final char SECOND_ESCAPE = '[';
     private static final String END_SEQUENCE = "m";
+    private final Attributes[] attributes;
     private final String controlSequence;
 
     /**
@@ -23,6 +24,7 @@ public final class Ansi {
     }
     
     private Ansi(Attributes... attributes) {
+        this.attributes = attributes.clone();
         this.controlSequence = createControlSequence(attributes);
     }
 
@@ -38,6 +40,10 @@ public final class Ansi {
         return a.toString();
     }
 
+    Attributes[] attributes() {
+        return attributes;
+    }
+
     @Override
     public String toString() {
         return controlSequence;
@@ -109,5 +115,9 @@ public final class Ansi {
         Attributes(int index) {
             this.value = index;
         }
+
+        int value() {
+            return value;
+        }
     }
 }
@@ -1,70 +1,305 @@
 package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.Attachment;
+import org.jspecify.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
+import static io.cucumber.prettyformatter.TextLines.lineEnd;
+import static io.cucumber.prettyformatter.TextLines.nextLineStart;
 import static io.cucumber.prettyformatter.Theme.Element.ATTACHMENT;
 
-final class AttachmentFormatter {
+/**
+ * Formats attachments.
+ * <p>
+ * Text attachments can be limited in bytes and lines, both per attachment
+ * and per test case. The limits are enforced while the text is scanned, the
+ * part beyond the limits is only measured.
+ * <p>
+ * Alternatively, attachments are written to files by an
+ * {@link AttachmentSink} and only a reference to the file is printed.
+ */
+final class AttachmentFormatter implements AutoCloseable {
 
-    private final int indentation;
+    private final int maxBytes;
+    private final int maxLines;
+    private final int maxBytesPerTestCase;
+    private final int maxLinesPerTestCase;
+    private final Map<String, Budget> budgetByTestCaseStartedId = new HashMap<>();
+    private final @Nullable AttachmentSink sink;
+    private final boolean ownsSink;
 
-    private AttachmentFormatter(int indentation) {
-        this.indentation = indentation;
+    private AttachmentFormatter(int maxBytes, int maxLines, int maxBytesPerTestCase, int maxLinesPerTestCase, @Nullable AttachmentSink sink, boolean ownsSink) {
+        this.maxBytes = maxBytes;
+        this.maxLines = maxLines;
+        this.maxBytesPerTestCase = maxBytesPerTestCase;
+        this.maxLinesPerTestCase = maxLinesPerTestCase;
+        this.sink = sink;
+        this.ownsSink = ownsSink;
     }
 
     static Builder builder() {
         return new Builder();
     }
 
-    void formatTo(Attachment attachment, LineBuilder lineBuilder) {
+    void formatTo(Attachment attachment, int indentation, LineBuilder lineBuilder) {
+        if (sink != null) {
+            formatReference(attachment, sink.write(attachment), indentation, lineBuilder);
+            return;
+        }
         switch (attachment.getContentEncoding()) {
-            case BASE64 -> formatBase64Attachment(attachment, lineBuilder);
-            case IDENTITY -> formatTextAttachment(attachment, lineBuilder);
+            case BASE64 -> formatBase64Attachment(attachment, indentation, lineBuilder);
+            case IDENTITY -> formatTextAttachment(attachment, indentation, lineBuilder);
         }
     }
 
-    private void formatBase64Attachment(Attachment attachment, LineBuilder lineBuilder) {
-        int bytes = (attachment.getBody().length() / 4) * 3;
-        String line = attachment.getFileName().isPresent() //
-                ? "Embedding %s [%s %d bytes]".formatted(attachment.getFileName().get(), attachment.getMediaType(), bytes) //
-                : "Embedding [%s %d bytes]".formatted(attachment.getMediaType(), bytes);
+    private void formatBase64Attachment(Attachment attachment, int indentation, LineBuilder lineBuilder) {
+        lineBuilder.indent(indentation)
+                .append(ATTACHMENT, formatEmbedding(attachment, decodedLength(attachment.getBody())))
+                .newLine();
+    }
 
+    private void formatReference(Attachment attachment, AttachmentSink.Reference reference, int indentation, LineBuilder lineBuilder) {
         lineBuilder.indent(indentation)
-                .append(ATTACHMENT, line)
+                .append(ATTACHMENT, formatEmbedding(attachment, reference.getSize()) + " -> " + reference.getFile())
                 .newLine();
     }
 
-    private void formatTextAttachment(Attachment attachment, LineBuilder lineBuilder) {
-        // Prevent interleaving when multiple threads write to System.out
-        try (BufferedReader lines = new BufferedReader(new StringReader(attachment.getBody()))) {
-            String line;
-            while ((line = lines.readLine()) != null) {
-                lineBuilder.indent(indentation)
-                        .append(ATTACHMENT, line)
-                        .newLine();
+    private static String formatEmbedding(Attachment attachment, long bytes) {
+        return attachment.getFileName().isPresent() //
+                ? "Embedding %s [%s %d bytes]".formatted(attachment.getFileName().get(), attachment.getMediaType(), bytes) //
+                : "Embedding [%s %d bytes]".formatted(attachment.getMediaType(), bytes);
+    }
+
+    static long decodedLength(String base64) {
+        int length = base64.length();
+        // Every 4 characters encode 3 bytes, padding encodes nothing
+        while (length > 0 && base64.charAt(length - 1) == '=') {
+            length--;
+        }
+        return (long) length * 3 / 4;
+    }
+
+    private void formatTextAttachment(Attachment attachment, int indentation, LineBuilder lineBuilder) {
+        String text = attachment.getBody();
+        if (attachment.getTestCaseStartedId().isEmpty() || !hasLimitPerTestCase()) {
+            formatTo(text, new Budget(maxBytes, maxLines), indentation, lineBuilder);
+            return;
+        }
+        Budget testCaseBudget = budgetByTestCaseStartedId.computeIfAbsent(
+                attachment.getTestCaseStartedId().get(),
+                testCaseStartedId -> new Budget(maxBytesPerTestCase, maxLinesPerTestCase));
+        Budget budget = new Budget(
+                Math.min(maxBytes, testCaseBudget.bytes),
+                Math.min(maxLines, testCaseBudget.lines));
+        int bytes = budget.bytes;
+        int lines = budget.lines;
+        formatTo(text, budget, indentation, lineBuilder);
+        testCaseBudget.bytes -= bytes - budget.bytes;
+        testCaseBudget.lines -= lines - budget.lines;
+    }
+
+    private boolean hasLimitPerTestCase() {
+        return maxBytesPerTestCase != Integer.MAX_VALUE || maxLinesPerTestCase != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Releases the budget of a finished test case.
+     */
+    void finishTestCase(String testCaseStartedId) {
+        budgetByTestCaseStartedId.remove(testCaseStartedId);
+    }
+
+    /**
+     * Releases the budgets of test cases that did not finish, e.g. when the
+     * test run was aborted.
+     */
+    void finishTestRun() {
+        budgetByTestCaseStartedId.clear();
+    }
+
+    /**
+     * Waits until the attachments are written to files. A shared sink is
+     * closed by its owner.
+     */
+    @Override
+    public void close() {
+        if (sink != null && ownsSink) {
+            sink.close();
+        }
+    }
+
+    void formatTo(String text, int indentation, LineBuilder lineBuilder) {
+        TextLines.formatTo(text, 0, text.length(), indentation, ATTACHMENT, lineBuilder);
+    }
+
+    /**
+     * Writes the lines of text until the budget is spent. The remainder is
+     * summarized in a single line.
+     */
+    private static void formatTo(String text, Budget budget, int indentation, LineBuilder lineBuilder) {
+        int end = text.length();
+        int start = 0;
+        while (start < end && budget.lines > 0 && budget.bytes > 0) {
+            int lineEnd = lineEnd(text, start, end);
+            // Stop at the last complete character within the budget
+            int cut = start;
+            while (cut < lineEnd) {
+                int charBytes = utf8Length(text, cut, lineEnd);
+                if (charBytes > budget.bytes) {
+                    break;
+                }
+                budget.bytes -= charBytes;
+                cut += charBytes == 4 ? 2 : 1;
+            }
+            lineBuilder.indent(indentation)
+                    .begin(ATTACHMENT)
+                    .append(text, start, cut)
+                    .end(ATTACHMENT)
+                    .newLine();
+            budget.lines--;
+            if (cut < lineEnd) {
+                start = cut;
+                break;
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            int next = nextLineStart(text, lineEnd, end);
+            budget.bytes -= Math.min(budget.bytes, next - lineEnd);
+            start = next;
+        }
+        if (start < end) {
+            lineBuilder.indent(indentation)
+                    .begin(ATTACHMENT)
+                    .append("[truncated, ")
+                    .append(Long.toString(countUtf8Bytes(text, start, end)))
+                    .append(" more bytes]")
+                    .end(ATTACHMENT)
+                    .newLine();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the character at index in UTF-8.
+     */
+    private static int utf8Length(String text, int index, int end) {
+        char c = text.charAt(index);
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800) {
+            return 2;
+        }
+        if (Character.isHighSurrogate(c) && index + 1 < end && Character.isLowSurrogate(text.charAt(index + 1))) {
+            return 4;
+        }
+        return 3;
+    }
+
+    static long countUtf8Bytes(String text, int start, int end) {
+        long bytes = 0;
+        while (start < end) {
+            int charBytes = utf8Length(text, start, end);
+            bytes += charBytes;
+            start += charBytes == 4 ? 2 : 1;
+        }
+        return bytes;
+    }
+
+    private static final class Budget {
+        private int bytes;
+        private int lines;
+
+        Budget(int bytes, int lines) {
+            this.bytes = bytes;
+            this.lines = lines;
         }
     }
 
     static final class Builder {
-        private int indentation = 0;
+
+        private int maxBytes = Integer.MAX_VALUE;
+        private int maxLines = Integer.MAX_VALUE;
+        private int maxBytesPerTestCase = Integer.MAX_VALUE;
+        private int maxLinesPerTestCase = Integer.MAX_VALUE;
+        private @Nullable Path directory;
+        private @Nullable FormatterMetrics metrics;
+        private @Nullable AttachmentSinks sharedSinks;
 
         private Builder() {
         }
 
-        Builder indentation(int indentation) {
-            this.indentation = indentation;
+        /**
+         * Text beyond the maximum number of bytes of an attachment is
+         * summarized in a single line.
+         */
+        Builder maxBytes(int maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Lines beyond the maximum number of lines of an attachment are
+         * summarized in a single line.
+         */
+        Builder maxLines(int maxLines) {
+            this.maxLines = maxLines;
+            return this;
+        }
+
+        /**
+         * Like {@link #maxBytes(int)}, but for all attachments of a test
+         * case together.
+         */
+        Builder maxBytesPerTestCase(int maxBytesPerTestCase) {
+            this.maxBytesPerTestCase = maxBytesPerTestCase;
+            return this;
+        }
+
+        /**
+         * Like {@link #maxLines(int)}, but for all attachments of a test
+         * case together.
+         */
+        Builder maxLinesPerTestCase(int maxLinesPerTestCase) {
+            this.maxLinesPerTestCase = maxLinesPerTestCase;
+            return this;
+        }
+
+        /**
+         * Writes attachments to files in the directory instead of printing
+         * them.
+         */
+        Builder directory(@Nullable Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Records the attachments waiting to be written to files.
+         */
+        Builder metrics(@Nullable FormatterMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Uses the sink shared by writers writing to the same directory.
+         */
+        Builder sharedSinks(@Nullable AttachmentSinks sharedSinks) {
+            this.sharedSinks = sharedSinks;
             return this;
         }
 
         AttachmentFormatter build() {
-            return new AttachmentFormatter(indentation);
+            if (directory == null) {
+                return new AttachmentFormatter(maxBytes, maxLines, maxBytesPerTestCase, maxLinesPerTestCase, null, false);
+            }
+            if (sharedSinks != null) {
+                AttachmentSink sink = sharedSinks.get(directory, metrics);
+                return new AttachmentFormatter(maxBytes, maxLines, maxBytesPerTestCase, maxLinesPerTestCase, sink, false);
+            }
+            AttachmentSink sink = new AttachmentSink(directory, metrics);
+            return new AttachmentFormatter(maxBytes, maxLines, maxBytesPerTestCase, maxLinesPerTestCase, sink, true);
         }
     }
 }
@@ -0,0 +1,244 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Attachment;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static io.cucumber.messages.types.AttachmentContentEncoding.BASE64;
+import static io.cucumber.prettyformatter.AttachmentFormatter.decodedLength;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the bodies of attachments to files in a directory.
+ * <p>
+ * Files are named after the SHA-256 hash of their content, so attachments
+ * with the same content share a file. A file that already exists, e.g.
+ * written by another writer or an earlier run, is not written again. The
+ * name depends on the content, so attachments are decoded and hashed when
+ * they are written, the files are written by a background thread. When the
+ * thread falls behind, the thread that writes the attachment waits, this
+ * keeps the number of bodies waiting in memory small.
+ */
+final class AttachmentSink implements AutoCloseable {
+
+    private static final int MAX_PENDING_WRITES = 16;
+    private static final long CLOSE_TIMEOUT_IN_SECONDS = 60;
+
+    private final Path directory;
+    private final ThreadPoolExecutor executor;
+    private final MessageDigest digest;
+    // Guarded by this, writers sharing the sink may use different threads
+    private final Set<Path> scheduledFiles = new HashSet<>();
+    private final Set<Path> pendingFiles = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final @Nullable FormatterMetrics metrics;
+    private volatile @Nullable IOException failure;
+
+    AttachmentSink(Path directory, @Nullable FormatterMetrics metrics) {
+        this.directory = requireNonNull(directory);
+        this.metrics = metrics;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_WRITES),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cucumber-attachment-sink");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                AttachmentSink::waitForPendingWrite);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitForPendingWrite(Runnable write, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Attachment sink is closed");
+        }
+        try {
+            executor.getQueue().put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    /**
+     * Schedules the body of the attachment to be written and returns a
+     * reference to the file it is written to.
+     */
+    synchronized Reference write(Attachment attachment) {
+        byte[] content = decode(attachment);
+        String extension = extensionOf(attachment);
+        if (content == null) {
+            // Name the file after the body, so the failure can refer to it
+            Path file = fileOf(attachment.getBody().getBytes(UTF_8), extension);
+            if (failure == null) {
+                failure = new IOException("Could not decode the attachment for " + file);
+            }
+            return new Reference(file, decodedLength(attachment.getBody()));
+        }
+        Path file = fileOf(content, extension);
+        if (scheduledFiles.add(file)) {
+            pendingFiles.add(file);
+            if (metrics != null) {
+                metrics.recordAttachmentWriteScheduled();
+            }
+            executor.execute(() -> writeFile(file, content));
+        }
+        return new Reference(file, content.length);
+    }
+
+    private Path fileOf(byte[] content, String extension) {
+        return directory.resolve(HexFormat.of().formatHex(digest.digest(content)) + "." + extension);
+    }
+
+    private static byte @Nullable [] decode(Attachment attachment) {
+        if (attachment.getContentEncoding() != BASE64) {
+            return attachment.getBody().getBytes(UTF_8);
+        }
+        try {
+            return Base64.getDecoder().decode(attachment.getBody());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void writeFile(Path file, byte[] content) {
+        try {
+            writeFileOnce(file, content);
+        } finally {
+            pendingFiles.remove(file);
+            if (metrics != null) {
+                metrics.recordAttachmentWritten();
+            }
+        }
+    }
+
+    private void writeFileOnce(Path file, byte[] content) {
+        if (failure != null || Files.exists(file)) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            // Write to a temporary file first, so that a file that exists is
+            // always complete
+            Path temp = Files.createTempFile(directory, "cucumber-attachment-", ".tmp");
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Written by another writer in the meantime, with the same content
+                Files.delete(temp);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private static String extensionOf(Attachment attachment) {
+        if (attachment.getFileName().isPresent()) {
+            String fileName = attachment.getFileName().get();
+            String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+            if (fileName.lastIndexOf('.') > 0 && isSafeExtension(extension)) {
+                return extension;
+            }
+        }
+        String mediaType = attachment.getMediaType();
+        return switch (mediaType) {
+            case "text/plain" -> "txt";
+            case "image/jpeg" -> "jpg";
+            case "image/svg+xml" -> "svg";
+            default -> {
+                String subType = mediaType.substring(mediaType.indexOf('/') + 1);
+                yield isSafeExtension(subType) ? subType : "bin";
+            }
+        };
+    }
+
+    private static boolean isSafeExtension(String extension) {
+        if (extension.isEmpty() || extension.length() > 16) {
+            return false;
+        }
+        for (int i = 0; i < extension.length(); i++) {
+            char c = extension.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all files are written, for at most a minute.
+     *
+     * @throws RuntimeException if a file could not be written, or not in time
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(CLOSE_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException failure = this.failure;
+        if (!terminated) {
+            executor.shutdownNow();
+            List<Path> unwritten;
+            synchronized (pendingFiles) {
+                unwritten = new ArrayList<>(pendingFiles);
+            }
+            RuntimeException timeoutFailure = new RuntimeException(
+                    "%d attachments were not written in time: %s".formatted(unwritten.size(), unwritten));
+            if (failure != null) {
+                timeoutFailure.addSuppressed(failure);
+            }
+            throw timeoutFailure;
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    static final class Reference {
+        private final Path file;
+        private final long size;
+
+        private Reference(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The attachment sinks shared by the writers of a
+ * {@link CompositeMessagesWriter}, one per directory.
+ * <p>
+ * Writers that write attachments to the same directory use the same sink,
+ * so each attachment is decoded, hashed and written once.
+ */
+final class AttachmentSinks implements AutoCloseable {
+
+    private final Map<Path, AttachmentSink> sinkByDirectory = new LinkedHashMap<>();
+
+    /**
+     * Returns the sink for the directory. The metrics of the writer that
+     * first uses a directory record the attachments written to it.
+     */
+    AttachmentSink get(Path directory, @Nullable FormatterMetrics metrics) {
+        return sinkByDirectory.computeIfAbsent(directory.toAbsolutePath().normalize(),
+                normalized -> new AttachmentSink(directory, metrics));
+    }
+
+    /**
+     * Waits until the attachments of all sinks are written to files.
+     *
+     * @throws RuntimeException if a file could not be written, or not in time
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (AttachmentSink sink : sinkByDirectory.values()) {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.query.Repository;
+import org.jspecify.annotations.Nullable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the pretty, summary and progress output of a test run at the same
+ * time.
+ * <p>
+ * Separate writers each keep their own record of the gherkin documents,
+ * pickles, test cases and step definitions of the test run. The writers of
+ * a composite writer share a single record instead, which is updated once
+ * per message. For a large test run this saves both memory and time.
+ * <p>
+ * Writers may share an output stream. Each stream is closed once, after all
+ * writers have finished.
+ * Writers that write attachments to the same directory decode and write
+ * each attachment once.
+ *
+ * <pre>{@code
+ * try (var writer = CompositeMessagesWriter.builder()
+ *         .pretty(MessagesToPrettyWriter.builder().theme(Theme.cucumber()), System.out)
+ *         .summary(MessagesToSummaryWriter.builder().theme(Theme.cucumber()), System.out)
+ *         .build()) {
+ *     writer.write(envelope);
+ * }
+ * }</pre>
+ */
+public final class CompositeMessagesWriter implements MessagesWriter {
+
+    private final Repository repository;
+    private final List<Part> parts;
+    private final AttachmentSinks sinks;
+    private final List<OutputStream> outs;
+    private final Set<EnvelopeType> envelopeTypes;
+    private final EnvelopeType[] probeOrder;
+    private boolean streamClosed = false;
+
+    private CompositeMessagesWriter(Repository repository, List<Part> parts, AttachmentSinks sinks, List<OutputStream> outs) {
+        this.repository = repository;
+        this.parts = parts;
+        this.sinks = sinks;
+        this.outs = outs;
+        this.envelopeTypes = envelopeTypesOf(parts);
+        this.probeOrder = EnvelopeType.probeOrder(envelopeTypes);
+    }
+
+    private static Set<EnvelopeType> envelopeTypesOf(List<Part> parts) {
+        EnumSet<EnvelopeType> envelopeTypes = EnumSet.noneOf(EnvelopeType.class);
+        for (Part part : parts) {
+            envelopeTypes.addAll(part.writer.envelopeTypes());
+        }
+        return Collections.unmodifiableSet(envelopeTypes);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Writes a cucumber message to each writer.
+     *
+     * @param envelope the message
+     * @throws IOException if an IO error occurs
+     */
+    @Override
+    public void write(Envelope envelope) throws IOException {
+        if (streamClosed) {
+            throw new IOException("Stream closed");
+        }
+        EnvelopeType type = EnvelopeType.of(envelope, probeOrder);
+        if (type == EnvelopeType.UNKNOWN) {
+            return;
+        }
+        repository.update(envelope);
+        for (Part part : parts) {
+            part.write(type, envelope);
+        }
+    }
+
+    /**
+     * The types of messages used by any of the writers, other messages are
+     * ignored.
+     */
+    @Override
+    public Set<EnvelopeType> envelopeTypes() {
+        return envelopeTypes;
+    }
+
+    /**
+     * Closes the writers in the order they were added, then waits until the
+     * attachments are written and closes each output stream once. Once closed further write() invocations will cause
+     * an IOException to be thrown. Closing a closed stream has no effect.
+     */
+    @Override
+    public void close() {
+        if (streamClosed) {
+            return;
+        }
+
+        RuntimeException failure = null;
+        for (Part part : parts) {
+            try {
+                part.writer.close();
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        try {
+            sinks.close();
+        } catch (RuntimeException e) {
+            failure = addFailure(failure, e);
+        }
+        for (OutputStream out : outs) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                failure = addFailure(failure, new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        streamClosed = true;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException addFailure(@Nullable RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    @FunctionalInterface
+    private interface TypedWriter {
+        void write(EnvelopeType type, Envelope envelope) throws IOException;
+    }
+
+    private static final class Part {
+        private final MessagesWriter writer;
+        private final TypedWriter typedWriter;
+
+        Part(MessagesWriter writer, TypedWriter typedWriter) {
+            this.writer = writer;
+            this.typedWriter = typedWriter;
+        }
+
+        void write(EnvelopeType type, Envelope envelope) throws IOException {
+            typedWriter.write(type, envelope);
+        }
+    }
+
+    /**
+     * Leaves closing the shared output stream to the composite writer.
+     */
+    private static final class SharedOutputStream extends FilterOutputStream {
+
+        SharedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    public static final class Builder {
+
+        private final List<BiFunction<Repository, AttachmentSinks, Part>> parts = new ArrayList<>();
+        private final List<OutputStream> outs = new ArrayList<>();
+        private boolean includesPretty = false;
+        private boolean includesSummary = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a pretty writer, built with the given builder when the
+         * composite writer is built.
+         */
+        public Builder pretty(MessagesToPrettyWriter.Builder pretty, OutputStream out) {
+            requireNonNull(pretty);
+            requireNonNull(out);
+            addOut(out);
+            includesPretty = true;
+            parts.add((repository, sinks) -> {
+                MessagesToPrettyWriter writer = pretty.build(new SharedOutputStream(out), repository, sinks);
+                return new Part(writer, writer::write);
+            });
+            return this;
+        }
+
+        /**
+         * Adds a summary writer, built with the given builder when the
+         * composite writer is built.
+         */
+        public Builder summary(MessagesToSummaryWriter.Builder summary, OutputStream out) {
+            requireNonNull(summary);
+            requireNonNull(out);
+            addOut(out);
+            includesSummary = true;
+            parts.add((repository, sinks) -> {
+                MessagesToSummaryWriter writer = summary.build(new SharedOutputStream(out), repository, sinks);
+                return new Part(writer, writer::write);
+            });
+            return this;
+        }
+
+        /**
+         * Adds a progress writer, built with the given builder when the
+         * composite writer is built.
+         */
+        public Builder progress(MessagesToProgressWriter.Builder progress, OutputStream out) {
+            requireNonNull(progress);
+            requireNonNull(out);
+            addOut(out);
+            parts.add((repository, sinks) -> {
+                MessagesToProgressWriter writer = progress.build(new SharedOutputStream(out), repository);
+                return new Part(writer, writer::write);
+            });
+            return this;
+        }
+
+        private void addOut(OutputStream out) {
+            for (OutputStream added : outs) {
+                if (added == out) {
+                    return;
+                }
+            }
+            outs.add(out);
+        }
+
+        public CompositeMessagesWriter build() {
+            Repository repository = createRepository();
+            AttachmentSinks sinks = new AttachmentSinks();
+            List<Part> parts = new ArrayList<>();
+            for (BiFunction<Repository, AttachmentSinks, Part> part : this.parts) {
+                parts.add(part.apply(repository, sinks));
+            }
+            return new CompositeMessagesWriter(repository, parts, sinks, List.copyOf(outs));
+        }
+
+        private Repository createRepository() {
+            // The summary uses everything the pretty report uses, worker
+            // lanes use neither
+            if (includesSummary) {
+                return MessagesToSummaryWriter.createRepository();
+            }
+            if (includesPretty) {
+                return PrettyReportData.createRepository();
+            }
+            return Repository.builder().build();
+        }
+    }
+}
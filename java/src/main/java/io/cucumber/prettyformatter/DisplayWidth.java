@@ -0,0 +1,142 @@
+package io.cucumber.prettyformatter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calculates how many columns a terminal uses to display text.
+ * <p>
+ * East Asian wide and fullwidth characters, including most emoji, take two
+ * columns. Combining marks and format characters take none. Everything else
+ * takes one.
+ * <p>
+ * Text that is only ASCII is measured without lookups. The width of other
+ * strings is remembered, as the same step text, keywords and table cells are
+ * measured over and over.
+ */
+final class DisplayWidth {
+
+    private static final int MAX_CACHE_SIZE = 4096;
+    private static final Map<String, Integer> widthByText = new ConcurrentHashMap<>();
+
+    /**
+     * Start and end (inclusive) of the East Asian Wide (W) and Fullwidth (F)
+     * code point ranges, Unicode 14. Adjacent ranges separated only by
+     * unassigned code points have been merged.
+     */
+    private static final int[] WIDE_RANGES = {
+            0x1100, 0x115F, 0x231A, 0x231B, 0x2329, 0x232A, 0x23E9, 0x23EC, 0x23F0, 0x23F0,
+            0x23F3, 0x23F3, 0x25FD, 0x25FE, 0x2614, 0x2615, 0x2648, 0x2653, 0x267F, 0x267F,
+            0x2693, 0x2693, 0x26A1, 0x26A1, 0x26AA, 0x26AB, 0x26BD, 0x26BE, 0x26C4, 0x26C5,
+            0x26CE, 0x26CE, 0x26D4, 0x26D4, 0x26EA, 0x26EA, 0x26F2, 0x26F3, 0x26F5, 0x26F5,
+            0x26FA, 0x26FA, 0x26FD, 0x26FD, 0x2705, 0x2705, 0x270A, 0x270B, 0x2728, 0x2728,
+            0x274C, 0x274C, 0x274E, 0x274E, 0x2753, 0x2755, 0x2757, 0x2757, 0x2795, 0x2797,
+            0x27B0, 0x27B0, 0x27BF, 0x27BF, 0x2B1B, 0x2B1C, 0x2B50, 0x2B50, 0x2B55, 0x2B55,
+            0x2E80, 0x3029, 0x302E, 0x303E, 0x3041, 0x3096, 0x309B, 0x3247, 0x3250, 0x4DBF,
+            0x4E00, 0xA4C6, 0xA960, 0xA97C, 0xAC00, 0xD7A3, 0xF900, 0xFAD9, 0xFE10, 0xFE19,
+            0xFE30, 0xFE6B, 0xFF01, 0xFF60, 0xFFE0, 0xFFE6, 0x16FE0, 0x16FE3, 0x16FF0, 0x1B2FB,
+            0x1F004, 0x1F004, 0x1F0CF, 0x1F0CF, 0x1F18E, 0x1F18E, 0x1F191, 0x1F19A,
+            0x1F200, 0x1F320, 0x1F32D, 0x1F335, 0x1F337, 0x1F37C, 0x1F37E, 0x1F393,
+            0x1F3A0, 0x1F3CA, 0x1F3CF, 0x1F3D3, 0x1F3E0, 0x1F3F0, 0x1F3F4, 0x1F3F4,
+            0x1F3F8, 0x1F43E, 0x1F440, 0x1F440, 0x1F442, 0x1F4FC, 0x1F4FF, 0x1F53D,
+            0x1F54B, 0x1F54E, 0x1F550, 0x1F567, 0x1F57A, 0x1F57A, 0x1F595, 0x1F596,
+            0x1F5A4, 0x1F5A4, 0x1F5FB, 0x1F64F, 0x1F680, 0x1F6C5, 0x1F6CC, 0x1F6CC,
+            0x1F6D0, 0x1F6D2, 0x1F6D5, 0x1F6DF, 0x1F6EB, 0x1F6EC, 0x1F6F4, 0x1F6FC,
+            0x1F7E0, 0x1F7F0, 0x1F90C, 0x1F93A, 0x1F93C, 0x1F945, 0x1F947, 0x1F9FF,
+            0x1FA70, 0x1FAF6, 0x20000, 0x3134A
+    };
+
+    private DisplayWidth() {
+        /* no-op */
+    }
+
+    static int of(String text) {
+        if (isAscii(text, 0, text.length())) {
+            return text.length();
+        }
+        Integer width = widthByText.get(text);
+        if (width != null) {
+            return width;
+        }
+        int calculated = calculate(text, 0, text.length());
+        if (widthByText.size() >= MAX_CACHE_SIZE) {
+            // Simpler than tracking usage. Step text is seen again soon.
+            widthByText.clear();
+        }
+        widthByText.put(text, calculated);
+        return calculated;
+    }
+
+    static int of(String text, int start, int end) {
+        if (isAscii(text, start, end)) {
+            return end - start;
+        }
+        return calculate(text, start, end);
+    }
+
+    private static boolean isAscii(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int calculate(String text, int start, int end) {
+        int width = 0;
+        int i = start;
+        while (i < end) {
+            int codePoint = text.codePointAt(i);
+            width += of(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    static int of(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (isZeroWidth(codePoint)) {
+            return 0;
+        }
+        return isWide(codePoint) ? 2 : 1;
+    }
+
+    private static boolean isZeroWidth(int codePoint) {
+        // Hangul Jamo medial vowels and final consonants combine with the
+        // preceding initial consonant
+        if (codePoint >= 0x1160 && codePoint <= 0x11FF) {
+            return true;
+        }
+        // The soft hyphen is displayed as a hyphen by most terminals
+        if (codePoint == 0x00AD) {
+            return false;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.ENCLOSING_MARK
+                || type == Character.FORMAT;
+    }
+
+    private static boolean isWide(int codePoint) {
+        if (codePoint < WIDE_RANGES[0]) {
+            return false;
+        }
+        // Binary search over the range pairs
+        int low = 0;
+        int high = WIDE_RANGES.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (codePoint < WIDE_RANGES[2 * middle]) {
+                high = middle - 1;
+            } else if (codePoint > WIDE_RANGES[2 * middle + 1]) {
+                low = middle + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,71 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Attachment;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.messages.types.TestStepStarted;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.jspecify.annotations.Nullable;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Records the handling of a message by the pretty writer.
+ */
+@Name("io.cucumber.prettyformatter.EnvelopeRendered")
+@Label("Envelope Rendered")
+@Description("A message was handled by the pretty writer")
+@Category({"Cucumber", "Pretty Formatter"})
+@Enabled(false)
+@StackTrace(false)
+final class EnvelopeRenderedEvent extends Event {
+
+    @Label("Type")
+    @Nullable String type;
+
+    @Label("Test Case Started Id")
+    @Nullable String testCaseStartedId;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Handles the message, recording an event when enabled.
+     */
+    static void record(EnvelopeType type, Envelope envelope, MeteredOutputStream out, BiConsumer<EnvelopeType, Envelope> handler) {
+        EnvelopeRenderedEvent event = new EnvelopeRenderedEvent();
+        if (!event.isEnabled()) {
+            handler.accept(type, envelope);
+            return;
+        }
+        long bytesWritten = out.getBytesWritten();
+        event.begin();
+        handler.accept(type, envelope);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = type.getFieldName();
+            event.testCaseStartedId = testCaseStartedIdOf(envelope);
+            event.bytes = out.getBytesWritten() - bytesWritten;
+            event.commit();
+        }
+    }
+
+    private static @Nullable String testCaseStartedIdOf(Envelope envelope) {
+        return envelope.getTestStepFinished().map(TestStepFinished::getTestCaseStartedId)
+                .or(() -> envelope.getTestStepStarted().map(TestStepStarted::getTestCaseStartedId))
+                .or(() -> envelope.getTestCaseStarted().map(TestCaseStarted::getId))
+                .or(() -> envelope.getTestCaseFinished().map(TestCaseFinished::getTestCaseStartedId))
+                .or(() -> envelope.getAttachment().flatMap(Attachment::getTestCaseStartedId))
+                .orElse(null);
+    }
+}
@@ -0,0 +1,252 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The type of message in an envelope.
+ * <p>
+ * An envelope holds exactly one message, the type of an envelope is the
+ * first message that is present. Ordered by how often a message occurs in a
+ * typical test run, so the frequent types are found first.
+ *
+ * @see MessagesWriter#envelopeTypes()
+ */
+public enum EnvelopeType {
+
+    /**
+     * See {@link Envelope#getTestStepStarted()}.
+     */
+    TEST_STEP_STARTED("testStepStarted"),
+
+    /**
+     * See {@link Envelope#getTestStepFinished()}.
+     */
+    TEST_STEP_FINISHED("testStepFinished"),
+
+    /**
+     * See {@link Envelope#getTestCaseStarted()}.
+     */
+    TEST_CASE_STARTED("testCaseStarted"),
+
+    /**
+     * See {@link Envelope#getTestCaseFinished()}.
+     */
+    TEST_CASE_FINISHED("testCaseFinished"),
+
+    /**
+     * See {@link Envelope#getTestCase()}.
+     */
+    TEST_CASE("testCase"),
+
+    /**
+     * See {@link Envelope#getPickle()}.
+     */
+    PICKLE("pickle"),
+
+    /**
+     * See {@link Envelope#getAttachment()}.
+     */
+    ATTACHMENT("attachment"),
+
+    /**
+     * See {@link Envelope#getExternalAttachment()}.
+     */
+    EXTERNAL_ATTACHMENT("externalAttachment"),
+
+    /**
+     * See {@link Envelope#getStepDefinition()}.
+     */
+    STEP_DEFINITION("stepDefinition"),
+
+    /**
+     * See {@link Envelope#getHook()}.
+     */
+    HOOK("hook"),
+
+    /**
+     * See {@link Envelope#getTestRunHookStarted()}.
+     */
+    TEST_RUN_HOOK_STARTED("testRunHookStarted"),
+
+    /**
+     * See {@link Envelope#getTestRunHookFinished()}.
+     */
+    TEST_RUN_HOOK_FINISHED("testRunHookFinished"),
+
+    /**
+     * See {@link Envelope#getSource()}.
+     */
+    SOURCE("source"),
+
+    /**
+     * See {@link Envelope#getGherkinDocument()}.
+     */
+    GHERKIN_DOCUMENT("gherkinDocument"),
+
+    /**
+     * See {@link Envelope#getParameterType()}.
+     */
+    PARAMETER_TYPE("parameterType"),
+
+    /**
+     * See {@link Envelope#getUndefinedParameterType()}.
+     */
+    UNDEFINED_PARAMETER_TYPE("undefinedParameterType"),
+
+    /**
+     * See {@link Envelope#getSuggestion()}.
+     */
+    SUGGESTION("suggestion"),
+
+    /**
+     * See {@link Envelope#getParseError()}.
+     */
+    PARSE_ERROR("parseError"),
+
+    /**
+     * See {@link Envelope#getMeta()}.
+     */
+    META("meta"),
+
+    /**
+     * See {@link Envelope#getTestRunStarted()}.
+     */
+    TEST_RUN_STARTED("testRunStarted"),
+
+    /**
+     * See {@link Envelope#getTestRunFinished()}.
+     */
+    TEST_RUN_FINISHED("testRunFinished"),
+
+    /**
+     * A message that is not known to this version of the formatter.
+     */
+    UNKNOWN("unknown");
+
+    private static final EnvelopeType[] values = values();
+
+    private final String fieldName;
+    private final byte[] fieldNameBytes;
+
+    EnvelopeType(String fieldName) {
+        this.fieldName = fieldName;
+        this.fieldNameBytes = fieldName.getBytes(UTF_8);
+    }
+
+    /**
+     * The types of messages used by a query, regardless of the features of
+     * its repository.
+     */
+    static EnumSet<EnvelopeType> queried() {
+        return EnumSet.of(
+                META,
+                TEST_RUN_STARTED,
+                TEST_RUN_FINISHED,
+                TEST_RUN_HOOK_STARTED,
+                TEST_RUN_HOOK_FINISHED,
+                PICKLE,
+                TEST_CASE,
+                TEST_CASE_STARTED,
+                TEST_CASE_FINISHED,
+                TEST_STEP_STARTED,
+                TEST_STEP_FINISHED
+        );
+    }
+
+    /**
+     * Finds the type with the field name in the buffer, without decoding it.
+     */
+    static EnvelopeType ofFieldName(ByteBuffer buffer, int start, int length) {
+        for (EnvelopeType type : values) {
+            if (type.fieldNameEquals(buffer, start, length)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private boolean fieldNameEquals(ByteBuffer buffer, int start, int length) {
+        if (fieldNameBytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != fieldNameBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The name of the message in the envelope, e.g. {@code testStepFinished}.
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Returns the type of the message in the envelope.
+     */
+    public static EnvelopeType of(Envelope envelope) {
+        // A message added by a newer version of the messages library is unknown
+        return of(envelope, values);
+    }
+
+    /**
+     * Returns the type of the message in the envelope if it is one of the
+     * given types, otherwise {@link #UNKNOWN}.
+     * <p>
+     * An envelope does not know which of its messages is present, so each
+     * type is probed in turn. A writer only probes the types it uses, in the
+     * order of this enum, so the frequent types are probed first. Messages
+     * the writer does not use cost at most as many probes as it uses types.
+     */
+    static EnvelopeType of(Envelope envelope, EnvelopeType[] types) {
+        for (EnvelopeType type : types) {
+            if (type.isPresentIn(envelope)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * The types in the order they are probed by {@link #of(Envelope, EnvelopeType[])}.
+     */
+    static EnvelopeType[] probeOrder(Set<EnvelopeType> types) {
+        return types.stream().sorted().toArray(EnvelopeType[]::new);
+    }
+
+    private boolean isPresentIn(Envelope envelope) {
+        return switch (this) {
+            case TEST_STEP_STARTED -> envelope.getTestStepStarted().isPresent();
+            case TEST_STEP_FINISHED -> envelope.getTestStepFinished().isPresent();
+            case TEST_CASE_STARTED -> envelope.getTestCaseStarted().isPresent();
+            case TEST_CASE_FINISHED -> envelope.getTestCaseFinished().isPresent();
+            case TEST_CASE -> envelope.getTestCase().isPresent();
+            case PICKLE -> envelope.getPickle().isPresent();
+            case ATTACHMENT -> envelope.getAttachment().isPresent();
+            case EXTERNAL_ATTACHMENT -> envelope.getExternalAttachment().isPresent();
+            case STEP_DEFINITION -> envelope.getStepDefinition().isPresent();
+            case HOOK -> envelope.getHook().isPresent();
+            case TEST_RUN_HOOK_STARTED -> envelope.getTestRunHookStarted().isPresent();
+            case TEST_RUN_HOOK_FINISHED -> envelope.getTestRunHookFinished().isPresent();
+            case SOURCE -> envelope.getSource().isPresent();
+            case GHERKIN_DOCUMENT -> envelope.getGherkinDocument().isPresent();
+            case PARAMETER_TYPE -> envelope.getParameterType().isPresent();
+            case UNDEFINED_PARAMETER_TYPE -> envelope.getUndefinedParameterType().isPresent();
+            case SUGGESTION -> envelope.getSuggestion().isPresent();
+            case PARSE_ERROR -> envelope.getParseError().isPresent();
+            case META -> envelope.getMeta().isPresent();
+            case TEST_RUN_STARTED -> envelope.getTestRunStarted().isPresent();
+            case TEST_RUN_FINISHED -> envelope.getTestRunFinished().isPresent();
+            case UNKNOWN -> false;
+        };
+    }
+}
@@ -1,70 +1,321 @@
 package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.Exception;
+import io.cucumber.messages.types.TestStepResult;
 import io.cucumber.messages.types.TestStepResultStatus;
 import org.jspecify.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
-import java.util.Optional;
+import java.util.Collection;
+import java.util.Collections;
 
+import static io.cucumber.messages.types.TestStepResultStatus.FAILED;
+import static io.cucumber.messages.types.TestStepResultStatus.PENDING;
+import static io.cucumber.messages.types.TestStepResultStatus.SKIPPED;
+import static io.cucumber.prettyformatter.TextLines.countLines;
+import static io.cucumber.prettyformatter.TextLines.isLineSeparator;
+import static io.cucumber.prettyformatter.TextLines.lineEnd;
+import static io.cucumber.prettyformatter.TextLines.nextLineStart;
 import static io.cucumber.prettyformatter.Theme.Element.STEP;
+import static java.util.Objects.requireNonNull;
 
+/**
+ * Formats exceptions and messages of results.
+ * <p>
+ * Consecutive stack frames of excluded packages are folded into a single
+ * line. A cause that is identical to the cause before it is folded as well.
+ * <p>
+ * Rendered text is cached. A formatter is used by a single writer, so the
+ * cache is not thread safe.
+ */
 final class ExceptionFormatter {
 
-    private final int indent;
-    private final Theme theme;
-    private final TestStepResultStatus status;
+    private static final String CAUSED_BY = "Caused by: ";
+    private static final String SUPPRESSED = "Suppressed: ";
+    private static final int CACHE_SIZE = 64;
+    // Larger texts are rare and would make the cache too big
+    private static final int MAX_CACHED_TEXT_LENGTH = 64 * 1024;
 
-    ExceptionFormatter(int indent, Theme theme, TestStepResultStatus status) {
-        this.indent = indent;
-        this.theme = theme;
-        this.status = status;
+    private final StackFrameFilter frameFilter;
+    private final int maxLines;
+    private final RenderCache cache = new RenderCache(CACHE_SIZE);
+
+    private ExceptionFormatter(StackFrameFilter frameFilter, int maxLines) {
+        this.frameFilter = frameFilter;
+        this.maxLines = maxLines;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Formats the exception of a result, falling back to the message of the
+     * result when there is no exception or the exception should not be shown.
+     */
+    void formatTo(TestStepResult result, int indent, LineBuilder lineBuilder) {
+        TestStepResultStatus status = result.getStatus();
+        String text = null;
+        if (result.getException().isPresent()) {
+            text = selectText(result.getException().get(), status);
+        }
+        if (text == null) {
+            // Fallback for when there is no exception at all
+            text = result.getMessage().orElse(null);
+        }
+        if (text != null) {
+            formatTo(text, status, indent, lineBuilder);
+        }
     }
 
-    Optional<String> format(Exception exception, @Nullable String standaloneMessage) {
+    void formatTo(Exception exception, int indent, LineBuilder lineBuilder) {
+        String text = selectText(exception, FAILED);
+        if (text != null) {
+            formatTo(text, FAILED, indent, lineBuilder);
+        }
+    }
+
+    private static @Nullable String selectText(Exception exception, TestStepResultStatus status) {
         // For FAILED, prefer stack trace, fall back to message
-        if (status == TestStepResultStatus.FAILED) {
+        if (status == FAILED) {
             if (exception.getStackTrace().isPresent()) {
-                return Optional.of(format(exception.getStackTrace().get()));
-            }
-            if (exception.getMessage().isPresent()) {
-                return Optional.of(format(exception.getMessage().get()));
+                return exception.getStackTrace().get();
             }
-            return Optional.ofNullable(standaloneMessage).map(this::format);
+            return exception.getMessage().orElse(null);
         }
-
         // For PENDING/SKIPPED, only show the message (not stack trace)
-        if (status == TestStepResultStatus.PENDING || status == TestStepResultStatus.SKIPPED) {
-            if (exception.getMessage().isPresent()) {
-                return Optional.of(format(exception.getMessage().get()));
+        if (status == PENDING || status == SKIPPED) {
+            return exception.getMessage().orElse(null);
+        }
+        // For all other statuses, return nothing
+        return null;
+    }
+
+    private void formatTo(String text, TestStepResultStatus status, int indent, LineBuilder lineBuilder) {
+        if (text.length() > MAX_CACHED_TEXT_LENGTH) {
+            render(text, status, indent, lineBuilder);
+            return;
+        }
+        if (cache.replay(text, indent, status, lineBuilder)) {
+            return;
+        }
+        LineBuilder.Recording recording = lineBuilder.startRecording();
+        render(text, status, indent, lineBuilder);
+        cache.put(text, indent, status, recording.stop());
+    }
+
+    RenderCache cache() {
+        return cache;
+    }
+
+    private void render(String text, TestStepResultStatus status, int indent, LineBuilder lineBuilder) {
+        // Read the lines in the message and add extra indentation. Like
+        // BufferedReader.readLine, a trailing line separator does not start
+        // a new line.
+        Lines lines = new Lines(text, status, indent, maxLines, lineBuilder);
+        int length = text.length();
+        int foldedFrames = 0;
+        int foldedFramesStart = 0;
+        // The previous cause, without the line with the number of frames in
+        // common with the enclosing trace
+        int causeStart = -1;
+        int causeEnd = -1;
+        int repeatedCauses = 0;
+        int repeatedCausesStart = 0;
+        int start = 0;
+        while (start < length) {
+            int end = lineEnd(text, start, length);
+            int next = nextLineStart(text, end, length);
+            int contentStart = skipWhitespace(text, start, end);
+            if (frameFilter.isExcluded(text, contentStart, end)) {
+                if (foldedFrames++ == 0) {
+                    foldedFramesStart = start;
+                }
+                start = next;
+                continue;
             }
-            return Optional.ofNullable(standaloneMessage).map(this::format);
+            if (foldedFrames > 0) {
+                if (!lines.fold(foldedFramesStart, foldedFrames, foldedFrames == 1 ? " framework frame" : " framework frames")) {
+                    return;
+                }
+                foldedFrames = 0;
+            }
+            if (text.startsWith(CAUSED_BY, contentStart)) {
+                int sectionEnd = findSectionEnd(text, next);
+                int bodyEnd = findBodyEnd(text, start, sectionEnd);
+                if (causeStart >= 0
+                        && bodyEnd - start == causeEnd - causeStart
+                        && text.regionMatches(start, text, causeStart, bodyEnd - start)) {
+                    if (repeatedCauses++ == 0) {
+                        repeatedCausesStart = start;
+                    }
+                    start = sectionEnd;
+                    continue;
+                }
+                causeStart = start;
+                causeEnd = bodyEnd;
+            } else if (text.startsWith(SUPPRESSED, contentStart)) {
+                causeStart = -1;
+            }
+            if (repeatedCauses > 0) {
+                if (!lines.fold(repeatedCausesStart, repeatedCauses, repeatedCauses == 1 ? " identical cause" : " identical causes")) {
+                    return;
+                }
+                repeatedCauses = 0;
+            }
+            if (!lines.line(start, end)) {
+                return;
+            }
+            start = next;
+        }
+        if (foldedFrames > 0) {
+            lines.fold(foldedFramesStart, foldedFrames, foldedFrames == 1 ? " framework frame" : " framework frames");
+        }
+        if (repeatedCauses > 0) {
+            lines.fold(repeatedCausesStart, repeatedCauses, repeatedCauses == 1 ? " identical cause" : " identical causes");
+        }
+    }
+
+    private static int skipWhitespace(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
         }
+        return start;
+    }
 
-        // For all other statuses, return nothing
-        return Optional.empty();
+    /**
+     * Finds the start of the next cause or suppressed exception.
+     */
+    private static int findSectionEnd(String text, int start) {
+        while (start < text.length()) {
+            int end = lineEnd(text, start, text.length());
+            int contentStart = skipWhitespace(text, start, end);
+            if (text.startsWith(CAUSED_BY, contentStart) || text.startsWith(SUPPRESSED, contentStart)) {
+                return start;
+            }
+            start = nextLineStart(text, end, text.length());
+        }
+        return start;
     }
 
-    Optional<String> format(Exception exception) {
-        return format(exception, null);
+    /**
+     * Finds the end of a section, excluding the trailing line separators and
+     * the {@code ... n more} line. The number of frames in common with the
+     * enclosing trace may differ between otherwise identical causes.
+     */
+    private static int findBodyEnd(String text, int start, int end) {
+        while (end > start && isLineSeparator(text.charAt(end - 1))) {
+            end--;
+        }
+        int lastLineStart = end;
+        while (lastLineStart > start && !isLineSeparator(text.charAt(lastLineStart - 1))) {
+            lastLineStart--;
+        }
+        int contentStart = skipWhitespace(text, lastLineStart, end);
+        if (lastLineStart > start && text.startsWith("... ", contentStart) && text.startsWith(" more", end - 5)) {
+            end = lastLineStart;
+            while (end > start && isLineSeparator(text.charAt(end - 1))) {
+                end--;
+            }
+        }
+        return end;
     }
 
-    String format(String message) {
-        LineBuilder builder = new LineBuilder(theme);
-        // Read the lines in the message and add extra indentation
-        try (BufferedReader lines = new BufferedReader(new StringReader(message))) {
-            String line;
-            while ((line = lines.readLine()) != null) {
-                builder.indent(indent)
-                        .append(STEP, status, line)
-                        .newLine();
+    /**
+     * Writes lines of text until the maximum number of lines is reached.
+     */
+    private static final class Lines {
+        private final String text;
+        private final TestStepResultStatus status;
+        private final int indent;
+        private final int maxLines;
+        private final LineBuilder lineBuilder;
+        private int written;
+
+        Lines(String text, TestStepResultStatus status, int indent, int maxLines, LineBuilder lineBuilder) {
+            this.text = text;
+            this.status = status;
+            this.indent = indent;
+            this.maxLines = maxLines;
+            this.lineBuilder = lineBuilder;
+        }
+
+        /**
+         * Writes the line between start and end. Returns false if the
+         * maximum was reached, the remaining lines are then summarized.
+         */
+        boolean line(int start, int end) {
+            if (isFull(start)) {
+                return false;
+            }
+            lineBuilder.indent(indent)
+                    .begin(STEP, status)
+                    .append(text, start, end)
+                    .end(STEP, status)
+                    .newLine();
+            return true;
+        }
+
+        /**
+         * Writes a line that replaces a number of folded items, keeping the
+         * leading whitespace of the line at start.
+         */
+        boolean fold(int start, int count, String description) {
+            if (isFull(start)) {
+                return false;
+            }
+            lineBuilder.indent(indent)
+                    .begin(STEP, status)
+                    .append(text, start, skipWhitespace(text, start, lineEnd(text, start, text.length())))
+                    .append("... ")
+                    .append(count)
+                    .append(description)
+                    .end(STEP, status)
+                    .newLine();
+            return true;
+        }
+
+        private boolean isFull(int start) {
+            if (written++ < maxLines) {
+                return false;
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            int remaining = countLines(text, start, text.length());
+            lineBuilder.indent(indent)
+                    .begin(STEP, status)
+                    .append("... ")
+                    .append(remaining)
+                    .append(remaining == 1 ? " more line" : " more lines")
+                    .end(STEP, status)
+                    .newLine();
+            return true;
+        }
+    }
+
+    static final class Builder {
+
+        private Collection<String> excludedPackages = Collections.emptyList();
+        private int maxLines = Integer.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        /**
+         * Stack frames of classes in these packages are folded.
+         */
+        Builder excludeFramesOf(Collection<String> excludedPackages) {
+            this.excludedPackages = requireNonNull(excludedPackages);
+            return this;
+        }
+
+        /**
+         * Lines beyond the maximum are summarized in a single line.
+         */
+        Builder maxLines(int maxLines) {
+            this.maxLines = maxLines;
+            return this;
+        }
+
+        ExceptionFormatter build() {
+            return new ExceptionFormatter(new StackFrameFilter(excludedPackages), maxLines);
         }
-        return builder
-                .build();
     }
 }
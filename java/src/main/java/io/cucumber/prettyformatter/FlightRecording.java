@@ -0,0 +1,23 @@
+package io.cucumber.prettyformatter;
+
+/**
+ * Tells whether Java Flight Recorder events can be emitted.
+ * <p>
+ * The module only optionally requires {@code jdk.jfr}. The event classes
+ * can not be loaded when the module is not resolved, so they may only be
+ * used when {@link #AVAILABLE}. This class itself must not refer to them.
+ */
+final class FlightRecording {
+
+    static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecording() {
+    }
+
+    private static boolean isAvailable() {
+        Module module = FlightRecording.class.getModule();
+        return ModuleLayer.boot().findModule("jdk.jfr")
+                .map(module::canRead)
+                .orElse(false);
+    }
+}
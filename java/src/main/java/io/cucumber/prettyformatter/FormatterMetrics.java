@@ -0,0 +1,167 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Measures the overhead of the formatters.
+ * <p>
+ * Counts the messages handled by type and the time spent handling them, the
+ * bytes written to and the flushes of the output stream, the time spent in
+ * the output stream and the attachments waiting to be written to a file.
+ * <p>
+ * Metrics are recorded with {@link LongAdder}s, so they are cheap enough to
+ * leave enabled and can be shared by several writers, even when they are
+ * used by different threads. The metrics can be read directly or
+ * {@linkplain #registerMBean(String) through JMX}.
+ *
+ * <pre>{@code
+ * var metrics = FormatterMetrics.create();
+ * metrics.registerMBean("pretty");
+ * try (var writer = MessagesToPrettyWriter.builder().metrics(metrics).build(out)) {
+ *     // write messages
+ * } finally {
+ *     metrics.unregisterMBean();
+ * }
+ * }</pre>
+ */
+public final class FormatterMetrics implements FormatterMetricsMXBean {
+
+    private static final EnvelopeType[] envelopeTypes = EnvelopeType.values();
+
+    private final LongAdder[] envelopeCounts = createAdders(envelopeTypes.length);
+    private final LongAdder[] envelopeNanos = createAdders(envelopeTypes.length);
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder outputNanos = new LongAdder();
+    private final LongAdder pendingAttachmentWrites = new LongAdder();
+    private volatile @Nullable String objectName;
+
+    private FormatterMetrics() {
+    }
+
+    public static FormatterMetrics create() {
+        return new FormatterMetrics();
+    }
+
+    private static LongAdder[] createAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as
+     * {@code io.cucumber.prettyformatter:type=FormatterMetrics,name=<name>}.
+     *
+     * @param name distinguishes the metrics from those of other writers
+     * @throws IllegalStateException if the metrics could not be registered,
+     *                               e.g. because the name is already in use
+     *                               or the {@code java.management} module
+     *                               is not available
+     */
+    public synchronized void registerMBean(String name) {
+        requireNonNull(name);
+        if (objectName != null) {
+            throw new IllegalStateException("Already registered as " + objectName);
+        }
+        if (!isManagementAvailable()) {
+            throw new IllegalStateException("Could not register metrics as " + name + ", the java.management module is not available");
+        }
+        this.objectName = PlatformMBeanServer.register(this, "FormatterMetrics", name);
+    }
+
+    private static boolean isManagementAvailable() {
+        Module module = FormatterMetrics.class.getModule();
+        return ModuleLayer.boot().findModule("java.management")
+                .map(module::canRead)
+                .orElse(false);
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server. Has no effect
+     * when the metrics are not registered.
+     */
+    public synchronized void unregisterMBean() {
+        String objectName = this.objectName;
+        if (objectName == null) {
+            return;
+        }
+        try {
+            PlatformMBeanServer.unregister(objectName);
+        } finally {
+            this.objectName = null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getEnvelopeCounts() {
+        return sumByEnvelopeType(envelopeCounts);
+    }
+
+    @Override
+    public Map<String, Long> getEnvelopeNanos() {
+        return sumByEnvelopeType(envelopeNanos);
+    }
+
+    private static Map<String, Long> sumByEnvelopeType(LongAdder[] adders) {
+        Map<String, Long> sums = new LinkedHashMap<>();
+        for (EnvelopeType type : envelopeTypes) {
+            long sum = adders[type.ordinal()].sum();
+            if (sum > 0) {
+                sums.put(type.getFieldName(), sum);
+            }
+        }
+        return sums;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public long getOutputNanos() {
+        return outputNanos.sum();
+    }
+
+    @Override
+    public long getPendingAttachmentWrites() {
+        return pendingAttachmentWrites.sum();
+    }
+
+    void recordEnvelope(EnvelopeType type, long nanos) {
+        envelopeCounts[type.ordinal()].increment();
+        envelopeNanos[type.ordinal()].add(nanos);
+    }
+
+    void recordWrite(int bytes, long nanos) {
+        bytesWritten.add(bytes);
+        outputNanos.add(nanos);
+    }
+
+    void recordFlush(long nanos) {
+        flushes.increment();
+        outputNanos.add(nanos);
+    }
+
+    void recordAttachmentWriteScheduled() {
+        pendingAttachmentWrites.increment();
+    }
+
+    void recordAttachmentWritten() {
+        pendingAttachmentWrites.decrement();
+    }
+}
@@ -0,0 +1,41 @@
+package io.cucumber.prettyformatter;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link FormatterMetrics}.
+ * <p>
+ * Counters only increase, durations are in nanoseconds.
+ */
+public interface FormatterMetricsMXBean {
+
+    /**
+     * The number of messages handled, by type of message.
+     */
+    Map<String, Long> getEnvelopeCounts();
+
+    /**
+     * The time spent handling messages, by type of message.
+     */
+    Map<String, Long> getEnvelopeNanos();
+
+    /**
+     * The number of bytes written to the output stream.
+     */
+    long getBytesWritten();
+
+    /**
+     * The number of times the output stream was flushed.
+     */
+    long getFlushes();
+
+    /**
+     * The time spent in writes to and flushes of the output stream.
+     */
+    long getOutputNanos();
+
+    /**
+     * The number of attachments waiting to be written to a file.
+     */
+    long getPendingAttachmentWrites();
+}
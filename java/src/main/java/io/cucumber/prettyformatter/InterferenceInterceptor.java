@@ -0,0 +1,412 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Intercepts writes to {@link System#out} and {@link System#err} while a test
+ * run is in progress.
+ * <p>
+ * When glue code writes to {@code System.out} from another thread, its output
+ * can land in the middle of a progress or pretty line. Once
+ * {@linkplain #acquire() acquired}, the interceptor replaces both streams and
+ * either passes writes through, suppresses them or buffers them until they
+ * can be {@linkplain #emit() emitted} without interfering.
+ * <p>
+ * The formatter itself should bypass the interceptor by writing to
+ * {@link #originalOut()} or {@link #originalErr()}.
+ * <p>
+ * In {@link Mode#CAPTURE} mode, the runner associates the thread that
+ * executes a test case with the test case using {@link #beginCapture(String)}.
+ * Output written by that thread is captured and the pretty writer prints it
+ * under the scenario. See {@link MessagesToPrettyWriter.Builder#captureOutput(InterferenceInterceptor)}.
+ *
+ * <pre>{@code
+ * var interceptor = InterferenceInterceptor.builder()
+ *         .mode(Mode.BUFFER)
+ *         .build();
+ * interceptor.acquire();
+ * try (var writer = MessagesToProgressWriter.builder().build(interceptor.originalOut())) {
+ *     // write messages
+ * } finally {
+ *     interceptor.release();
+ * }
+ * }</pre>
+ */
+public final class InterferenceInterceptor implements AutoCloseable {
+
+    private static final @Nullable Method PRINT_STREAM_CHARSET = findPrintStreamCharset();
+
+    private final Mode mode;
+    private final OutputCapture capture;
+    private final InterceptedStream out;
+    private final InterceptedStream err;
+    private @Nullable PrintStream originalOut;
+    private @Nullable PrintStream originalErr;
+
+    private InterferenceInterceptor(Mode mode, OutputCapture capture, int bufferLimit) {
+        this.mode = mode;
+        this.capture = capture;
+        this.out = new InterceptedStream(capture, bufferLimit);
+        this.err = new InterceptedStream(capture, bufferLimit);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Replaces {@code System.out} and {@code System.err} with intercepting
+     * streams. Acquiring an acquired interceptor has no effect.
+     */
+    public synchronized void acquire() {
+        if (mode == Mode.PASSTHROUGH || originalOut != null) {
+            return;
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        Charset outCharset = charsetOf(originalOut, "sun.stdout.encoding");
+        Charset errCharset = charsetOf(originalErr, "sun.stderr.encoding");
+        out.intercept(originalOut, outCharset, mode);
+        err.intercept(originalErr, errCharset, mode);
+        // Encode like the original streams, so passed through output is not
+        // garbled on a console that does not use UTF-8
+        System.setOut(new PrintStream(out, true, outCharset));
+        System.setErr(new PrintStream(err, true, errCharset));
+    }
+
+    /**
+     * Returns the charset of a print stream.
+     * <p>
+     * {@code PrintStream.charset()} was added in Java 18. On Java 17
+     * {@code System.out} and {@code System.err} use the encoding of the
+     * console when there is one, otherwise the default charset.
+     */
+    private static Charset charsetOf(PrintStream stream, String consoleEncodingProperty) {
+        if (PRINT_STREAM_CHARSET != null) {
+            try {
+                return (Charset) PRINT_STREAM_CHARSET.invoke(stream);
+            } catch (ReflectiveOperationException e) {
+                // Fall through
+            }
+        }
+        String encoding = System.getProperty(consoleEncodingProperty);
+        if (encoding != null && Charset.isSupported(encoding)) {
+            return Charset.forName(encoding);
+        }
+        return Charset.defaultCharset();
+    }
+
+    private static @Nullable Method findPrintStreamCharset() {
+        try {
+            return PrintStream.class.getMethod("charset");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Captures the output of the current thread for a test case, until
+     * {@link #endCapture()} is called on this thread.
+     * <p>
+     * Should be called by the thread that executes the test case, before
+     * its glue code runs. Has no effect unless the mode is
+     * {@link Mode#CAPTURE}.
+     *
+     * @param testCaseStartedId the id of the test case started message
+     */
+    public void beginCapture(String testCaseStartedId) {
+        requireNonNull(testCaseStartedId);
+        if (mode == Mode.CAPTURE) {
+            capture.begin(testCaseStartedId);
+        }
+    }
+
+    /**
+     * Stops capturing the output of the current thread.
+     *
+     * @see #beginCapture(String)
+     */
+    public void endCapture() {
+        capture.end();
+    }
+
+    /**
+     * Writes any buffered output to the original streams.
+     */
+    public synchronized void emit() {
+        out.emit();
+        err.emit();
+    }
+
+    /**
+     * Restores the original {@code System.out} and {@code System.err}, first
+     * emitting any buffered output. Releasing a released interceptor has no
+     * effect.
+     * <p>
+     * References to the intercepting streams that are still held by other
+     * threads will write directly to the original streams.
+     */
+    public synchronized void release() {
+        if (originalOut == null || originalErr == null) {
+            return;
+        }
+        emit();
+        out.passthrough();
+        err.passthrough();
+        try {
+            capture.finishAll(originalOut, out.charset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+        originalOut = null;
+        originalErr = null;
+    }
+
+    /**
+     * Releases the interceptor.
+     *
+     * @see #release()
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    OutputCapture capture() {
+        return capture;
+    }
+
+    /**
+     * The original {@code System.out}, bypassing the interceptor.
+     */
+    public synchronized PrintStream originalOut() {
+        return originalOut == null ? System.out : originalOut;
+    }
+
+    /**
+     * The original {@code System.err}, bypassing the interceptor.
+     */
+    public synchronized PrintStream originalErr() {
+        return originalErr == null ? System.err : originalErr;
+    }
+
+    public enum Mode {
+        /**
+         * Leaves {@code System.out} and {@code System.err} untouched.
+         */
+        PASSTHROUGH,
+
+        /**
+         * Discards everything written to {@code System.out} and
+         * {@code System.err}.
+         */
+        SUPPRESS,
+
+        /**
+         * Buffers everything written to {@code System.out} and
+         * {@code System.err} until it is emitted or the interceptor is
+         * released.
+         * <p>
+         * Writes beyond the buffer limit are dropped, a marker with the
+         * number of dropped bytes is emitted instead.
+         *
+         * @see Builder#bufferLimit(int)
+         */
+        BUFFER,
+
+        /**
+         * Captures everything written to {@code System.out} and
+         * {@code System.err} by a thread that is executing a test case.
+         * <p>
+         * Output written by other threads is passed through.
+         *
+         * @see #beginCapture(String)
+         * @see MessagesToPrettyWriter.Builder#captureOutput(InterferenceInterceptor)
+         */
+        CAPTURE
+    }
+
+    public static final class Builder {
+
+        private static final int DEFAULT_CAPTURE_LIMIT = 64 * 1024;
+        private static final int DEFAULT_BUFFER_LIMIT = 1024 * 1024;
+        private Mode mode = Mode.PASSTHROUGH;
+        private int captureLimit = DEFAULT_CAPTURE_LIMIT;
+        private int bufferLimit = DEFAULT_BUFFER_LIMIT;
+        private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the interception mode.
+         * <p>
+         * Defaults to {@link Mode#PASSTHROUGH}.
+         */
+        public Builder mode(Mode mode) {
+            this.mode = requireNonNull(mode);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes captured in memory for each test
+         * case.
+         * <p>
+         * Output beyond this limit is written to a file in the
+         * {@linkplain #spillDirectory(Path) spill directory}. Defaults to
+         * {@value DEFAULT_CAPTURE_LIMIT}.
+         */
+        public Builder captureLimit(int captureLimit) {
+            if (captureLimit < 0) {
+                throw new IllegalArgumentException("captureLimit must not be negative");
+            }
+            this.captureLimit = captureLimit;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes buffered for each of
+         * {@code System.out} and {@code System.err} until they are emitted.
+         * <p>
+         * Writes that do not fit are dropped. Defaults to
+         * {@value DEFAULT_BUFFER_LIMIT}.
+         *
+         * @see Mode#BUFFER
+         */
+        public Builder bufferLimit(int bufferLimit) {
+            if (bufferLimit < 0) {
+                throw new IllegalArgumentException("bufferLimit must not be negative");
+            }
+            this.bufferLimit = bufferLimit;
+            return this;
+        }
+
+        /**
+         * Sets the directory that captured output beyond the
+         * {@linkplain #captureLimit(int) capture limit} is written to.
+         * <p>
+         * Defaults to the temporary directory.
+         */
+        public Builder spillDirectory(Path spillDirectory) {
+            this.spillDirectory = requireNonNull(spillDirectory);
+            return this;
+        }
+
+        public InterferenceInterceptor build() {
+            return new InterferenceInterceptor(mode, new OutputCapture(captureLimit, spillDirectory), bufferLimit);
+        }
+    }
+
+    private static final class InterceptedStream extends OutputStream {
+
+        private final BoundedBuffer buffer;
+        private final OutputCapture capture;
+        private @Nullable OutputStream original;
+        private Charset charset = UTF_8;
+        // Read once per write, the only cost on the hot path.
+        private volatile OutputStream target = OutputStream.nullOutputStream();
+
+        InterceptedStream(OutputCapture capture, int bufferLimit) {
+            this.capture = capture;
+            this.buffer = new BoundedBuffer(bufferLimit);
+        }
+
+        void intercept(OutputStream original, Charset charset, Mode mode) {
+            this.original = original;
+            this.charset = charset;
+            this.target = switch (mode) {
+                case PASSTHROUGH -> original;
+                case SUPPRESS -> OutputStream.nullOutputStream();
+                case BUFFER -> buffer;
+                case CAPTURE -> capture.createStream(original, charset);
+            };
+        }
+
+        void passthrough() {
+            if (original != null) {
+                target = original;
+            }
+        }
+
+        void emit() {
+            if (original == null) {
+                return;
+            }
+            try {
+                buffer.emitTo(original, charset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+
+    /**
+     * Keeps whole writes up to the limit, so multibyte characters and lines
+     * are not split. Writes that do not fit are counted and dropped.
+     */
+    private static final class BoundedBuffer extends OutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final int limit;
+        private long dropped;
+
+        BoundedBuffer(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (len > limit - buffer.size()) {
+                dropped += len;
+                return;
+            }
+            buffer.write(b, off, len);
+        }
+
+        synchronized void emitTo(OutputStream out, Charset charset) throws IOException {
+            buffer.writeTo(out);
+            buffer.reset();
+            if (dropped > 0) {
+                String marker = "[" + dropped + " more bytes of output dropped]" + System.lineSeparator();
+                out.write(marker.getBytes(charset));
+                dropped = 0;
+            }
+            out.flush();
+        }
+    }
+}
@@ -3,48 +3,84 @@ package io.cucumber.prettyformatter;
 import io.cucumber.messages.types.TestStepResultStatus;
 import io.cucumber.prettyformatter.Theme.Element;
 
+import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
-import static io.cucumber.prettyformatter.PrettyReportData.VISUAL_STATUS_ICON_LENGTH;
 import static java.lang.System.lineSeparator;
 
+/**
+ * Builds lines of styled text.
+ * <p>
+ * Each writer holds on to a single line builder. Text is copied straight into
+ * the builder's buffer, which is written to the output and {@linkplain #reset()
+ * reset} once complete. This avoids creating intermediate strings.
+ * <p>
+ * When ANSI is compacted, styles are not written as they begin and end.
+ * Instead the builder tracks the terminal state the styles would produce and,
+ * just before any text is written, emits the smallest escape sequence that
+ * brings the terminal into that state.
+ */
 final class LineBuilder {
 
-    private final StringBuilder builder = new StringBuilder(80);
+    private static final char[] SPACES = new char[128];
+    private static final String LINE_SEPARATOR = lineSeparator();
+
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
     private final Theme theme;
+    private final boolean compactAnsi;
+    private char[] buffer = new char[256];
+    private int count;
     private int unstyledLength;
+    // The state the terminal should be in, and the state it is in
+    private int wantedState = SgrState.DEFAULT;
+    private int writtenState = SgrState.DEFAULT;
 
-    LineBuilder(Theme theme) {
+    LineBuilder(Theme theme, boolean compactAnsi) {
         this.theme = theme;
+        this.compactAnsi = compactAnsi;
     }
 
     LineBuilder indent(int indent) {
-        return append(createPadding(indent));
+        return addPaddingUpTo(indent);
     }
 
     LineBuilder title(Element keywordElement, String keyword, Element nameElement, String name) {
-        return append(keywordElement, keyword + ":")
+        return begin(keywordElement)
+                .append(keyword)
+                .append(":")
+                .end(keywordElement)
                 .append(" ")
                 .append(nameElement, name);
     }
 
     LineBuilder statusIcon(String statusIcon) {
-        this.unstyledLength += VISUAL_STATUS_ICON_LENGTH;
-        builder.append(statusIcon);
+        writeState();
+        appendChars(statusIcon);
+        this.unstyledLength += DisplayWidth.of(statusIcon);
         return this;
     }
 
     LineBuilder addPaddingUpTo(int index) {
-        return append(createPadding(index));
+        return spaces(index - unstyledLength);
     }
 
-    private String createPadding(int commentStartAtIndex) {
-        int padding = commentStartAtIndex - unstyledLength;
-        StringBuilder builder = new StringBuilder(padding);
-        for (int i = 0; i < padding; i++) {
-            builder.append(" ");
+    LineBuilder spaces(int padding) {
+        if (padding > 0) {
+            writeStateForSpaces();
         }
-        return builder.toString();
+        while (padding > 0) {
+            int length = Math.min(padding, SPACES.length);
+            ensureCapacity(length);
+            System.arraycopy(SPACES, 0, buffer, count, length);
+            count += length;
+            unstyledLength += length;
+            padding -= length;
+        }
+        return this;
     }
 
     LineBuilder accept(Consumer<LineBuilder> consumer) {
@@ -53,56 +89,207 @@ final class LineBuilder {
     }
 
     LineBuilder newLine() {
+        // Leave the terminal as the styles would have
+        writeState();
+        appendChars(LINE_SEPARATOR);
         unstyledLength = 0;
-        builder.append(lineSeparator());
         return this;
     }
 
     LineBuilder append(String text) {
-        this.unstyledLength += text.length();
-        builder.append(text);
+        if (wantedState != writtenState) {
+            if (isSpaces(text)) {
+                writeStateForSpaces();
+            } else {
+                writeState();
+            }
+        }
+        appendChars(text);
+        this.unstyledLength += DisplayWidth.of(text);
         return this;
     }
 
-    LineBuilder append(Element element, String text) {
-        this.unstyledLength += text.length();
-        builder.append(theme.style(element, text));
+    LineBuilder append(String text, int start, int end) {
+        if (start == end) {
+            return this;
+        }
+        writeState();
+        int length = end - start;
+        ensureCapacity(length);
+        text.getChars(start, end, buffer, count);
+        count += length;
+        this.unstyledLength += DisplayWidth.of(text, start, end);
         return this;
     }
 
+    LineBuilder append(int number) {
+        // Numbers are rare enough, e.g. line numbers, to not warrant a custom
+        // conversion.
+        return append(String.valueOf(number));
+    }
+
+    LineBuilder append(Element element, String text) {
+        return begin(element)
+                .append(text)
+                .end(element);
+    }
+
     LineBuilder append(Element element, TestStepResultStatus status, String text) {
-        this.unstyledLength += text.length();
-        builder.append(theme.style(element, status, text));
-        return this;
+        return begin(element, status)
+                .append(text)
+                .end(element, status);
     }
 
     LineBuilder begin(Element element) {
-        builder.append(theme.beginStyle(element));
+        if (compactAnsi) {
+            wantedState = theme.beginState(element, wantedState);
+        } else {
+            appendChars(theme.beginStyle(element));
+        }
         return this;
     }
 
     LineBuilder begin(Element element, TestStepResultStatus status) {
-        builder.append(theme.beginStyle(element, status));
+        if (compactAnsi) {
+            wantedState = theme.beginState(element, status, wantedState);
+        } else {
+            appendChars(theme.beginStyle(element, status));
+        }
         return this;
     }
 
     LineBuilder end(Element element) {
-        builder.append(theme.endStyle(element));
+        if (compactAnsi) {
+            wantedState = theme.endState(element, wantedState);
+        } else {
+            appendChars(theme.endStyle(element));
+        }
         return this;
     }
 
     LineBuilder end(Element element, TestStepResultStatus status) {
-        builder.append(theme.endStyle(element, status));
+        if (compactAnsi) {
+            wantedState = theme.endState(element, status, wantedState);
+        } else {
+            appendChars(theme.endStyle(element, status));
+        }
         return this;
     }
 
-    String build() {
-        return builder.toString();
+    private void writeState() {
+        if (wantedState != writtenState) {
+            ensureCapacity(2 * SgrState.MAX_TRANSITION_LENGTH);
+            count = SgrState.writeTransition(writtenState, wantedState, buffer, count);
+            writtenState = wantedState;
+        }
+    }
+
+    private void writeStateForSpaces() {
+        // Spaces look the same in many states, avoid needless transitions
+        if (!SgrState.isSpaceEquivalent(wantedState, writtenState)) {
+            writeState();
+        }
+    }
+
+    private static boolean isSpaces(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendChars(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        text.getChars(0, length, buffer, count);
+        count += length;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = count + additional;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Writes the content of this builder and resets it.
+     */
+    void writeTo(PrintWriter writer) {
+        writeState();
+        writer.write(buffer, 0, count);
+        reset();
+    }
+
+    /**
+     * Starts recording the lines written from here on. Must be called at the
+     * start of a line.
+     */
+    Recording startRecording() {
+        return new Recording(this);
+    }
+
+    /**
+     * Appends previously recorded lines. Returns false, without appending
+     * anything, if the lines were recorded with a different theme or the
+     * style the recording started with differs from the current style.
+     */
+    boolean replay(Recording recording) {
+        if (recording.theme != theme
+                || recording.compactAnsi != compactAnsi
+                || recording.startState != writtenState
+                || wantedState != writtenState) {
+            return false;
+        }
+        appendChars(recording.lines);
+        wantedState = recording.endState;
+        writtenState = recording.endState;
+        unstyledLength = 0;
+        return true;
+    }
+
+    LineBuilder reset() {
+        count = 0;
+        unstyledLength = 0;
+        return this;
     }
 
     @Override
     public String toString() {
-        return builder.toString();
+        return new String(buffer, 0, count);
+    }
+
+    /**
+     * Complete lines written to a line builder, including the escape codes.
+     */
+    static final class Recording {
+        private final LineBuilder lineBuilder;
+        private final Theme theme;
+        private final boolean compactAnsi;
+        private final int start;
+        private final int startState;
+        private String lines = "";
+        private int endState;
+
+        private Recording(LineBuilder lineBuilder) {
+            this.lineBuilder = lineBuilder;
+            this.theme = lineBuilder.theme;
+            this.compactAnsi = lineBuilder.compactAnsi;
+            this.start = lineBuilder.count;
+            this.startState = lineBuilder.writtenState;
+        }
+
+        /**
+         * Stops recording. Must be called at the start of a line, before
+         * the line builder is reset.
+         */
+        Recording stop() {
+            this.lines = new String(lineBuilder.buffer, start, lineBuilder.count - start);
+            this.endState = lineBuilder.writtenState;
+            return this;
+        }
     }
 
 }
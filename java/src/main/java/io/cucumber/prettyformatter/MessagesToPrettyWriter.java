@@ -1,15 +1,23 @@
 package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.Envelope;
+import io.cucumber.query.Repository;
+import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_ATTACHMENTS;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_FEATURE_LINE;
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_PASSED_STEP_ARGUMENTS;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_RULE_LINE;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.USE_STATUS_ICON;
 import static java.util.Objects.requireNonNull;
@@ -17,15 +25,46 @@ import static java.util.Objects.requireNonNull;
 /**
  * Writes a pretty report of the scenario execution as it happens.
  */
-public final class MessagesToPrettyWriter implements AutoCloseable {
+public final class MessagesToPrettyWriter implements MessagesWriter {
 
     private final PrettyReportData data;
     private final PrettyReportWriter writer;
+    private final MeteredOutputStream out;
+    private final @Nullable FormatterMetrics metrics;
+    private final BiConsumer<EnvelopeType, Envelope> renderer = this::render;
+    private final Set<EnvelopeType> envelopeTypes;
+    private final EnvelopeType[] probeOrder;
     private boolean streamClosed = false;
 
-    private MessagesToPrettyWriter(OutputStream out, Theme theme, Function<String, String> uriFormatter, Set<PrettyFeature> features) {
-        this.data = new PrettyReportData(features);
-        this.writer = new PrettyReportWriter(out, theme, uriFormatter, features, data);
+    private MessagesToPrettyWriter(
+            MeteredOutputStream out,
+            Theme theme,
+            Function<String, String> uriFormatter,
+            Set<PrettyFeature> features,
+            PickleTableFormatter pickleTableFormatter,
+            PickleDocStringFormatter pickleDocStringFormatter,
+            ExceptionFormatter exceptionFormatter,
+            AttachmentFormatter attachmentFormatter,
+            @Nullable OutputCapture capture,
+            @Nullable FormatterMetrics metrics,
+            @Nullable Repository sharedRepository
+    ) {
+        this.data = new PrettyReportData(features, theme, sharedRepository);
+        this.writer = new PrettyReportWriter(out, theme, uriFormatter, features, data, pickleTableFormatter, pickleDocStringFormatter, exceptionFormatter, attachmentFormatter, capture);
+        this.out = out;
+        this.metrics = metrics;
+        this.envelopeTypes = envelopeTypesOf(features);
+        this.probeOrder = EnvelopeType.probeOrder(envelopeTypes);
+    }
+
+    private static Set<EnvelopeType> envelopeTypesOf(Set<PrettyFeature> features) {
+        EnumSet<EnvelopeType> envelopeTypes = EnvelopeType.queried();
+        envelopeTypes.add(EnvelopeType.GHERKIN_DOCUMENT);
+        envelopeTypes.add(EnvelopeType.STEP_DEFINITION);
+        if (features.contains(INCLUDE_ATTACHMENTS)) {
+            envelopeTypes.add(EnvelopeType.ATTACHMENT);
+        }
+        return Collections.unmodifiableSet(envelopeTypes);
     }
 
     public static Builder builder() {
@@ -38,17 +77,61 @@ public final class MessagesToPrettyWriter implements AutoCloseable {
      * @param envelope the message
      * @throws IOException if an IO error occurs
      */
+    @Override
     public void write(Envelope envelope) throws IOException {
+        write(EnvelopeType.of(envelope, probeOrder), envelope);
+    }
+
+    /**
+     * Writes a message of which the type is known, e.g. by a
+     * {@link CompositeMessagesWriter}.
+     */
+    void write(EnvelopeType type, Envelope envelope) throws IOException {
         if (streamClosed) {
             throw new IOException("Stream closed");
         }
+        if (!envelopeTypes.contains(type)) {
+            return;
+        }
+        if (metrics == null) {
+            handle(type, envelope);
+            return;
+        }
+        long start = System.nanoTime();
+        handle(type, envelope);
+        metrics.recordEnvelope(type, System.nanoTime() - start);
+    }
+
+    private void handle(EnvelopeType type, Envelope envelope) {
+        if (FlightRecording.AVAILABLE) {
+            EnvelopeRenderedEvent.record(type, envelope, out, renderer);
+        } else {
+            render(type, envelope);
+        }
+    }
+
+    private void render(EnvelopeType type, Envelope envelope) {
         data.update(envelope);
-        envelope.getTestCaseStarted().ifPresent(writer::handleTestCaseStarted);
-        envelope.getTestStepFinished().ifPresent(writer::handleTestStepFinished);
-        envelope.getTestRunFinished().ifPresent(writer::handleTestRunFinished);
-        envelope.getAttachment().ifPresent(writer::handleAttachment);
+        switch (type) {
+            case TEST_CASE_STARTED -> writer.handleTestCaseStarted(envelope.getTestCaseStarted().orElseThrow());
+            case TEST_STEP_FINISHED -> writer.handleTestStepFinished(envelope.getTestStepFinished().orElseThrow());
+            case TEST_CASE_FINISHED -> writer.handleTestCaseFinished(envelope.getTestCaseFinished().orElseThrow());
+            case TEST_RUN_FINISHED -> writer.handleTestRunFinished(envelope.getTestRunFinished().orElseThrow());
+            case ATTACHMENT -> writer.handleAttachment(envelope.getAttachment().orElseThrow());
+            default -> {
+                // Only used to update the report data
+            }
+        }
     }
 
+    /**
+     * The types of messages used by this writer, other messages are ignored.
+     * Depends on whether attachments are included.
+     */
+    @Override
+    public Set<EnvelopeType> envelopeTypes() {
+        return envelopeTypes;
+    }
 
     /**
      * Closes the stream, flushing it first. Once closed further write()
@@ -94,7 +177,26 @@ public final class MessagesToPrettyWriter implements AutoCloseable {
         /**
          * Include attachment lines.
          */
-        INCLUDE_ATTACHMENTS
+        INCLUDE_ATTACHMENTS,
+
+        /**
+         * Include the data tables and doc strings of passed steps.
+         * <p>
+         * When excluded, the argument of a passed step is summarized in a
+         * single line, e.g. {@code (table 120x6)}. The arguments of steps
+         * that did not pass are always included.
+         */
+        INCLUDE_PASSED_STEP_ARGUMENTS,
+
+        /**
+         * Writes only the ANSI escape codes needed to change the style
+         * between fragments of text.
+         * <p>
+         * Adjacent fragments often share a style, e.g. a step and its
+         * keyword. The output looks the same but is smaller. Disabled by
+         * default.
+         */
+        USE_COMPACT_ANSI
     }
 
     public static final class Builder {
@@ -103,24 +205,27 @@ public final class MessagesToPrettyWriter implements AutoCloseable {
                 INCLUDE_FEATURE_LINE,
                 INCLUDE_RULE_LINE,
                 USE_STATUS_ICON,
-                INCLUDE_ATTACHMENTS
+                INCLUDE_ATTACHMENTS,
+                INCLUDE_PASSED_STEP_ARGUMENTS
         );
         private Theme theme = Theme.none();
-        private Function<String, String> uriFormatter = Function.identity();
+        private final UriFormatter.Builder uriFormatter = UriFormatter.builder();
+        private @Nullable OutputCapture capture;
+        private int maxTableRows = Integer.MAX_VALUE;
+        private int maxTableCellWidth = Integer.MAX_VALUE;
+        private int maxDocStringLines = Integer.MAX_VALUE;
+        private final List<String> foldedPackages = new ArrayList<>();
+        private int maxStackTraceLines = Integer.MAX_VALUE;
+        private int maxAttachmentBytes = Integer.MAX_VALUE;
+        private int maxAttachmentLines = Integer.MAX_VALUE;
+        private int maxAttachmentBytesPerTestCase = Integer.MAX_VALUE;
+        private int maxAttachmentLinesPerTestCase = Integer.MAX_VALUE;
+        private @Nullable Path attachmentsDirectory;
+        private @Nullable FormatterMetrics metrics;
 
         private Builder() {
         }
 
-        private static Function<String, String> removePrefix(String prefix) {
-            // TODO: Needs coverage
-            return s -> {
-                if (s.startsWith(prefix)) {
-                    return s.substring(prefix.length());
-                }
-                return s;
-            };
-        }
-
         /**
          * Adds a theme to the pretty writer.
          */
@@ -134,10 +239,186 @@ public final class MessagesToPrettyWriter implements AutoCloseable {
          * <p>
          * The typical usage would be to trim the current working directory.
          * This makes the report more readable.
+         *
+         * @see #replaceUriPrefix(String, String)
          */
         public Builder removeUriPrefix(String prefix) {
-            // TODO: Needs coverage
-            this.uriFormatter = removePrefix(requireNonNull(prefix));
+            return replaceUriPrefix(prefix, "");
+        }
+
+        /**
+         * Replaces a given prefix of all URI locations.
+         * <p>
+         * Can be used multiple times, e.g. to shorten the URIs of several
+         * modules or schemes. Only the longest matching prefix of a URI is
+         * replaced. Replacing the same prefix again overrides the earlier
+         * replacement.
+         */
+        public Builder replaceUriPrefix(String prefix, String replacement) {
+            uriFormatter.replacePrefix(requireNonNull(prefix), requireNonNull(replacement));
+            return this;
+        }
+
+        /**
+         * Prints the output captured by the interceptor under the scenario
+         * that wrote it.
+         * <p>
+         * The interceptor must use {@link InterferenceInterceptor.Mode#CAPTURE}.
+         * The runner associates the thread that executes a test case with
+         * its id by calling {@link InterferenceInterceptor#beginCapture(String)}.
+         * Messages can be written from any thread, one message at a time.
+         */
+        public Builder captureOutput(InterferenceInterceptor interceptor) {
+            this.capture = requireNonNull(interceptor).capture();
+            return this;
+        }
+
+        /**
+         * Limits the number of rows printed for each data table.
+         * <p>
+         * The remaining rows are summarized in a single line. By default,
+         * all rows are printed.
+         */
+        public Builder maxTableRows(int maxTableRows) {
+            if (maxTableRows < 1) {
+                throw new IllegalArgumentException("maxTableRows must be a positive value");
+            }
+            this.maxTableRows = maxTableRows;
+            return this;
+        }
+
+        /**
+         * Limits the width of data table cells.
+         * <p>
+         * Wider cells are truncated and end with an ellipsis. By default,
+         * cells are not truncated.
+         */
+        public Builder maxTableCellWidth(int maxTableCellWidth) {
+            if (maxTableCellWidth < 1) {
+                throw new IllegalArgumentException("maxTableCellWidth must be a positive value");
+            }
+            this.maxTableCellWidth = maxTableCellWidth;
+            return this;
+        }
+
+        /**
+         * Limits the number of lines printed for each doc string.
+         * <p>
+         * The remaining lines are summarized in a single line. By default,
+         * all lines are printed.
+         */
+        public Builder maxDocStringLines(int maxDocStringLines) {
+            if (maxDocStringLines < 1) {
+                throw new IllegalArgumentException("maxDocStringLines must be a positive value");
+            }
+            this.maxDocStringLines = maxDocStringLines;
+            return this;
+        }
+
+        /**
+         * Folds consecutive stack frames of classes in the given packages
+         * into a single line.
+         * <p>
+         * Typically used to hide the frames of the test framework, e.g.
+         * {@code org.junit} or {@code io.cucumber.core}. Packages match
+         * whole segments, {@code org.junit} also matches
+         * {@code org.junit.platform} but not {@code org.junitx}.
+         */
+        public Builder foldStackTraceFramesOf(String... packages) {
+            for (String name : requireNonNull(packages)) {
+                foldedPackages.add(requireNonNull(name));
+            }
+            return this;
+        }
+
+        /**
+         * Limits the number of lines printed for each stack trace.
+         * <p>
+         * The remaining lines are summarized in a single line. By default,
+         * all lines are printed.
+         */
+        public Builder maxStackTraceLines(int maxStackTraceLines) {
+            if (maxStackTraceLines < 1) {
+                throw new IllegalArgumentException("maxStackTraceLines must be a positive value");
+            }
+            this.maxStackTraceLines = maxStackTraceLines;
+            return this;
+        }
+
+        /**
+         * Limits the size of each text attachment.
+         * <p>
+         * Text beyond the limit is summarized in a single line. By default,
+         * attachments are printed in full.
+         */
+        public Builder maxAttachmentBytes(int maxAttachmentBytes) {
+            if (maxAttachmentBytes < 1) {
+                throw new IllegalArgumentException("maxAttachmentBytes must be a positive value");
+            }
+            this.maxAttachmentBytes = maxAttachmentBytes;
+            return this;
+        }
+
+        /**
+         * Limits the number of lines printed for each text attachment.
+         *
+         * @see #maxAttachmentBytes(int)
+         */
+        public Builder maxAttachmentLines(int maxAttachmentLines) {
+            if (maxAttachmentLines < 1) {
+                throw new IllegalArgumentException("maxAttachmentLines must be a positive value");
+            }
+            this.maxAttachmentLines = maxAttachmentLines;
+            return this;
+        }
+
+        /**
+         * Limits the size of all text attachments of a test case together.
+         *
+         * @see #maxAttachmentBytes(int)
+         */
+        public Builder maxAttachmentBytesPerTestCase(int maxAttachmentBytesPerTestCase) {
+            if (maxAttachmentBytesPerTestCase < 1) {
+                throw new IllegalArgumentException("maxAttachmentBytesPerTestCase must be a positive value");
+            }
+            this.maxAttachmentBytesPerTestCase = maxAttachmentBytesPerTestCase;
+            return this;
+        }
+
+        /**
+         * Limits the number of lines of all text attachments of a test case
+         * together.
+         *
+         * @see #maxAttachmentBytes(int)
+         */
+        public Builder maxAttachmentLinesPerTestCase(int maxAttachmentLinesPerTestCase) {
+            if (maxAttachmentLinesPerTestCase < 1) {
+                throw new IllegalArgumentException("maxAttachmentLinesPerTestCase must be a positive value");
+            }
+            this.maxAttachmentLinesPerTestCase = maxAttachmentLinesPerTestCase;
+            return this;
+        }
+
+        /**
+         * Writes attachments to files in the directory instead of printing
+         * them.
+         * <p>
+         * Each attachment is printed as a reference to its file. Files are
+         * named after the SHA-256 hash of their content, so attachments with
+         * the same content are stored once, also across runs. The files are
+         * written in the background, they are complete when the writer is
+         * closed.
+         */
+        public Builder attachmentsDirectory(Path attachmentsDirectory) {
+            this.attachmentsDirectory = requireNonNull(attachmentsDirectory);
+            return this;
+        }
+
+        /**
+         * Records the overhead of the writer in the metrics.
+         */
+        public Builder metrics(FormatterMetrics metrics) {
+            this.metrics = requireNonNull(metrics);
             return this;
         }
 
@@ -154,12 +435,40 @@ public final class MessagesToPrettyWriter implements AutoCloseable {
         }
 
         public MessagesToPrettyWriter build(OutputStream out) {
+            return build(out, null, null);
+        }
+
+        /**
+         * Builds a writer that uses a repository updated by its owner, and
+         * attachment sinks closed by their owner.
+         */
+        MessagesToPrettyWriter build(OutputStream out, @Nullable Repository sharedRepository, @Nullable AttachmentSinks sharedSinks) {
             requireNonNull(out);
             Set<PrettyFeature> features = EnumSet.copyOf(this.features);
             if (!theme.hasStatusIcons()) {
                 features.remove(USE_STATUS_ICON);
             }
-            return new MessagesToPrettyWriter(out, theme, uriFormatter, features);
+            PickleTableFormatter pickleTableFormatter = PickleTableFormatter.builder()
+                    .maxRows(maxTableRows)
+                    .maxCellWidth(maxTableCellWidth)
+                    .build();
+            PickleDocStringFormatter pickleDocStringFormatter = PickleDocStringFormatter.builder()
+                    .maxLines(maxDocStringLines)
+                    .build();
+            ExceptionFormatter exceptionFormatter = ExceptionFormatter.builder()
+                    .excludeFramesOf(new ArrayList<>(foldedPackages))
+                    .maxLines(maxStackTraceLines)
+                    .build();
+            AttachmentFormatter attachmentFormatter = AttachmentFormatter.builder()
+                    .maxBytes(maxAttachmentBytes)
+                    .maxLines(maxAttachmentLines)
+                    .maxBytesPerTestCase(maxAttachmentBytesPerTestCase)
+                    .maxLinesPerTestCase(maxAttachmentLinesPerTestCase)
+                    .directory(attachmentsDirectory)
+                    .metrics(metrics)
+                    .sharedSinks(sharedSinks)
+                    .build();
+            return new MessagesToPrettyWriter(new MeteredOutputStream(out, metrics), theme, uriFormatter.build(), features, pickleTableFormatter, pickleDocStringFormatter, exceptionFormatter, attachmentFormatter, capture, metrics, sharedRepository);
         }
     }
 
@@ -1,19 +1,46 @@
 package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.Envelope;
+import io.cucumber.query.Repository;
+
+import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
+import static io.cucumber.prettyformatter.MessagesToProgressWriter.ProgressFeature.UPDATE_LANES_IN_PLACE;
+import static io.cucumber.prettyformatter.MessagesToProgressWriter.ProgressFeature.USE_WORKER_LANES;
 import static java.util.Objects.requireNonNull;
 
-public final class MessagesToProgressWriter implements AutoCloseable {
+public final class MessagesToProgressWriter implements MessagesWriter {
 
-    private final ProgressWriter writer;
+    private final @Nullable ProgressWriter writer;
+    private final @Nullable WorkerLaneWriter laneWriter;
+    private final @Nullable FormatterMetrics metrics;
+    private final Set<EnvelopeType> envelopeTypes;
+    private final EnvelopeType[] probeOrder;
     private boolean streamClosed = false;
 
-    private MessagesToProgressWriter(OutputStream out, Theme theme, int maxWidth) {
-        this.writer = new ProgressWriter(out, theme, maxWidth);
+    private MessagesToProgressWriter(OutputStream out, Theme theme, int maxWidth, Set<ProgressFeature> features, Duration snapshotInterval, @Nullable FormatterMetrics metrics, @Nullable Repository sharedRepository) {
+        this.metrics = metrics;
+        if (features.contains(USE_WORKER_LANES)) {
+            this.writer = null;
+            this.laneWriter = new WorkerLaneWriter(out, theme, maxWidth, features.contains(UPDATE_LANES_IN_PLACE), snapshotInterval, sharedRepository);
+            this.envelopeTypes = Collections.unmodifiableSet(EnvelopeType.queried());
+        } else {
+            this.writer = new ProgressWriter(out, theme, maxWidth);
+            this.laneWriter = null;
+            this.envelopeTypes = Collections.unmodifiableSet(EnumSet.of(
+                    EnvelopeType.TEST_RUN_HOOK_FINISHED,
+                    EnvelopeType.TEST_STEP_FINISHED,
+                    EnvelopeType.TEST_RUN_FINISHED
+            ));
+        }
+        this.probeOrder = EnvelopeType.probeOrder(envelopeTypes);
     }
 
     public static MessagesToProgressWriter.Builder builder() {
@@ -26,13 +53,54 @@ public final class MessagesToProgressWriter implements AutoCloseable {
      * @param envelope the message
      * @throws IOException if an IO error occurs
      */
+    @Override
     public void write(Envelope envelope) throws IOException {
+        write(EnvelopeType.of(envelope, probeOrder), envelope);
+    }
+
+    /**
+     * Writes a message of which the type is known, e.g. by a
+     * {@link CompositeMessagesWriter}.
+     */
+    void write(EnvelopeType type, Envelope envelope) throws IOException {
         if (streamClosed) {
             throw new IOException("Stream closed");
         }
-        envelope.getTestRunHookFinished().ifPresent(writer::write);
-        envelope.getTestStepFinished().ifPresent(writer::write);
-        envelope.getTestRunFinished().ifPresent(writer::write);
+        if (!envelopeTypes.contains(type)) {
+            return;
+        }
+        if (metrics == null) {
+            handle(type, envelope);
+            return;
+        }
+        long start = System.nanoTime();
+        handle(type, envelope);
+        metrics.recordEnvelope(type, System.nanoTime() - start);
+    }
+
+    private void handle(EnvelopeType type, Envelope envelope) {
+        if (laneWriter != null) {
+            laneWriter.update(envelope);
+        }
+        if (writer != null) {
+            switch (type) {
+                case TEST_RUN_HOOK_FINISHED -> writer.write(envelope.getTestRunHookFinished().orElseThrow());
+                case TEST_STEP_FINISHED -> writer.write(envelope.getTestStepFinished().orElseThrow());
+                case TEST_RUN_FINISHED -> writer.write(envelope.getTestRunFinished().orElseThrow());
+                default -> {
+                    // Not shown as progress
+                }
+            }
+        }
+    }
+
+    /**
+     * The types of messages used by this writer, other messages are ignored.
+     * Worker lanes use the messages about test cases and their steps.
+     */
+    @Override
+    public Set<EnvelopeType> envelopeTypes() {
+        return envelopeTypes;
     }
 
     /**
@@ -47,19 +115,51 @@ public final class MessagesToProgressWriter implements AutoCloseable {
         }
 
         try {
-            writer.close();
+            if (laneWriter != null) {
+                laneWriter.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
         } finally {
             streamClosed = true;
         }
     }
 
+    public enum ProgressFeature {
+        /**
+         * Writes one lane per worker instead of a single line of progress
+         * icons.
+         * <p>
+         * Each lane shows the scenario a worker is currently executing and how
+         * long it has been running. When executing in parallel this makes it
+         * possible to spot slow scenarios and unevenly loaded workers while
+         * the test run is still going.
+         */
+        USE_WORKER_LANES,
+
+        /**
+         * Redraws the worker lanes in place.
+         * <p>
+         * Requires a terminal that supports ANSI cursor movement. When
+         * disabled, a snapshot of the lanes is written periodically instead.
+         *
+         * @see #USE_WORKER_LANES
+         * @see Builder#snapshotInterval(Duration)
+         */
+        UPDATE_LANES_IN_PLACE
+    }
 
     public static final class Builder {
 
         private static final int DEFAULT_MAX_WIDTH = 80;
+        private static final Duration DEFAULT_SNAPSHOT_INTERVAL = Duration.ofSeconds(10);
+        private final EnumSet<ProgressFeature> features = EnumSet.noneOf(ProgressFeature.class);
         // Without any progress icons, there is no output
         private Theme theme = Theme.plain();
         private int maxWidth = DEFAULT_MAX_WIDTH;
+        private Duration snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        private @Nullable FormatterMetrics metrics;
 
         private Builder() {
         }
@@ -85,9 +185,55 @@ public final class MessagesToProgressWriter implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Sets the interval between snapshots of the worker lanes.
+         * <p>
+         * Only used when the lanes are not updated in place. The interval is
+         * measured using the timestamps of the messages. Defaults to 10
+         * seconds.
+         *
+         * @see ProgressFeature#USE_WORKER_LANES
+         */
+        public Builder snapshotInterval(Duration snapshotInterval) {
+            requireNonNull(snapshotInterval);
+            if (snapshotInterval.isNegative() || snapshotInterval.isZero()) {
+                throw new IllegalArgumentException("snapshotInterval must be a positive value");
+            }
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
+        /**
+         * Records the overhead of the writer in the metrics.
+         */
+        public Builder metrics(FormatterMetrics metrics) {
+            this.metrics = requireNonNull(metrics);
+            return this;
+        }
+
+        /**
+         * Toggles a given feature.
+         */
+        public Builder feature(ProgressFeature feature, boolean enabled) {
+            if (enabled) {
+                features.add(feature);
+            } else {
+                features.remove(feature);
+            }
+            return this;
+        }
+
         public MessagesToProgressWriter build(OutputStream out) {
+            return build(out, null);
+        }
+
+        /**
+         * Builds a writer that uses a repository updated by its owner.
+         */
+        MessagesToProgressWriter build(OutputStream out, @Nullable Repository sharedRepository) {
             requireNonNull(out);
-            return new MessagesToProgressWriter(out, theme, maxWidth);
+            Set<ProgressFeature> features = EnumSet.copyOf(this.features);
+            return new MessagesToProgressWriter(new MeteredOutputStream(out, metrics), theme, maxWidth, features, snapshotInterval, metrics, sharedRepository);
         }
     }
 }
@@ -2,10 +2,15 @@ package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.Envelope;
 import io.cucumber.query.Repository;
+import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -23,27 +28,60 @@ import static java.util.Objects.requireNonNull;
  * Note: Messages are first collected and only written once the stream is
  * closed.
  */
-public final class MessagesToSummaryWriter implements AutoCloseable {
-
-    private final Repository repository = Repository.builder()
-            .feature(RepositoryFeature.INCLUDE_ATTACHMENTS, true)
-            .feature(INCLUDE_HOOKS, true)
-            .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
-            .feature(INCLUDE_STEP_DEFINITIONS, true)
-            .feature(INCLUDE_SUGGESTIONS, true)
-            .feature(INCLUDE_UNDEFINED_PARAMETER_TYPES, true)
-            .build();
-    private final OutputStream out;
+public final class MessagesToSummaryWriter implements MessagesWriter {
+
+    private final Repository repository;
+    private final boolean updatesRepository;
+    private final MeteredOutputStream out;
     private final Theme theme;
     private final Function<String, String> uriFormatter;
     private final Set<SummaryFeature> features;
+    private final ExceptionFormatter exceptionFormatter;
+    private final AttachmentFormatter attachmentFormatter;
+    private final @Nullable FormatterMetrics metrics;
+    private final Set<EnvelopeType> envelopeTypes;
+    private final EnvelopeType[] probeOrder;
     private boolean streamClosed = false;
 
-    private MessagesToSummaryWriter(OutputStream out, Theme theme, Function<String, String> uriFormatter, Set<SummaryFeature> features) {
+    private MessagesToSummaryWriter(MeteredOutputStream out, Theme theme, Function<String, String> uriFormatter, Set<SummaryFeature> features, ExceptionFormatter exceptionFormatter, AttachmentFormatter attachmentFormatter, @Nullable FormatterMetrics metrics, @Nullable Repository sharedRepository) {
+        this.repository = sharedRepository == null ? createRepository() : sharedRepository;
+        this.updatesRepository = sharedRepository == null;
         this.out = out;
         this.theme = theme;
         this.uriFormatter = uriFormatter;
         this.features = features;
+        this.exceptionFormatter = exceptionFormatter;
+        this.attachmentFormatter = attachmentFormatter;
+        this.metrics = metrics;
+        this.envelopeTypes = envelopeTypesOf(features);
+        this.probeOrder = EnvelopeType.probeOrder(envelopeTypes);
+    }
+
+    /**
+     * Creates a repository with everything used by the summary.
+     */
+    static Repository createRepository() {
+        return Repository.builder()
+                .feature(RepositoryFeature.INCLUDE_ATTACHMENTS, true)
+                .feature(INCLUDE_HOOKS, true)
+                .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
+                .feature(INCLUDE_STEP_DEFINITIONS, true)
+                .feature(INCLUDE_SUGGESTIONS, true)
+                .feature(INCLUDE_UNDEFINED_PARAMETER_TYPES, true)
+                .build();
+    }
+
+    private static Set<EnvelopeType> envelopeTypesOf(Set<SummaryFeature> features) {
+        EnumSet<EnvelopeType> envelopeTypes = EnvelopeType.queried();
+        envelopeTypes.add(EnvelopeType.GHERKIN_DOCUMENT);
+        envelopeTypes.add(EnvelopeType.STEP_DEFINITION);
+        envelopeTypes.add(EnvelopeType.HOOK);
+        envelopeTypes.add(EnvelopeType.SUGGESTION);
+        envelopeTypes.add(EnvelopeType.UNDEFINED_PARAMETER_TYPE);
+        if (features.contains(SummaryFeature.INCLUDE_ATTACHMENTS)) {
+            envelopeTypes.add(EnvelopeType.ATTACHMENT);
+        }
+        return Collections.unmodifiableSet(envelopeTypes);
     }
 
     public static Builder builder() {
@@ -56,13 +94,45 @@ public final class MessagesToSummaryWriter implements AutoCloseable {
      * @param envelope the message
      * @throws IOException if an IO error occurs
      */
+    @Override
     public void write(Envelope envelope) throws IOException {
+        write(EnvelopeType.of(envelope, probeOrder), envelope);
+    }
+
+    /**
+     * Writes a message of which the type is known, e.g. by a
+     * {@link CompositeMessagesWriter}.
+     */
+    void write(EnvelopeType type, Envelope envelope) throws IOException {
         if (streamClosed) {
             throw new IOException("Stream closed");
         }
-        repository.update(envelope);
+        if (!envelopeTypes.contains(type)) {
+            return;
+        }
+        if (metrics == null) {
+            update(envelope);
+            return;
+        }
+        long start = System.nanoTime();
+        update(envelope);
+        metrics.recordEnvelope(type, System.nanoTime() - start);
+    }
+
+    private void update(Envelope envelope) {
+        if (updatesRepository) {
+            repository.update(envelope);
+        }
     }
 
+    /**
+     * The types of messages used by this writer, other messages are ignored.
+     * Depends on whether attachments are included.
+     */
+    @Override
+    public Set<EnvelopeType> envelopeTypes() {
+        return envelopeTypes;
+    }
 
     /**
      * Closes the stream, flushing it first. Once closed further write()
@@ -75,18 +145,36 @@ public final class MessagesToSummaryWriter implements AutoCloseable {
             return;
         }
         
-        try (SummaryReportWriter writer = new SummaryReportWriter(out, theme, uriFormatter, features, repository)){
-            writer.printSummary();
+        try {
+            if (FlightRecording.AVAILABLE) {
+                SummaryRenderedEvent.record(out, this::printSummary);
+            } else {
+                printSummary();
+            }
         } finally {
             streamClosed = true;
         }
     }
 
+    private void printSummary() {
+        try (SummaryReportWriter writer = new SummaryReportWriter(out, theme, uriFormatter, features, exceptionFormatter, attachmentFormatter, repository)) {
+            writer.printSummary();
+        }
+    }
+
     public enum SummaryFeature {
         /**
          * Include attachment lines.
          */
-        INCLUDE_ATTACHMENTS
+        INCLUDE_ATTACHMENTS,
+
+        /**
+         * Writes only the ANSI escape codes needed to change the style
+         * between fragments of text.
+         * <p>
+         * The output looks the same but is smaller. Disabled by default.
+         */
+        USE_COMPACT_ANSI
     }
 
     public static final class Builder {
@@ -95,21 +183,19 @@ public final class MessagesToSummaryWriter implements AutoCloseable {
                 SummaryFeature.INCLUDE_ATTACHMENTS
         );
         private Theme theme = Theme.none();
-        private Function<String, String> uriFormatter = Function.identity();
+        private final UriFormatter.Builder uriFormatter = UriFormatter.builder();
+        private final List<String> foldedPackages = new ArrayList<>();
+        private int maxStackTraceLines = Integer.MAX_VALUE;
+        private int maxAttachmentBytes = Integer.MAX_VALUE;
+        private int maxAttachmentLines = Integer.MAX_VALUE;
+        private int maxAttachmentBytesPerTestCase = Integer.MAX_VALUE;
+        private int maxAttachmentLinesPerTestCase = Integer.MAX_VALUE;
+        private @Nullable Path attachmentsDirectory;
+        private @Nullable FormatterMetrics metrics;
 
         private Builder() {
         }
 
-        private static Function<String, String> removePrefix(String prefix) {
-            // TODO: Needs coverage
-            return s -> {
-                if (s.startsWith(prefix)) {
-                    return s.substring(prefix.length());
-                }
-                return s;
-            };
-        }
-
         /**
          * Adds a theme to the summary writer.
          */
@@ -123,10 +209,130 @@ public final class MessagesToSummaryWriter implements AutoCloseable {
          * <p>
          * The typical usage would be to trim the current working directory.
          * This makes the report more readable.
+         *
+         * @see #replaceUriPrefix(String, String)
          */
         public Builder removeUriPrefix(String prefix) {
-            // TODO: Needs coverage
-            this.uriFormatter = removePrefix(requireNonNull(prefix));
+            return replaceUriPrefix(prefix, "");
+        }
+
+        /**
+         * Replaces a given prefix of all URI locations.
+         * <p>
+         * Can be used multiple times, e.g. to shorten the URIs of several
+         * modules or schemes. Only the longest matching prefix of a URI is
+         * replaced. Replacing the same prefix again overrides the earlier
+         * replacement.
+         */
+        public Builder replaceUriPrefix(String prefix, String replacement) {
+            uriFormatter.replacePrefix(requireNonNull(prefix), requireNonNull(replacement));
+            return this;
+        }
+
+        /**
+         * Folds consecutive stack frames of classes in the given packages
+         * into a single line.
+         * <p>
+         * Typically used to hide the frames of the test framework, e.g.
+         * {@code org.junit} or {@code io.cucumber.core}. Packages match
+         * whole segments, {@code org.junit} also matches
+         * {@code org.junit.platform} but not {@code org.junitx}.
+         */
+        public Builder foldStackTraceFramesOf(String... packages) {
+            for (String name : requireNonNull(packages)) {
+                foldedPackages.add(requireNonNull(name));
+            }
+            return this;
+        }
+
+        /**
+         * Limits the number of lines printed for each stack trace.
+         * <p>
+         * The remaining lines are summarized in a single line. By default,
+         * all lines are printed.
+         */
+        public Builder maxStackTraceLines(int maxStackTraceLines) {
+            if (maxStackTraceLines < 1) {
+                throw new IllegalArgumentException("maxStackTraceLines must be a positive value");
+            }
+            this.maxStackTraceLines = maxStackTraceLines;
+            return this;
+        }
+
+        /**
+         * Limits the size of each text attachment.
+         * <p>
+         * Text beyond the limit is summarized in a single line. By default,
+         * attachments are printed in full.
+         */
+        public Builder maxAttachmentBytes(int maxAttachmentBytes) {
+            if (maxAttachmentBytes < 1) {
+                throw new IllegalArgumentException("maxAttachmentBytes must be a positive value");
+            }
+            this.maxAttachmentBytes = maxAttachmentBytes;
+            return this;
+        }
+
+        /**
+         * Limits the number of lines printed for each text attachment.
+         *
+         * @see #maxAttachmentBytes(int)
+         */
+        public Builder maxAttachmentLines(int maxAttachmentLines) {
+            if (maxAttachmentLines < 1) {
+                throw new IllegalArgumentException("maxAttachmentLines must be a positive value");
+            }
+            this.maxAttachmentLines = maxAttachmentLines;
+            return this;
+        }
+
+        /**
+         * Limits the size of all text attachments of a test case together.
+         *
+         * @see #maxAttachmentBytes(int)
+         */
+        public Builder maxAttachmentBytesPerTestCase(int maxAttachmentBytesPerTestCase) {
+            if (maxAttachmentBytesPerTestCase < 1) {
+                throw new IllegalArgumentException("maxAttachmentBytesPerTestCase must be a positive value");
+            }
+            this.maxAttachmentBytesPerTestCase = maxAttachmentBytesPerTestCase;
+            return this;
+        }
+
+        /**
+         * Limits the number of lines of all text attachments of a test case
+         * together.
+         *
+         * @see #maxAttachmentBytes(int)
+         */
+        public Builder maxAttachmentLinesPerTestCase(int maxAttachmentLinesPerTestCase) {
+            if (maxAttachmentLinesPerTestCase < 1) {
+                throw new IllegalArgumentException("maxAttachmentLinesPerTestCase must be a positive value");
+            }
+            this.maxAttachmentLinesPerTestCase = maxAttachmentLinesPerTestCase;
+            return this;
+        }
+
+        /**
+         * Writes attachments to files in the directory instead of printing
+         * them.
+         * <p>
+         * Each attachment is printed as a reference to its file. Files are
+         * named after the SHA-256 hash of their content, so attachments with
+         * the same content are stored once, also across runs. The files are
+         * written in the background, they are complete when the writer is
+         * closed.
+         */
+        public Builder attachmentsDirectory(Path attachmentsDirectory) {
+            this.attachmentsDirectory = requireNonNull(attachmentsDirectory);
+            return this;
+        }
+
+        /**
+         * Records the overhead of the writer in the metrics.
+         */
+        public Builder metrics(FormatterMetrics metrics) {
+            this.metrics = requireNonNull(metrics);
             return this;
         }
 
@@ -143,9 +349,30 @@ public final class MessagesToSummaryWriter implements AutoCloseable {
         }
 
         public MessagesToSummaryWriter build(OutputStream out) {
+            return build(out, null, null);
+        }
+
+        /**
+         * Builds a writer that uses a repository updated by its owner, and
+         * attachment sinks closed by their owner.
+         */
+        MessagesToSummaryWriter build(OutputStream out, @Nullable Repository sharedRepository, @Nullable AttachmentSinks sharedSinks) {
             requireNonNull(out);
             Set<SummaryFeature> features = EnumSet.copyOf(this.features);
-            return new MessagesToSummaryWriter(out, theme, uriFormatter, features);
+            ExceptionFormatter exceptionFormatter = ExceptionFormatter.builder()
+                    .excludeFramesOf(new ArrayList<>(foldedPackages))
+                    .maxLines(maxStackTraceLines)
+                    .build();
+            AttachmentFormatter attachmentFormatter = AttachmentFormatter.builder()
+                    .maxBytes(maxAttachmentBytes)
+                    .maxLines(maxAttachmentLines)
+                    .maxBytesPerTestCase(maxAttachmentBytesPerTestCase)
+                    .maxLinesPerTestCase(maxAttachmentLinesPerTestCase)
+                    .directory(attachmentsDirectory)
+                    .metrics(metrics)
+                    .sharedSinks(sharedSinks)
+                    .build();
+            return new MessagesToSummaryWriter(new MeteredOutputStream(out, metrics), theme, uriFormatter.build(), features, exceptionFormatter, attachmentFormatter, metrics, sharedRepository);
         }
     }
 
@@ -0,0 +1,47 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Writes a report of the messages of a test run.
+ *
+ * @see CompositeMessagesWriter
+ * @see MessagesToPrettyWriter
+ * @see MessagesToProgressWriter
+ * @see MessagesToSummaryWriter
+ */
+public interface MessagesWriter extends AutoCloseable {
+
+    /**
+     * Writes a cucumber message to the report.
+     *
+     * @param envelope the message
+     * @throws IOException if an IO error occurs
+     */
+    void write(Envelope envelope) throws IOException;
+
+    /**
+     * Returns the types of messages used by this writer.
+     * <p>
+     * Other messages are ignored by the writer, a producer of messages may
+     * skip creating and writing them. Defaults to all types.
+     *
+     * @return an unmodifiable set of message types
+     */
+    default Set<EnvelopeType> envelopeTypes() {
+        return Collections.unmodifiableSet(EnumSet.allOf(EnvelopeType.class));
+    }
+
+    /**
+     * Closes the stream, flushing it first. Once closed further write()
+     * invocations will cause an IOException to be thrown. Closing a closed
+     * stream has no effect.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,70 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to an output stream.
+ * <p>
+ * Records the bytes written, the flushes and the time spent in the output
+ * stream in the metrics, if any. Emits an {@link OutputFlushedEvent} when
+ * flight recording is available.
+ */
+final class MeteredOutputStream extends FilterOutputStream {
+
+    private final @Nullable FormatterMetrics metrics;
+    private long bytesWritten;
+    private long bytesFlushed;
+
+    MeteredOutputStream(OutputStream out, @Nullable FormatterMetrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (metrics == null) {
+            out.write(b);
+            bytesWritten++;
+            return;
+        }
+        long start = System.nanoTime();
+        out.write(b);
+        bytesWritten++;
+        metrics.recordWrite(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (metrics == null) {
+            out.write(b, off, len);
+            bytesWritten += len;
+            return;
+        }
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        bytesWritten += len;
+        metrics.recordWrite(len, System.nanoTime() - start);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = metrics == null ? 0 : System.nanoTime();
+        if (FlightRecording.AVAILABLE) {
+            OutputFlushedEvent.flush(out, bytesWritten - bytesFlushed);
+        } else {
+            out.flush();
+        }
+        bytesFlushed = bytesWritten;
+        if (metrics != null) {
+            metrics.recordFlush(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader.Deserializer;
+import io.cucumber.messages.types.Envelope;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the messages of a test run from an NDJSON file and writes them to
+ * one or more writers.
+ * <p>
+ * The file is memory-mapped and split into chunks of whole lines. The chunks
+ * are parsed in parallel, the messages are written by the calling thread in
+ * the order of the file. Only a few chunks are parsed ahead of the writers,
+ * so the memory used does not depend on the size of the file.
+ * <p>
+ * Before a line is parsed, its type is found by scanning the start of the
+ * line. Messages that none of the writers use are skipped without parsing
+ * them. Attachments and sources make up most of a typical file, so this
+ * saves most of the work when e.g. only progress is written.
+ * <p>
+ * The deserializer is used by several threads at once and must be thread
+ * safe.
+ *
+ * <pre>{@code
+ * var reader = NdjsonFileReader.builder(deserializer).build();
+ * try (var pretty = MessagesToPrettyWriter.builder().build(System.out);
+ *      var summary = MessagesToSummaryWriter.builder().build(System.out)) {
+ *     reader.read(Path.of("messages.ndjson"), pretty, summary);
+ * }
+ * }</pre>
+ */
+public final class NdjsonFileReader {
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    private final Deserializer deserializer;
+    private final int threads;
+    private final int chunkSize;
+
+    private NdjsonFileReader(Deserializer deserializer, int threads, int chunkSize) {
+        this.deserializer = deserializer;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    public static Builder builder(Deserializer deserializer) {
+        return new Builder(requireNonNull(deserializer));
+    }
+
+    /**
+     * Reads the messages in the file and writes each message to each writer.
+     * <p>
+     * The writers are not closed.
+     *
+     * @param file    the file with one message per line
+     * @param writers the writers to write the messages to
+     * @throws IOException if the file could not be read, a message could not
+     *                     be parsed or written
+     */
+    public void read(Path file, MessagesWriter... writers) throws IOException {
+        requireNonNull(file);
+        requireNonNull(writers);
+        Set<EnvelopeType> envelopeTypes = envelopeTypesOf(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ParserThreadFactory());
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            Deque<Future<List<Envelope>>> pending = new ArrayDeque<>();
+            long start = 0;
+            while (start < size || !pending.isEmpty()) {
+                while (start < size && pending.size() < threads * CHUNKS_AHEAD_PER_THREAD) {
+                    long end = findChunkEnd(channel, start, size);
+                    pending.add(executor.submit(new ChunkParser(file, channel, start, end, envelopeTypes)));
+                    start = end;
+                }
+                for (Envelope envelope : await(pending.remove())) {
+                    for (MessagesWriter writer : writers) {
+                        writer.write(envelope);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Set<EnvelopeType> envelopeTypesOf(MessagesWriter... writers) {
+        EnumSet<EnvelopeType> envelopeTypes = EnumSet.noneOf(EnvelopeType.class);
+        for (MessagesWriter writer : writers) {
+            envelopeTypes.addAll(writer.envelopeTypes());
+        }
+        return envelopeTypes;
+    }
+
+    /**
+     * Finds the end of the first line that ends at least chunk size bytes
+     * after the start of the chunk. A line longer than the chunk size
+     * becomes a chunk of its own.
+     */
+    private long findChunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = start + chunkSize;
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == NEW_LINE) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static List<Envelope> await(Future<List<Envelope>> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing messages");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Finds the type of the message on a line from the name of the first
+     * field of the envelope. Returns {@link EnvelopeType#UNKNOWN} when the
+     * line does not start like an envelope.
+     */
+    private static EnvelopeType scanEnvelopeType(ByteBuffer buffer, int start, int length) {
+        int end = start + length;
+        int i = skipWhitespace(buffer, start, end);
+        if (i == end || buffer.get(i) != '{') {
+            return EnvelopeType.UNKNOWN;
+        }
+        i = skipWhitespace(buffer, i + 1, end);
+        if (i == end || buffer.get(i) != '"') {
+            return EnvelopeType.UNKNOWN;
+        }
+        int nameStart = i + 1;
+        int nameEnd = nameStart;
+        while (nameEnd < end && buffer.get(nameEnd) != '"') {
+            nameEnd++;
+        }
+        if (nameEnd == end) {
+            return EnvelopeType.UNKNOWN;
+        }
+        return EnvelopeType.ofFieldName(buffer, nameStart, nameEnd - nameStart);
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        while (i < end && isWhitespace(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class ChunkParser implements Callable<List<Envelope>> {
+        private final Path file;
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final Set<EnvelopeType> envelopeTypes;
+
+        ChunkParser(Path file, FileChannel channel, long start, long end, Set<EnvelopeType> envelopeTypes) {
+            this.file = file;
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.envelopeTypes = envelopeTypes;
+        }
+
+        @Override
+        public List<Envelope> call() throws IOException {
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("The line at byte %d of %s is too long".formatted(start, file));
+            }
+            MappedByteBuffer buffer = channel.map(READ_ONLY, start, end - start);
+            List<Envelope> envelopes = new ArrayList<>();
+            byte[] line = new byte[0];
+            int lineStart = 0;
+            int limit = buffer.limit();
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != NEW_LINE) {
+                    lineEnd++;
+                }
+                int length = lineEnd - lineStart;
+                if (length > 0 && buffer.get(lineEnd - 1) == CARRIAGE_RETURN) {
+                    length--;
+                }
+                if (!isBlank(buffer, lineStart, length) && isUsed(scanEnvelopeType(buffer, lineStart, length))) {
+                    if (line.length < length) {
+                        line = new byte[length];
+                    }
+                    buffer.get(lineStart, line, 0, length);
+                    envelopes.add(parse(new String(line, 0, length, UTF_8), start + lineStart));
+                }
+                lineStart = lineEnd + 1;
+            }
+            return envelopes;
+        }
+
+        private boolean isUsed(EnvelopeType envelopeType) {
+            // Unknown messages are parsed to report malformed lines
+            return envelopeType == EnvelopeType.UNKNOWN || envelopeTypes.contains(envelopeType);
+        }
+
+        private Envelope parse(String json, long position) throws IOException {
+            try {
+                return deserializer.readValue(json);
+            } catch (IOException e) {
+                throw new IOException("Could not parse the message at byte %d of %s".formatted(position, file), e);
+            }
+        }
+    }
+
+    private static final class ParserThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cucumber-ndjson-parser-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    public static final class Builder {
+
+        private final Deserializer deserializer;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = 1024 * 1024;
+
+        private Builder(Deserializer deserializer) {
+            this.deserializer = deserializer;
+        }
+
+        /**
+         * Sets the number of threads that parse messages.
+         * <p>
+         * Defaults to the number of available processors.
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be a positive value");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes of the chunks of lines that are parsed by
+         * a thread at once. A chunk extends to the end of its last line.
+         * <p>
+         * Defaults to 1 MiB.
+         */
+        public Builder chunkSize(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("chunkSize must be a positive value");
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        public NdjsonFileReader build() {
+            return new NdjsonFileReader(deserializer, threads, chunkSize);
+        }
+    }
+}
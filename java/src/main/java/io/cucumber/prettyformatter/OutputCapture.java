@@ -0,0 +1,224 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Captures output written by the thread that executes a test case.
+ * <p>
+ * The runner associates a thread with a test case by calling
+ * {@link #begin(String)} on that thread, with the id of the test case
+ * started message. Output written by threads that are not associated with a
+ * test case is passed through. The captured output is drained by id, from
+ * any thread.
+ * <p>
+ * Up to {@code limit} bytes are kept in memory for each test case. Any
+ * output beyond that is written to a file in the spill directory.
+ */
+final class OutputCapture {
+
+    private final ThreadLocal<@Nullable TestCaseOutput> outputOfCurrentThread = new ThreadLocal<>();
+    private final Map<String, TestCaseOutput> outputByTestCaseStartedId = new ConcurrentHashMap<>();
+    private final int limit;
+    private final Path spillDirectory;
+
+    OutputCapture(int limit, Path spillDirectory) {
+        this.limit = limit;
+        this.spillDirectory = requireNonNull(spillDirectory);
+    }
+
+    /**
+     * Creates a stream that captures output encoded in the charset.
+     */
+    OutputStream createStream(OutputStream fallback, Charset charset) {
+        return new CapturingStream(fallback, charset);
+    }
+
+    /**
+     * Associates the current thread with the test case.
+     */
+    void begin(String testCaseStartedId) {
+        TestCaseOutput output = outputByTestCaseStartedId.computeIfAbsent(testCaseStartedId, id -> new TestCaseOutput());
+        outputOfCurrentThread.set(output);
+    }
+
+    /**
+     * Stops associating the current thread with a test case.
+     */
+    void end() {
+        outputOfCurrentThread.remove();
+    }
+
+    /**
+     * Returns the output captured since the last time it was drained.
+     */
+    Optional<String> drain(String testCaseStartedId) {
+        TestCaseOutput output = outputByTestCaseStartedId.get(testCaseStartedId);
+        return output == null ? Optional.empty() : output.drain();
+    }
+
+    /**
+     * Returns the remaining captured output and stops capturing for the
+     * test case.
+     */
+    Optional<String> finish(String testCaseStartedId) {
+        TestCaseOutput output = outputByTestCaseStartedId.remove(testCaseStartedId);
+        if (output == null) {
+            return Optional.empty();
+        }
+        try {
+            return output.drain();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Writes the output of all unfinished test cases to {@code out}, encoded
+     * in the charset.
+     */
+    void finishAll(OutputStream out, Charset charset) throws IOException {
+        for (String testCaseStartedId : outputByTestCaseStartedId.keySet()) {
+            Optional<String> text = finish(testCaseStartedId);
+            if (text.isPresent()) {
+                out.write(text.get().getBytes(charset));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Captured output is kept in UTF-8. Output in another charset is
+     * converted per write, a print stream writes whole characters.
+     */
+    private final class CapturingStream extends OutputStream {
+        private final OutputStream fallback;
+        private final Charset charset;
+        private final boolean utf8;
+
+        private CapturingStream(OutputStream fallback, Charset charset) {
+            this.fallback = fallback;
+            this.charset = charset;
+            this.utf8 = UTF_8.equals(charset);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            TestCaseOutput output = outputOfCurrentThread.get();
+            if (output == null) {
+                fallback.write(b, off, len);
+                return;
+            }
+            boolean captured = utf8
+                    ? output.write(b, off, len)
+                    : output.write(new String(b, off, len, charset).getBytes(UTF_8));
+            // The test case may have been finished by another thread
+            if (!captured) {
+                fallback.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            fallback.flush();
+        }
+    }
+
+    private final class TestCaseOutput {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private int captured;
+        private long spilledSinceDrain;
+        private @Nullable Path spillFile;
+        private @Nullable OutputStream spillStream;
+        private boolean closed;
+
+        boolean write(byte[] b) throws IOException {
+            return write(b, 0, b.length);
+        }
+
+        synchronized boolean write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                return false;
+            }
+            int inMemory = Math.min(len, limit - captured);
+            // Keep multibyte characters together, in memory or in the file
+            while (inMemory > 0 && inMemory < len && isContinuationByte(b[off + inMemory])) {
+                inMemory--;
+            }
+            if (inMemory > 0) {
+                buffer.write(b, off, inMemory);
+                captured += inMemory;
+            }
+            int overflow = len - inMemory;
+            if (overflow > 0) {
+                spill(b, off + len - overflow, overflow);
+                // Later output follows in the file
+                captured = limit;
+            }
+            return true;
+        }
+
+        private static boolean isContinuationByte(byte b) {
+            return (b & 0xC0) == 0x80;
+        }
+
+        private void spill(byte[] b, int off, int len) throws IOException {
+            if (spillStream == null) {
+                spillFile = Files.createTempFile(spillDirectory, "cucumber-output-", ".log");
+                spillStream = Files.newOutputStream(spillFile);
+            }
+            spillStream.write(b, off, len);
+            spilledSinceDrain += len;
+        }
+
+        synchronized Optional<String> drain() {
+            if (buffer.size() == 0 && spilledSinceDrain == 0) {
+                return Optional.empty();
+            }
+            StringBuilder text = new StringBuilder(buffer.toString(UTF_8));
+            buffer.reset();
+            if (spilledSinceDrain > 0) {
+                if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+                    text.append(System.lineSeparator());
+                }
+                text.append("[")
+                        .append(spilledSinceDrain)
+                        .append(" more bytes written to ")
+                        .append(spillFile)
+                        .append("]");
+                spilledSinceDrain = 0;
+            }
+            return Optional.of(text.toString());
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (spillStream == null) {
+                return;
+            }
+            try {
+                spillStream.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.cucumber.prettyformatter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records a flush of the output stream of a writer.
+ */
+@Name("io.cucumber.prettyformatter.OutputFlushed")
+@Label("Output Flushed")
+@Description("The output stream of a writer was flushed")
+@Category({"Cucumber", "Pretty Formatter"})
+@Enabled(false)
+@StackTrace(false)
+final class OutputFlushedEvent extends Event {
+
+    @Label("Bytes")
+    @Description("The bytes written since the previous flush")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Flushes the output stream, recording an event when enabled.
+     */
+    static void flush(OutputStream out, long bytes) throws IOException {
+        OutputFlushedEvent event = new OutputFlushedEvent();
+        if (!event.isEnabled()) {
+            out.flush();
+            return;
+        }
+        event.begin();
+        out.flush();
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
@@ -2,6 +2,10 @@ package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.PickleDocString;
 
+import static io.cucumber.prettyformatter.TextLines.countLines;
+import static io.cucumber.prettyformatter.TextLines.isLineSeparator;
+import static io.cucumber.prettyformatter.TextLines.lineEnd;
+import static io.cucumber.prettyformatter.TextLines.nextLineStart;
 import static io.cucumber.prettyformatter.Theme.Element.DOC_STRING;
 import static io.cucumber.prettyformatter.Theme.Element.DOC_STRING_CONTENT;
 import static io.cucumber.prettyformatter.Theme.Element.DOC_STRING_DELIMITER;
@@ -10,34 +14,32 @@ import static io.cucumber.prettyformatter.Theme.Element.DOC_STRING_MEDIA_TYPE;
 final class PickleDocStringFormatter {
 
     private static final String DOC_STRING_DELIMITER_STRING = "\"\"\"";
-    private final int indentation;
+    private static final String ELLIPSIS = "…";
 
-    private PickleDocStringFormatter(int indentation) {
-        this.indentation = indentation;
+    private final int maxLines;
+
+    private PickleDocStringFormatter(int maxLines) {
+        this.maxLines = maxLines;
     }
 
     static Builder builder() {
         return new Builder();
     }
 
-    void formatTo(PickleDocString pickleDocString, LineBuilder lineBuilder) {
+    void formatTo(PickleDocString pickleDocString, int indentation, LineBuilder lineBuilder) {
         lineBuilder
                 .indent(indentation)
                 .begin(DOC_STRING)
-                .append(DOC_STRING_DELIMITER, DOC_STRING_DELIMITER_STRING)
-                .accept(lb -> pickleDocString.getMediaType().ifPresent(mediaType -> lb.append(DOC_STRING_MEDIA_TYPE, mediaType)))
+                .append(DOC_STRING_DELIMITER, DOC_STRING_DELIMITER_STRING);
+        if (pickleDocString.getMediaType().isPresent()) {
+            lineBuilder.append(DOC_STRING_MEDIA_TYPE, pickleDocString.getMediaType().get());
+        }
+        lineBuilder
                 .end(DOC_STRING)
                 .newLine();
 
-        // Doc strings are normalized to \n by Gherkin.
-        String[] lines = pickleDocString.getContent().split("\\n", 0);
-        for (String line : lines) {
-            lineBuilder.indent(indentation).
-                    begin(DOC_STRING)
-                    .append(DOC_STRING_CONTENT, line)
-                    .end(DOC_STRING)
-                    .newLine();
-        }
+        formatContentTo(pickleDocString.getContent(), indentation, lineBuilder);
+
         lineBuilder
                 .indent(indentation)
                 .begin(DOC_STRING)
@@ -47,21 +49,87 @@ final class PickleDocStringFormatter {
 
     }
 
+    /**
+     * Formats a single line that describes the size of the doc string.
+     */
+    void formatSummaryTo(PickleDocString pickleDocString, int indentation, LineBuilder lineBuilder) {
+        String content = pickleDocString.getContent();
+        int lines = content.isEmpty() ? 1 : countLines(content, 0, findContentEnd(content));
+        lineBuilder.indent(indentation)
+                .begin(DOC_STRING)
+                .append("(doc string, ")
+                .append(lines)
+                .append(lines == 1 ? " line)" : " lines)")
+                .end(DOC_STRING)
+                .newLine();
+    }
+
+    private void formatContentTo(String content, int indentation, LineBuilder lineBuilder) {
+        if (content.isEmpty()) {
+            formatLineTo(content, 0, 0, indentation, lineBuilder);
+            return;
+        }
+        int end = findContentEnd(content);
+        int start = 0;
+        int lines = 0;
+        while (start < end) {
+            if (lines == maxLines) {
+                int elidedLines = countLines(content, start, end);
+                lineBuilder.indent(indentation)
+                        .begin(DOC_STRING)
+                        .append(ELLIPSIS)
+                        .append(" ")
+                        .append(elidedLines)
+                        .append(elidedLines == 1 ? " more line" : " more lines")
+                        .end(DOC_STRING)
+                        .newLine();
+                return;
+            }
+            int lineEnd = lineEnd(content, start, end);
+            formatLineTo(content, start, lineEnd, indentation, lineBuilder);
+            lines++;
+            start = nextLineStart(content, lineEnd, end);
+        }
+    }
+
+    private static void formatLineTo(String content, int start, int end, int indentation, LineBuilder lineBuilder) {
+        lineBuilder.indent(indentation)
+                .begin(DOC_STRING)
+                .begin(DOC_STRING_CONTENT)
+                .append(content, start, end)
+                .end(DOC_STRING_CONTENT)
+                .end(DOC_STRING)
+                .newLine();
+    }
+
+    private static int findContentEnd(String content) {
+        // Like String.split, trailing empty lines are removed, but empty
+        // content is one line.
+        int end = content.length();
+        while (end > 0 && isLineSeparator(content.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
     static final class Builder {
 
-        private int indentation = 0;
+        private int maxLines = Integer.MAX_VALUE;
 
         private Builder() {
 
         }
 
-        Builder indentation(int indentation) {
-            this.indentation = indentation;
+        /**
+         * Lines beyond the maximum are summarized in a single line.
+         */
+        Builder maxLines(int maxLines) {
+            this.maxLines = maxLines;
             return this;
         }
 
         PickleDocStringFormatter build() {
-            return new PickleDocStringFormatter(indentation);
+            return new PickleDocStringFormatter(maxLines);
         }
     }
 }
@@ -2,130 +2,168 @@ package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.PickleTable;
 import io.cucumber.messages.types.PickleTableCell;
+import io.cucumber.messages.types.PickleTableRow;
 
 import java.util.List;
 
 import static io.cucumber.prettyformatter.Theme.Element.DATA_TABLE;
 import static io.cucumber.prettyformatter.Theme.Element.DATA_TABLE_BORDER;
 import static io.cucumber.prettyformatter.Theme.Element.DATA_TABLE_CONTENT;
-import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
 
+/**
+ * Formats data tables.
+ * <p>
+ * Cells are written straight from the table. The widths of the columns are
+ * found in a first pass over the rows that are printed, the rows are written
+ * in a second pass.
+ */
 final class PickleTableFormatter {
 
-    private final int indentation;
+    private static final String ELLIPSIS = "…";
 
-    private PickleTableFormatter(int indentation) {
-        this.indentation = indentation;
+    private final int maxRows;
+    private final int maxCellWidth;
+
+    private PickleTableFormatter(int maxRows, int maxCellWidth) {
+        this.maxRows = maxRows;
+        this.maxCellWidth = maxCellWidth;
     }
 
     static Builder builder() {
         return new Builder();
     }
 
-    private static int[] findLongestCellLengthInColumn(String[][] renderedCells) {
-        // datatables are always square and non-sparse.
-        int width = renderedCells[0].length;
-        int[] longestCellInColumnLength = new int[width];
-        for (String[] row : renderedCells) {
-            for (int colIndex = 0; colIndex < width; colIndex++) {
-                int current = longestCellInColumnLength[colIndex];
-                int candidate = row[colIndex].length();
-                longestCellInColumnLength[colIndex] = Math.max(current, candidate);
-            }
+    void formatTo(PickleTable pickleTable, int indentation, LineBuilder lineBuilder) {
+        List<PickleTableRow> rows = pickleTable.getRows();
+        if (rows.isEmpty()) {
+            return;
+        }
+        int printedRows = Math.min(rows.size(), maxRows);
+        // find the width of the widest cell per column
+        int[] columnWidths = findColumnWidths(rows, printedRows);
+        // print the cells with padding
+        for (int rowIndex = 0; rowIndex < printedRows; rowIndex++) {
+            lineBuilder.indent(indentation)
+                    .begin(DATA_TABLE)
+                    .append(DATA_TABLE_BORDER, "|");
+            formatRowTo(rows.get(rowIndex).getCells(), columnWidths, lineBuilder);
+            lineBuilder
+                    .end(DATA_TABLE)
+                    .newLine();
+        }
+        int elidedRows = rows.size() - printedRows;
+        if (elidedRows > 0) {
+            lineBuilder.indent(indentation)
+                    .begin(DATA_TABLE)
+                    .append(ELLIPSIS)
+                    .append(" ")
+                    .append(elidedRows)
+                    .append(elidedRows == 1 ? " more row" : " more rows")
+                    .end(DATA_TABLE)
+                    .newLine();
         }
-        return longestCellInColumnLength;
     }
 
-    private static String renderCellWithPadding(String cellText, int padding) {
-        StringBuilder result = new StringBuilder();
-        result.append(" ");
-        result.append(cellText);
-        padSpace(result, padding);
-        result.append(" ");
-        return result.toString();
+    /**
+     * Formats a single line that describes the size of the table.
+     */
+    void formatSummaryTo(PickleTable pickleTable, int indentation, LineBuilder lineBuilder) {
+        List<PickleTableRow> rows = pickleTable.getRows();
+        int columns = rows.isEmpty() ? 0 : rows.get(0).getCells().size();
+        lineBuilder.indent(indentation)
+                .begin(DATA_TABLE)
+                .append("(table ")
+                .append(rows.size())
+                .append("x")
+                .append(columns)
+                .append(")")
+                .end(DATA_TABLE)
+                .newLine();
     }
 
-    private static void padSpace(StringBuilder result, int padding) {
-        for (int i = 0; i < padding; i++) {
-            result.append(" ");
+    private int[] findColumnWidths(List<PickleTableRow> rows, int printedRows) {
+        // datatables are always square and non-sparse.
+        int width = rows.get(0).getCells().size();
+        int[] columnWidths = new int[width];
+        for (int rowIndex = 0; rowIndex < printedRows; rowIndex++) {
+            List<PickleTableCell> cells = rows.get(rowIndex).getCells();
+            for (int colIndex = 0; colIndex < width; colIndex++) {
+                int candidate = Math.min(DisplayWidth.of(cells.get(colIndex).getValue()), maxCellWidth);
+                columnWidths[colIndex] = Math.max(columnWidths[colIndex], candidate);
+            }
         }
+        return columnWidths;
     }
 
-    private static void renderTableRowWithPaddingTo(String[] renderedCell, int[] longestCellLengthInColumn, LineBuilder lineBuilder) {
-        int width = renderedCell.length;
-        for (int colIndex = 0; colIndex < width; colIndex++) {
-            String cellText = renderedCell[colIndex];
-            int padding = longestCellLengthInColumn[colIndex] - cellText.length();
+    private void formatRowTo(List<PickleTableCell> cells, int[] columnWidths, LineBuilder lineBuilder) {
+        for (int colIndex = 0; colIndex < columnWidths.length; colIndex++) {
+            String value = cells.get(colIndex).getValue();
+            lineBuilder
+                    .begin(DATA_TABLE_CONTENT)
+                    .append(" ");
+            int cellWidth = DisplayWidth.of(value);
+            if (cellWidth <= maxCellWidth) {
+                lineBuilder.append(value);
+            } else {
+                cellWidth = formatTruncatedTo(value, lineBuilder);
+            }
             lineBuilder
-                    .append(DATA_TABLE_CONTENT, renderCellWithPadding(cellText, padding))
+                    .spaces(columnWidths[colIndex] - cellWidth)
+                    .append(" ")
+                    .end(DATA_TABLE_CONTENT)
                     .append(DATA_TABLE_BORDER, "|");
         }
     }
 
-    void formatTo(PickleTable pickleTable, LineBuilder lineBuilder) {
-        List<List<String>> cells = pickleTable.getRows().stream()
-                .map(pickleTableRow -> pickleTableRow.getCells().stream().map(PickleTableCell::getValue)
-                        .collect(toList()))
-                .collect(toList());
-        formatTo(cells, lineBuilder);
-    }
-
-    private void formatTo(List<List<String>> table, LineBuilder lineBuilder) {
-        requireNonNull(table, "table may not be null");
-
-        if (table.isEmpty()) {
-            return;
+    /**
+     * Writes as much of the value as fits in the maximum cell width, followed
+     * by an ellipsis. Returns the width of what was written.
+     */
+    private int formatTruncatedTo(String value, LineBuilder lineBuilder) {
+        int available = maxCellWidth - 1;
+        int width = 0;
+        int end = 0;
+        while (end < value.length()) {
+            int codePoint = value.codePointAt(end);
+            int codePointWidth = DisplayWidth.of(codePoint);
+            if (width + codePointWidth > available) {
+                break;
+            }
+            width += codePointWidth;
+            end += Character.charCount(codePoint);
         }
-        // render the individual cells
-        String[][] renderedCells = renderCells(table);
-        // find the length of longest cell per column
-        int[] longestCellLengthInColumn = findLongestCellLengthInColumn(renderedCells);
-        // print the rendered cells with padding
-        renderTableWithPaddingTo(renderedCells, longestCellLengthInColumn, lineBuilder);
+        lineBuilder
+                .append(value, 0, end)
+                .append(ELLIPSIS);
+        return width + 1;
     }
 
-    private void renderTableWithPaddingTo(String[][] renderedCells, int[] longestCellLengthInColumn, LineBuilder lineBuilder) {
-        for (String[] renderedCell : renderedCells) {
-            lineBuilder.indent(indentation)
-                    .begin(DATA_TABLE)
-                    .append(DATA_TABLE_BORDER, "|")
-                    .accept(innerLineBuilder -> renderTableRowWithPaddingTo(renderedCell, longestCellLengthInColumn, innerLineBuilder))
-                    .end(DATA_TABLE)
-                    .newLine();
-        }
-    }
+    static final class Builder {
 
-    private String[][] renderCells(List<List<String>> table) {
-        // datatables are always square and non-sparse.
-        int height = table.size();
-        int width = table.get(0).size();
-        String[][] renderedCells = new String[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                renderedCells[i][j] = renderCell(table.get(i).get(j));
-            }
-        }
-        return renderedCells;
-    }
+        private int maxRows = Integer.MAX_VALUE;
+        private int maxCellWidth = Integer.MAX_VALUE;
 
-    private String renderCell(String cell) {
-        if (cell == null) {
-            return "";
+        private Builder() {
         }
-        return cell;
-    }
 
-    static final class Builder {
-        private int indentation = 0;
+        /**
+         * Rows beyond the maximum are summarized in a single line.
+         */
+        Builder maxRows(int maxRows) {
+            this.maxRows = maxRows;
+            return this;
+        }
 
-        Builder indentation(int indentation) {
-            this.indentation = indentation;
+        /**
+         * Cells wider than the maximum are truncated with an ellipsis.
+         */
+        Builder maxCellWidth(int maxCellWidth) {
+            this.maxCellWidth = maxCellWidth;
             return this;
         }
 
         PickleTableFormatter build() {
-            return new PickleTableFormatter(indentation);
+            return new PickleTableFormatter(maxRows, maxCellWidth);
         }
     }
 
@@ -0,0 +1,43 @@
+package io.cucumber.prettyformatter;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers MBeans with the platform MBean server.
+ * <p>
+ * The module only optionally requires {@code java.management}. This class
+ * can not be loaded when the module is not resolved, so it may only be used
+ * after checking that it is. Other classes must not refer to the
+ * {@code javax.management} types.
+ */
+final class PlatformMBeanServer {
+
+    private PlatformMBeanServer() {
+    }
+
+    /**
+     * Registers an MBean as
+     * {@code io.cucumber.prettyformatter:type=<type>,name=<name>}.
+     *
+     * @return the object name of the MBean
+     */
+    static String register(Object mbean, String type, String name) {
+        try {
+            ObjectName objectName = new ObjectName("io.cucumber.prettyformatter:type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            return objectName.toString();
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + type + " as " + name, e);
+        }
+    }
+
+    static void unregister(String objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister " + objectName, e);
+        }
+    }
+}
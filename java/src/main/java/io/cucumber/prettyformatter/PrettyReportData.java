@@ -9,7 +9,6 @@ import io.cucumber.messages.types.PickleStep;
 import io.cucumber.messages.types.PickleTag;
 import io.cucumber.messages.types.Rule;
 import io.cucumber.messages.types.Scenario;
-import io.cucumber.messages.types.SourceReference;
 import io.cucumber.messages.types.Step;
 import io.cucumber.messages.types.StepDefinition;
 import io.cucumber.messages.types.TestCaseStarted;
@@ -19,6 +18,7 @@ import io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature;
 import io.cucumber.query.Lineage;
 import io.cucumber.query.Query;
 import io.cucumber.query.Repository;
+import org.jspecify.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,19 +35,15 @@ import static io.cucumber.query.Repository.RepositoryFeature.INCLUDE_STEP_DEFINI
 
 final class PrettyReportData {
 
-    // Visually the icon is assumed to have length 1
-    static final int VISUAL_STATUS_ICON_LENGTH = 1;
     private static final int AFTER_SCENARIO_ATTACHMENT_INDENT = 6;
     private static final int AFTER_STEP_STACKTRACE_INDENT = 4;
     private static final int AFTER_STEP_ARGUMENT_INDENT = 2;
     private static final int STEP_INDENT = 2;
     private static final int ONE_SPACE_LENGTH = 1;
 
-    private final Repository repository = Repository.builder()
-            .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
-            .feature(INCLUDE_STEP_DEFINITIONS, true)
-            .build();
-    private final Query query = new Query(repository);
+    private final Repository repository;
+    private final boolean updatesRepository;
+    private final Query query;
     private final Map<String, Integer> commentStartIndexByTestCaseStartedId = new HashMap<>();
     private final Map<String, Integer> scenarioIndentByTestCaseStartedId = new HashMap<>();
     private final Set<Object> printedFeaturesAndRules = new HashSet<>();
@@ -55,10 +51,31 @@ final class PrettyReportData {
     private final int afterRuleIndent;
     private final int iconLength;
 
-    PrettyReportData(Set<PrettyFeature> features) {
+    PrettyReportData(Set<PrettyFeature> features, Theme theme) {
+        this(features, theme, null);
+    }
+
+    /**
+     * @param sharedRepository a repository that is updated by its owner, or
+     *                         {@code null} to create and update a repository
+     */
+    PrettyReportData(Set<PrettyFeature> features, Theme theme, @Nullable Repository sharedRepository) {
+        repository = sharedRepository == null ? createRepository() : sharedRepository;
+        updatesRepository = sharedRepository == null;
+        query = new Query(repository);
         afterFeatureIndent = calculateAfterFeatureIndent(features);
         afterRuleIndent = calculateAfterRuleIndent(features);
-        iconLength = calculateIconLength(features);
+        iconLength = calculateIconLength(features, theme);
+    }
+
+    /**
+     * Creates a repository with everything used by the pretty report.
+     */
+    static Repository createRepository() {
+        return Repository.builder()
+                .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
+                .feature(INCLUDE_STEP_DEFINITIONS, true)
+                .build();
     }
 
     private static int calculateAfterRuleIndent(Set<PrettyFeature> features) {
@@ -84,19 +101,19 @@ final class PrettyReportData {
         String pickleName = pickle.getName();
         String pickleKeyword = scenario.getKeyword();
         // The ": " between keyword and name adds 2
-        return scenarioIndent + pickleKeyword.length() + 2 + pickleName.length();
+        return scenarioIndent + DisplayWidth.of(pickleKeyword) + 2 + DisplayWidth.of(pickleName);
     }
 
-    private static int calculateIconLength(Set<PrettyFeature> features) {
+    private static int calculateIconLength(Set<PrettyFeature> features, Theme theme) {
         // The icon plus a space to create separation between the step
-        return features.contains(USE_STATUS_ICON) ? VISUAL_STATUS_ICON_LENGTH + ONE_SPACE_LENGTH : 0;
+        return features.contains(USE_STATUS_ICON) ? theme.statusIconWidth() + ONE_SPACE_LENGTH : 0;
     }
 
     private int calculateStepLineLength(int scenarioIndent, Step step, PickleStep pickleStep) {
         String keyword = step.getKeyword();
         String text = pickleStep.getText();
         // The step indentation adds 2
-        return scenarioIndent + STEP_INDENT + iconLength + keyword.length() + text.length();
+        return scenarioIndent + STEP_INDENT + iconLength + DisplayWidth.of(keyword) + DisplayWidth.of(text);
     }
 
     private int calculateScenarioIndent(Lineage lineage) {
@@ -110,7 +127,9 @@ final class PrettyReportData {
     }
 
     void update(Envelope envelope) {
-        repository.update(envelope);
+        if (updatesRepository) {
+            repository.update(envelope);
+        }
         envelope.getTestCaseStarted().ifPresent(this::preCalculateLocationIndent);
     }
 
@@ -146,6 +165,10 @@ final class PrettyReportData {
                 .orElse(0) + AFTER_SCENARIO_ATTACHMENT_INDENT + iconLength;
     }
 
+    int getAttachmentIndentBy(String testCaseStartedId) {
+        return getScenarioIndentBy(testCaseStartedId) + AFTER_SCENARIO_ATTACHMENT_INDENT + iconLength;
+    }
+
     int getScenarioIndentBy(TestCaseStarted testCaseStarted) {
         return getScenarioIndentBy(testCaseStarted.getId());
     }
@@ -202,9 +225,8 @@ final class PrettyReportData {
         return query.findStepBy(pickleStep);
     }
 
-    Optional<SourceReference> findSourceReferenceBy(TestStep testStep) {
-        return query.findUnambiguousStepDefinitionBy(testStep)
-                .map(StepDefinition::getSourceReference);
+    Optional<StepDefinition> findUnambiguousStepDefinitionBy(TestStep testStep) {
+        return query.findUnambiguousStepDefinitionBy(testStep);
     }
 
     List<StepDefinition> findStepDefinitionsBy(TestStep testStep) {
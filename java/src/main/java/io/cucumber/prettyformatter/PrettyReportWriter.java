@@ -3,17 +3,21 @@ package io.cucumber.prettyformatter;
 import io.cucumber.messages.types.Attachment;
 import io.cucumber.messages.types.Feature;
 import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.PickleDocString;
 import io.cucumber.messages.types.PickleStep;
+import io.cucumber.messages.types.PickleStepArgument;
+import io.cucumber.messages.types.PickleTable;
 import io.cucumber.messages.types.PickleTag;
 import io.cucumber.messages.types.Rule;
 import io.cucumber.messages.types.Scenario;
 import io.cucumber.messages.types.Step;
+import io.cucumber.messages.types.TestCaseFinished;
 import io.cucumber.messages.types.TestCaseStarted;
 import io.cucumber.messages.types.TestRunFinished;
 import io.cucumber.messages.types.TestStep;
 import io.cucumber.messages.types.TestStepFinished;
-import io.cucumber.messages.types.TestStepResult;
 import io.cucumber.messages.types.TestStepResultStatus;
+import org.jspecify.annotations.Nullable;
 
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -25,10 +29,12 @@ import java.util.Set;
 import java.util.function.Function;
 
 import static io.cucumber.messages.types.TestStepResultStatus.AMBIGUOUS;
-import static io.cucumber.messages.types.TestStepResultStatus.FAILED;
+import static io.cucumber.messages.types.TestStepResultStatus.PASSED;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_ATTACHMENTS;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_FEATURE_LINE;
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_PASSED_STEP_ARGUMENTS;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_RULE_LINE;
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.USE_COMPACT_ANSI;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.USE_STATUS_ICON;
 import static io.cucumber.prettyformatter.Theme.Element.FEATURE;
 import static io.cucumber.prettyformatter.Theme.Element.FEATURE_KEYWORD;
@@ -45,7 +51,6 @@ import static io.cucumber.prettyformatter.Theme.Element.STEP;
 import static io.cucumber.prettyformatter.Theme.Element.STEP_KEYWORD;
 import static io.cucumber.prettyformatter.Theme.Element.TAG;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 
 final class PrettyReportWriter implements AutoCloseable {
 
@@ -56,22 +61,42 @@ final class PrettyReportWriter implements AutoCloseable {
     private final PrintWriter writer;
     private final Set<MessagesToPrettyWriter.PrettyFeature> features;
     private final PrettyReportData data;
+    private final @Nullable OutputCapture capture;
+    private final LineBuilder lineBuilder;
+    private final PickleTableFormatter pickleTableFormatter;
+    private final PickleDocStringFormatter pickleDocStringFormatter;
+    private final AttachmentFormatter attachmentFormatter;
+    private final ExceptionFormatter exceptionFormatter;
+    private final AmbiguousStepDefinitionsFormatter ambiguousStepDefinitionsFormatter;
 
     PrettyReportWriter(
             OutputStream out,
             Theme theme,
             Function<String, String> uriFormatter,
             Set<MessagesToPrettyWriter.PrettyFeature> features,
-            PrettyReportData data
-
+            PrettyReportData data,
+            PickleTableFormatter pickleTableFormatter,
+            PickleDocStringFormatter pickleDocStringFormatter,
+            ExceptionFormatter exceptionFormatter,
+            AttachmentFormatter attachmentFormatter,
+            @Nullable OutputCapture capture
     ) {
         this.theme = requireNonNull(theme);
         this.writer = createPrintWriter(requireNonNull(out));
         this.uriFormatter = requireNonNull(uriFormatter);
         this.features = features;
         this.data = data;
+        this.capture = capture;
+        this.pickleTableFormatter = requireNonNull(pickleTableFormatter);
+        this.pickleDocStringFormatter = requireNonNull(pickleDocStringFormatter);
+        this.exceptionFormatter = requireNonNull(exceptionFormatter);
+        this.attachmentFormatter = requireNonNull(attachmentFormatter);
         this.sourceReferenceFormatter = new SourceReferenceFormatter(uriFormatter);
         this.stepTextFormatter = new StepTextFormatter();
+        this.ambiguousStepDefinitionsFormatter = AmbiguousStepDefinitionsFormatter
+                .builder(sourceReferenceFormatter, theme)
+                .build();
+        this.lineBuilder = new LineBuilder(theme, features.contains(USE_COMPACT_ANSI));
     }
 
     private static PrintWriter createPrintWriter(OutputStream out) {
@@ -102,116 +127,156 @@ final class PrettyReportWriter implements AutoCloseable {
     private void printFeature(Feature feature) {
         data.ifNotSeenBefore(feature, () -> {
             writer.println();
-            writer.println(new LineBuilder(theme)
+            lineBuilder
                     .begin(FEATURE)
                     .title(FEATURE_KEYWORD, feature.getKeyword(), FEATURE_NAME, feature.getName())
                     .end(FEATURE)
-                    .build());
+                    .newLine()
+                    .writeTo(writer);
         });
     }
 
     private void printRule(Rule rule) {
         data.ifNotSeenBefore(rule, () ->
-                writer.println(new LineBuilder(theme)
+                lineBuilder
                         .newLine()
                         .indent(data.getAfterFeatureIndent())
                         .begin(RULE)
                         .title(RULE_KEYWORD, rule.getKeyword(), RULE_NAME, rule.getName())
                         .end(RULE)
-                        .build()));
+                        .newLine()
+                        .writeTo(writer));
     }
 
     private void printTags(TestCaseStarted event) {
-        data.findTagsBy(event)
-                .map(pickleTags -> new LineBuilder(theme)
-                        .indent(data.getScenarioIndentBy(event))
-                        .append(TAG, formatTagLine(pickleTags))
-                        .build())
-                .ifPresent(writer::println);
-    }
-
-    private String formatTagLine(List<PickleTag> pickleTags) {
-        return pickleTags.stream()
-                .map(PickleTag::getName)
-                .collect(joining(" "));
+        Optional<List<PickleTag>> tags = data.findTagsBy(event);
+        if (tags.isEmpty()) {
+            return;
+        }
+        List<PickleTag> pickleTags = tags.get();
+        lineBuilder
+                .indent(data.getScenarioIndentBy(event))
+                .begin(TAG);
+        for (int i = 0; i < pickleTags.size(); i++) {
+            if (i > 0) {
+                lineBuilder.append(" ");
+            }
+            lineBuilder.append(pickleTags.get(i).getName());
+        }
+        lineBuilder
+                .end(TAG)
+                .newLine()
+                .writeTo(writer);
     }
 
     private void printScenarioDefinition(TestCaseStarted event) {
-        data.findPickleBy(event).ifPresent(pickle ->
-                data.findScenarioBy(pickle).ifPresent(scenario ->
-                        writer.println(formatScenarioLine(event, pickle, scenario))));
+        Optional<Pickle> pickle = data.findPickleBy(event);
+        if (pickle.isEmpty()) {
+            return;
+        }
+        Optional<Scenario> scenario = data.findScenarioBy(pickle.get());
+        if (scenario.isEmpty()) {
+            return;
+        }
+        formatScenarioLine(event, pickle.get(), scenario.get());
+        lineBuilder
+                .newLine()
+                .writeTo(writer);
     }
 
-    private String formatScenarioLine(TestCaseStarted event, Pickle pickle, Scenario scenario) {
-        return new LineBuilder(theme)
+    private void formatScenarioLine(TestCaseStarted event, Pickle pickle, Scenario scenario) {
+        lineBuilder
                 .indent(data.getScenarioIndentBy(event))
                 .begin(SCENARIO)
                 .title(SCENARIO_KEYWORD, scenario.getKeyword(), SCENARIO_NAME, pickle.getName())
                 .end(SCENARIO)
                 .addPaddingUpTo(data.getCommentStartAtIndexBy(event))
-                .append(LOCATION, "# " + formatLocation(pickle))
-                .build();
-    }
-
-    private String formatLocation(Pickle pickle) {
-        String path = uriFormatter.apply(pickle.getUri());
-        return data.findLineOf(pickle)
-                .map(line -> path + ":" + line)
-                .orElse(path);
+                .begin(LOCATION)
+                .append("# ")
+                .append(uriFormatter.apply(pickle.getUri()));
+        Optional<Integer> line = data.findLineOf(pickle);
+        if (line.isPresent()) {
+            lineBuilder
+                    .append(":")
+                    .append(line.get());
+        }
+        lineBuilder.end(LOCATION);
     }
 
     void handleTestStepFinished(TestStepFinished event) {
         printStep(event);
         printAmbiguousStep(event);
         printException(event);
+        if (capture != null) {
+            String testCaseStartedId = event.getTestCaseStartedId();
+            capture.drain(testCaseStartedId)
+                    .ifPresent(output -> printCapturedOutput(testCaseStartedId, output));
+        }
         writer.flush();
     }
 
     private void printStep(TestStepFinished event) {
-        data.findTestStepBy(event).ifPresent(testStep ->
-                data.findPickleStepBy(testStep).ifPresent(pickleStep ->
-                        data.findStepBy(pickleStep).ifPresent(step -> {
-                            writer.println(formatStep(event, testStep, pickleStep, step));
-                            pickleStep.getArgument().ifPresent(pickleStepArgument -> {
-                                pickleStepArgument.getDataTable().ifPresent(pickleTable ->
-                                        writer.print(new LineBuilder(theme)
-                                                .accept(lineBuilder -> PickleTableFormatter.builder()
-                                                        .indentation(data.getArgumentIndentBy(event))
-                                                        .build()
-                                                        .formatTo(pickleTable, lineBuilder))
-                                                .build())
-                                );
-                                pickleStepArgument.getDocString().ifPresent(pickleDocString ->
-                                        writer.print(new LineBuilder(theme)
-                                                .accept(lineBuilder -> PickleDocStringFormatter.builder()
-                                                        .indentation(data.getArgumentIndentBy(event))
-                                                        .build()
-                                                        .formatTo(pickleDocString, lineBuilder))
-                                                .build())
-                                );
-                            });
-                        })));
+        Optional<TestStep> testStep = data.findTestStepBy(event);
+        if (testStep.isEmpty()) {
+            return;
+        }
+        Optional<PickleStep> pickleStep = data.findPickleStepBy(testStep.get());
+        if (pickleStep.isEmpty()) {
+            return;
+        }
+        Optional<Step> step = data.findStepBy(pickleStep.get());
+        if (step.isEmpty()) {
+            return;
+        }
+        formatStep(event, testStep.get(), pickleStep.get(), step.get());
+        lineBuilder.newLine();
+        Optional<PickleStepArgument> argument = pickleStep.get().getArgument();
+        if (argument.isPresent()) {
+            PickleStepArgument pickleStepArgument = argument.get();
+            int indentation = data.getArgumentIndentBy(event);
+            boolean summarize = !features.contains(INCLUDE_PASSED_STEP_ARGUMENTS)
+                    && event.getTestStepResult().getStatus() == PASSED;
+            if (pickleStepArgument.getDataTable().isPresent()) {
+                PickleTable dataTable = pickleStepArgument.getDataTable().get();
+                if (summarize) {
+                    pickleTableFormatter.formatSummaryTo(dataTable, indentation, lineBuilder);
+                } else {
+                    pickleTableFormatter.formatTo(dataTable, indentation, lineBuilder);
+                }
+            }
+            if (pickleStepArgument.getDocString().isPresent()) {
+                PickleDocString docString = pickleStepArgument.getDocString().get();
+                if (summarize) {
+                    pickleDocStringFormatter.formatSummaryTo(docString, indentation, lineBuilder);
+                } else {
+                    pickleDocStringFormatter.formatTo(docString, indentation, lineBuilder);
+                }
+            }
+        }
+        lineBuilder.writeTo(writer);
     }
 
-    private String formatStep(TestStepFinished event, TestStep testStep, PickleStep pickleStep, Step step) {
+    private void formatStep(TestStepFinished event, TestStep testStep, PickleStep pickleStep, Step step) {
         TestStepResultStatus status = event.getTestStepResult().getStatus();
-        return new LineBuilder(theme)
-                .indent(data.getStepIndentBy(event))
-                .accept(lineBuilder -> formatStatusIcon(lineBuilder, status))
+        lineBuilder.indent(data.getStepIndentBy(event));
+        formatStatusIcon(status);
+        lineBuilder
                 .begin(STEP, status)
-                .append(STEP_KEYWORD, step.getKeyword())
-                .accept(lineBuilder -> stepTextFormatter.formatTo(testStep, pickleStep, lineBuilder))
-                .end(STEP, status)
-                .accept(lineBuilder -> formatLocation(testStep)
-                        .ifPresent(location -> lineBuilder
-                                .addPaddingUpTo(data.getCommentStartAtIndexBy(event))
-                                .append(LOCATION, "# " + location)
-                        )
-                )
-                .build();
+                .append(STEP_KEYWORD, step.getKeyword());
+        stepTextFormatter.formatTo(testStep, pickleStep, lineBuilder);
+        lineBuilder.end(STEP, status);
+        Optional<String> location = formatLocation(testStep);
+        if (location.isPresent()) {
+            lineBuilder
+                    .addPaddingUpTo(data.getCommentStartAtIndexBy(event))
+                    .begin(LOCATION)
+                    .append("# ")
+                    .append(location.get())
+                    .end(LOCATION);
+        }
     }
 
-    private void formatStatusIcon(LineBuilder lineBuilder, TestStepResultStatus status) {
+    private void formatStatusIcon(TestStepResultStatus status) {
         if (!features.contains(USE_STATUS_ICON)) {
             return;
         }
@@ -223,35 +288,28 @@ final class PrettyReportWriter implements AutoCloseable {
     }
 
     private Optional<String> formatLocation(TestStep testStep) {
-        return data.findSourceReferenceBy(testStep)
+        return data.findUnambiguousStepDefinitionBy(testStep)
                 .flatMap(sourceReferenceFormatter::format);
     }
 
     private void printAmbiguousStep(TestStepFinished event) {
-        if (event.getTestStepResult().getStatus() == AMBIGUOUS) {
-            data.findTestStepBy(event).ifPresent(testStep -> {
-                writer.print(new LineBuilder(theme)
-                        .accept(lineBuilder -> AmbiguousStepDefinitionsFormatter
-                                .builder(sourceReferenceFormatter, theme)
-                                .indentation(data.getStackTraceIndentBy(event))
-                                .build()
-                                .formatTo(data.findStepDefinitionsBy(testStep), lineBuilder))
-                        .build());
-            });
+        if (event.getTestStepResult().getStatus() != AMBIGUOUS) {
+            return;
+        }
+        Optional<TestStep> testStep = data.findTestStepBy(event);
+        if (testStep.isEmpty()) {
+            return;
         }
+        ambiguousStepDefinitionsFormatter.formatTo(
+                data.findStepDefinitionsBy(testStep.get()),
+                data.getStackTraceIndentBy(event),
+                lineBuilder);
+        lineBuilder.writeTo(writer);
     }
 
     private void printException(TestStepFinished event) {
-        int indent = data.getStackTraceIndentBy(event);
-        TestStepResult testStepResult = event.getTestStepResult();
-        TestStepResultStatus status = testStepResult.getStatus();
-        ExceptionFormatter formatter = new ExceptionFormatter(indent, theme, status);
-        String standaloneMessage = testStepResult.getMessage().orElse(null);
-        testStepResult.getException()
-                .flatMap(exception -> formatter.format(exception, standaloneMessage))
-                // Fallback for when there is no exception at all
-                .or(() -> Optional.ofNullable(standaloneMessage).map(formatter::format))
-                .ifPresent(writer::print);
+        exceptionFormatter.formatTo(event.getTestStepResult(), data.getStackTraceIndentBy(event), lineBuilder);
+        lineBuilder.writeTo(writer);
     }
 
     void handleAttachment(Attachment attachment) {
@@ -259,25 +317,44 @@ final class PrettyReportWriter implements AutoCloseable {
             return;
         }
         writer.println();
-        writer.print(new LineBuilder(theme)
-                .accept(lineBuilder -> AttachmentFormatter.builder()
-                        .indentation(data.getAttachmentIndentBy(attachment))
-                        .build()
-                        .formatTo(attachment, lineBuilder))
-                .build());
+        attachmentFormatter.formatTo(attachment, data.getAttachmentIndentBy(attachment), lineBuilder);
+        lineBuilder.writeTo(writer);
         writer.println();
         writer.flush();
     }
 
+    void handleTestCaseFinished(TestCaseFinished event) {
+        String testCaseStartedId = event.getTestCaseStartedId();
+        attachmentFormatter.finishTestCase(testCaseStartedId);
+        if (capture == null) {
+            return;
+        }
+        capture.finish(testCaseStartedId)
+                .ifPresent(output -> printCapturedOutput(testCaseStartedId, output));
+        writer.flush();
+    }
+
+    private void printCapturedOutput(String testCaseStartedId, String output) {
+        writer.println();
+        attachmentFormatter.formatTo(output, data.getAttachmentIndentBy(testCaseStartedId), lineBuilder);
+        lineBuilder.writeTo(writer);
+        writer.println();
+    }
+
     void handleTestRunFinished(TestRunFinished event) {
-        event.getException().ifPresent(exception -> {
-            ExceptionFormatter formatter = new ExceptionFormatter(0, theme, FAILED);
-            formatter.format(exception).ifPresent(writer::print);
-        });
+        attachmentFormatter.finishTestRun();
+        if (event.getException().isPresent()) {
+            exceptionFormatter.formatTo(event.getException().get(), 0, lineBuilder);
+            lineBuilder.writeTo(writer);
+        }
     }
 
     @Override
     public void close() {
-        writer.close();
+        try {
+            writer.close();
+        } finally {
+            attachmentFormatter.close();
+        }
     }
 }
@@ -10,7 +10,6 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 
-import static io.cucumber.prettyformatter.Theme.Element.PROGRESS_ICON;
 import static java.lang.System.lineSeparator;
 import static java.util.Objects.requireNonNull;
 
@@ -54,8 +53,7 @@ final class ProgressWriter implements AutoCloseable {
     private void printStatus(TestStepResultStatus status) {
         // Prevent tearing in output when multiple threads write to System.out
         StringBuilder buffer = new StringBuilder();
-        String icon = theme.progressIcon(status);
-        buffer.append(theme.style(PROGRESS_ICON, status, icon));
+        buffer.append(theme.styledProgressIcon(status));
         // Start a new line if at the end of this one
         if (++width % maxWidth == 0) {
             width = 0;
@@ -0,0 +1,88 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.TestStepResultStatus;
+import org.jspecify.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the lines rendered for a text.
+ * <p>
+ * When a scenario outline or a broken fixture fails many times, the same
+ * text is rendered over and over. The cache holds the most recently used
+ * renderings, which are appended as is.
+ */
+final class RenderCache {
+
+    private final Map<Key, LineBuilder.Recording> recordings;
+    private long hits;
+    private long misses;
+
+    RenderCache(int maxEntries) {
+        this.recordings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, LineBuilder.Recording> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Appends the lines previously rendered for the text. Returns false if
+     * there are none, the text must then be rendered and {@linkplain #put
+     * put} in the cache.
+     */
+    boolean replay(String text, int indent, TestStepResultStatus status, LineBuilder lineBuilder) {
+        LineBuilder.@Nullable Recording recording = recordings.get(new Key(text, indent, status));
+        if (recording != null && lineBuilder.replay(recording)) {
+            hits++;
+            return true;
+        }
+        misses++;
+        return false;
+    }
+
+    void put(String text, int indent, TestStepResultStatus status, LineBuilder.Recording recording) {
+        recordings.put(new Key(text, indent, status), recording);
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final String text;
+        private final int indent;
+        private final TestStepResultStatus status;
+
+        Key(String text, int indent, TestStepResultStatus status) {
+            this.text = text;
+            this.indent = indent;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return indent == key.indent && status == key.status && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + indent;
+            return 31 * result + status.hashCode();
+        }
+    }
+}
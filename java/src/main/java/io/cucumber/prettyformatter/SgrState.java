@@ -0,0 +1,183 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.prettyformatter.Ansi.Attributes;
+
+/**
+ * The graphic rendition state of a terminal, packed into an int.
+ * <p>
+ * Used to emit only the <a href="https://en.wikipedia.org/wiki/ANSI_escape_code#Select_Graphic_Rendition_parameters">SGR</a>
+ * parameters that change the state, rather than a full begin and end sequence
+ * around every styled fragment.
+ */
+final class SgrState {
+
+    /**
+     * The longest transition written by {@link #writeTransition(int, int, char[], int)}.
+     */
+    static final int MAX_TRANSITION_LENGTH = 32;
+
+    private static final int BOLD = 1;
+    private static final int FAINT = 1 << 1;
+    private static final int ITALIC = 1 << 2;
+    private static final int UNDERLINE = 1 << 3;
+    private static final int FOREGROUND_SHIFT = 4;
+    private static final int BACKGROUND_SHIFT = 11;
+    private static final int COLOR_MASK = 0x7F;
+    private static final int FOREGROUND_DEFAULT = 39;
+    private static final int BACKGROUND_DEFAULT = 49;
+
+    static final int DEFAULT = FOREGROUND_DEFAULT << FOREGROUND_SHIFT | BACKGROUND_DEFAULT << BACKGROUND_SHIFT;
+
+    private SgrState() {
+        /* no-op */
+    }
+
+    static int apply(int state, Ansi ansi) {
+        for (Attributes attribute : ansi.attributes()) {
+            state = apply(state, attribute.value());
+        }
+        return state;
+    }
+
+    static int apply(int state, int parameter) {
+        if (parameter == 0) {
+            return DEFAULT;
+        }
+        if (parameter == 1) {
+            return state | BOLD;
+        }
+        if (parameter == 2) {
+            return state | FAINT;
+        }
+        if (parameter == 22) {
+            return state & ~(BOLD | FAINT);
+        }
+        if (parameter == 3) {
+            return state | ITALIC;
+        }
+        if (parameter == 23) {
+            return state & ~ITALIC;
+        }
+        if (parameter == 4) {
+            return state | UNDERLINE;
+        }
+        if (parameter == 24) {
+            return state & ~UNDERLINE;
+        }
+        if (isForeground(parameter)) {
+            return state & ~(COLOR_MASK << FOREGROUND_SHIFT) | parameter << FOREGROUND_SHIFT;
+        }
+        if (isBackground(parameter)) {
+            return state & ~(COLOR_MASK << BACKGROUND_SHIFT) | parameter << BACKGROUND_SHIFT;
+        }
+        // Not tracked, no effect
+        return state;
+    }
+
+    private static boolean isForeground(int parameter) {
+        return (parameter >= 30 && parameter <= 37) || parameter == FOREGROUND_DEFAULT || (parameter >= 90 && parameter <= 97);
+    }
+
+    private static boolean isBackground(int parameter) {
+        return (parameter >= 40 && parameter <= 47) || parameter == BACKGROUND_DEFAULT || (parameter >= 100 && parameter <= 107);
+    }
+
+    /**
+     * Returns true if a space written in either state looks the same.
+     * <p>
+     * Spaces have no glyph, only the background and underline are visible.
+     * The underline takes the foreground color.
+     */
+    static boolean isSpaceEquivalent(int a, int b) {
+        if (((a | b) & UNDERLINE) != 0) {
+            return a == b;
+        }
+        return background(a) == background(b);
+    }
+
+    private static int foreground(int state) {
+        return state >>> FOREGROUND_SHIFT & COLOR_MASK;
+    }
+
+    private static int background(int state) {
+        return state >>> BACKGROUND_SHIFT & COLOR_MASK;
+    }
+
+    /**
+     * Writes the shortest escape sequence that changes {@code from} into
+     * {@code to}.
+     * <p>
+     * The buffer must have room for {@code 2 * MAX_TRANSITION_LENGTH}
+     * characters after {@code offset}.
+     *
+     * @return the offset after the written sequence
+     */
+    static int writeTransition(int from, int to, char[] buffer, int offset) {
+        if (from == to) {
+            return offset;
+        }
+        // Write the incremental and the resetting sequence, keep the shortest
+        int incrementalEnd = writeSequence(from, to, false, buffer, offset);
+        int resetEnd = writeSequence(DEFAULT, to, true, buffer, incrementalEnd);
+        int resetLength = resetEnd - incrementalEnd;
+        if (resetLength < incrementalEnd - offset) {
+            System.arraycopy(buffer, incrementalEnd, buffer, offset, resetLength);
+            return offset + resetLength;
+        }
+        return incrementalEnd;
+    }
+
+    private static int writeSequence(int from, int to, boolean reset, char[] buffer, int offset) {
+        int start = offset;
+        buffer[offset++] = 27;
+        buffer[offset++] = '[';
+        int parametersStart = offset;
+        if (reset) {
+            offset = writeParameter(0, buffer, offset, parametersStart);
+        }
+        int state = from;
+        boolean boldRemoved = (state & BOLD) != 0 && (to & BOLD) == 0;
+        boolean faintRemoved = (state & FAINT) != 0 && (to & FAINT) == 0;
+        if (boldRemoved || faintRemoved) {
+            offset = writeParameter(22, buffer, offset, parametersStart);
+            state &= ~(BOLD | FAINT);
+        }
+        if ((to & BOLD) != 0 && (state & BOLD) == 0) {
+            offset = writeParameter(1, buffer, offset, parametersStart);
+        }
+        if ((to & FAINT) != 0 && (state & FAINT) == 0) {
+            offset = writeParameter(2, buffer, offset, parametersStart);
+        }
+        if ((to & ITALIC) != (state & ITALIC)) {
+            offset = writeParameter((to & ITALIC) != 0 ? 3 : 23, buffer, offset, parametersStart);
+        }
+        if ((to & UNDERLINE) != (state & UNDERLINE)) {
+            offset = writeParameter((to & UNDERLINE) != 0 ? 4 : 24, buffer, offset, parametersStart);
+        }
+        if (foreground(to) != foreground(state)) {
+            offset = writeParameter(foreground(to), buffer, offset, parametersStart);
+        }
+        if (background(to) != background(state)) {
+            offset = writeParameter(background(to), buffer, offset, parametersStart);
+        }
+        if (offset == parametersStart) {
+            return start;
+        }
+        buffer[offset++] = 'm';
+        return offset;
+    }
+
+    private static int writeParameter(int parameter, char[] buffer, int offset, int parametersStart) {
+        if (offset != parametersStart) {
+            buffer[offset++] = ';';
+        }
+        if (parameter >= 100) {
+            buffer[offset++] = (char) ('0' + parameter / 100);
+        }
+        if (parameter >= 10) {
+            buffer[offset++] = (char) ('0' + parameter / 10 % 10);
+        }
+        buffer[offset++] = (char) ('0' + parameter % 10);
+        return offset;
+    }
+}
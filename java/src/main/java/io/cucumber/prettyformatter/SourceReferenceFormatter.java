@@ -1,18 +1,41 @@
 package io.cucumber.prettyformatter;
 
+import io.cucumber.messages.types.Hook;
 import io.cucumber.messages.types.Location;
 import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinition;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
+/**
+ * Formats the location of step definitions and hooks.
+ * <p>
+ * A run has few step definitions and hooks, but their locations are printed
+ * for almost every step. So the location of each step definition and hook is
+ * formatted once and remembered by its id.
+ */
 final class SourceReferenceFormatter {
     private final Function<String, String> uriFormatter;
+    private final Map<String, Optional<String>> locationByStepDefinitionId = new HashMap<>();
+    private final Map<String, Optional<String>> locationByHookId = new HashMap<>();
 
     SourceReferenceFormatter(Function<String, String> uriFormatter) {
         this.uriFormatter = uriFormatter;
     }
 
+    Optional<String> format(StepDefinition stepDefinition) {
+        return locationByStepDefinitionId.computeIfAbsent(stepDefinition.getId(),
+                id -> format(stepDefinition.getSourceReference()));
+    }
+
+    Optional<String> format(Hook hook) {
+        return locationByHookId.computeIfAbsent(hook.getId(),
+                id -> format(hook.getSourceReference()));
+    }
+
     Optional<String> format(SourceReference sourceReference) {
         if (sourceReference.getJavaMethod().isPresent()) {
             return sourceReference.getJavaMethod()
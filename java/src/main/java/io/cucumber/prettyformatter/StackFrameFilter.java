@@ -0,0 +1,112 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Recognizes stack frames of classes in excluded packages.
+ * <p>
+ * The packages are compiled into a trie. Matching a frame walks the class
+ * name once, regardless of the number of packages.
+ */
+final class StackFrameFilter {
+
+    private static final String FRAME_PREFIX = "at ";
+
+    private final Node root = new Node();
+    private final boolean empty;
+
+    StackFrameFilter(Collection<String> packages) {
+        for (String name : packages) {
+            add(name);
+        }
+        this.empty = packages.isEmpty();
+    }
+
+    private void add(String packageName) {
+        int end = packageName.length();
+        // Match "org.junit" and "org.junit." the same way
+        while (end > 0 && packageName.charAt(end - 1) == '.') {
+            end--;
+        }
+        if (end == 0) {
+            throw new IllegalArgumentException("package may not be empty");
+        }
+        Node node = root;
+        for (int i = 0; i < end; i++) {
+            node = node.addChild(packageName.charAt(i));
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * Returns true if the text between start and end, without leading
+     * whitespace, is a stack frame of a class in an excluded package.
+     * <p>
+     * Frames are written as {@code at com.example.Class.method(Class.java:1)},
+     * optionally with a module or class loader before the class name, e.g.
+     * {@code at java.base/java.lang.Thread.run(Thread.java:1583)}.
+     */
+    boolean isExcluded(String text, int start, int end) {
+        if (empty || !text.startsWith(FRAME_PREFIX, start)) {
+            return false;
+        }
+        int nameStart = start + FRAME_PREFIX.length();
+        int nameEnd = nameStart;
+        while (nameEnd < end && text.charAt(nameEnd) != '(') {
+            if (text.charAt(nameEnd) == '/') {
+                nameStart = nameEnd + 1;
+            }
+            nameEnd++;
+        }
+        return matches(text, nameStart, nameEnd);
+    }
+
+    private boolean matches(String text, int start, int end) {
+        @Nullable Node node = root;
+        for (int i = start; i < end; i++) {
+            node = node.child(text.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            // Packages match whole segments, org.junit does not match org.junitx
+            if (node.terminal && (i + 1 == end || text.charAt(i + 1) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        @Nullable Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        Node addChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            Node child = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = child;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
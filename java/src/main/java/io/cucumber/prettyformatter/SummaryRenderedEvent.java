@@ -0,0 +1,45 @@
+package io.cucumber.prettyformatter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Records the rendering of the summary of a test run.
+ */
+@Name("io.cucumber.prettyformatter.SummaryRendered")
+@Label("Summary Rendered")
+@Description("The summary of a test run was rendered")
+@Category({"Cucumber", "Pretty Formatter"})
+@Enabled(false)
+@StackTrace(false)
+final class SummaryRenderedEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Renders the summary, recording an event when enabled.
+     */
+    static void record(MeteredOutputStream out, Runnable renderer) {
+        SummaryRenderedEvent event = new SummaryRenderedEvent();
+        if (!event.isEnabled()) {
+            renderer.run();
+            return;
+        }
+        long bytesWritten = out.getBytesWritten();
+        event.begin();
+        renderer.run();
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = out.getBytesWritten() - bytesWritten;
+            event.commit();
+        }
+    }
+}
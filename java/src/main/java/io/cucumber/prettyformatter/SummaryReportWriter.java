@@ -9,7 +9,6 @@ import io.cucumber.messages.types.Pickle;
 import io.cucumber.messages.types.PickleStep;
 import io.cucumber.messages.types.Snippet;
 import io.cucumber.messages.types.Step;
-import io.cucumber.messages.types.StepDefinition;
 import io.cucumber.messages.types.Suggestion;
 import io.cucumber.messages.types.TestCaseFinished;
 import io.cucumber.messages.types.TestCaseStarted;
@@ -49,6 +48,7 @@ import static io.cucumber.messages.types.TestStepResultStatus.FAILED;
 import static io.cucumber.messages.types.TestStepResultStatus.PASSED;
 import static io.cucumber.messages.types.TestStepResultStatus.SKIPPED;
 import static io.cucumber.messages.types.TestStepResultStatus.UNDEFINED;
+import static io.cucumber.prettyformatter.MessagesToSummaryWriter.SummaryFeature.USE_COMPACT_ANSI;
 import static io.cucumber.prettyformatter.Theme.Element.LOCATION;
 import static io.cucumber.prettyformatter.Theme.Element.STEP;
 import static io.cucumber.prettyformatter.Theme.Element.STEP_KEYWORD;
@@ -73,12 +73,20 @@ final class SummaryReportWriter implements AutoCloseable {
     private final Set<MessagesToSummaryWriter.SummaryFeature> features;
     private final Query query;
     private final PrintWriter out;
+    private final LineBuilder lineBuilder;
+    private final PickleTableFormatter pickleTableFormatter = PickleTableFormatter.builder().build();
+    private final PickleDocStringFormatter pickleDocStringFormatter = PickleDocStringFormatter.builder().build();
+    private final AttachmentFormatter attachmentFormatter;
+    private final ExceptionFormatter exceptionFormatter;
+    private final AmbiguousStepDefinitionsFormatter ambiguousStepDefinitionsFormatter;
 
     SummaryReportWriter(
             OutputStream out,
             Theme theme,
             Function<String, String> uriFormatter,
             Set<MessagesToSummaryWriter.SummaryFeature> features,
+            ExceptionFormatter exceptionFormatter,
+            AttachmentFormatter attachmentFormatter,
             Repository data
     ) {
         this.theme = requireNonNull(theme);
@@ -87,7 +95,13 @@ final class SummaryReportWriter implements AutoCloseable {
         this.sourceReferenceFormatter = new SourceReferenceFormatter(uriFormatter);
         this.stepTextFormatter = new StepTextFormatter();
         this.features = requireNonNull(features);
+        this.exceptionFormatter = requireNonNull(exceptionFormatter);
+        this.attachmentFormatter = requireNonNull(attachmentFormatter);
         this.query = new Query(requireNonNull(data));
+        this.ambiguousStepDefinitionsFormatter = AmbiguousStepDefinitionsFormatter
+                .builder(sourceReferenceFormatter, theme)
+                .build();
+        this.lineBuilder = new LineBuilder(theme, features.contains(USE_COMPACT_ANSI));
     }
 
     private static PrintWriter createPrintWriter(OutputStream out) {
@@ -101,7 +115,11 @@ final class SummaryReportWriter implements AutoCloseable {
 
     @Override
     public void close() {
-        out.close();
+        try {
+            out.close();
+        } finally {
+            attachmentFormatter.close();
+        }
     }
 
     public void printSummary() {
@@ -141,13 +159,8 @@ final class SummaryReportWriter implements AutoCloseable {
     }
 
     private void printTestRunHookException(TestRunHookFinished testRunHookFinished, TestStepResultStatus status) {
-        TestStepResult result = testRunHookFinished.getResult();
-        ExceptionFormatter formatter = new ExceptionFormatter(7, theme, status);
-        String standaloneMessage = result.getMessage().orElse(null);
-        result.getException()
-                .flatMap(exception -> formatter.format(exception, standaloneMessage))
-                .or(() -> Optional.ofNullable(standaloneMessage).map(formatter::format))
-                .ifPresent(out::print);
+        exceptionFormatter.formatTo(testRunHookFinished.getResult(), 7, lineBuilder);
+        lineBuilder.writeTo(out);
     }
 
     private void printNonPassingScenarios() {
@@ -191,14 +204,20 @@ final class SummaryReportWriter implements AutoCloseable {
     }
 
     private void printPertinentSteps(TestCaseFinished testCaseFinished, TestStepResultStatus ignoredStatus) {
-        query.findTestCaseStartedBy(testCaseFinished)
-                .map(query::findTestStepFinishedAndTestStepBy)
-                .ifPresent(allSteps -> {
-                    List<Map.Entry<TestStepFinished, TestStep>> pertinentSteps = findPertinentSteps(allSteps);
-                    for (Map.Entry<TestStepFinished, TestStep> step : pertinentSteps) {
-                        printStep(step.getKey(), step.getValue());
-                    }
-                });
+        // The attachments of a test case are printed together, their budget
+        // is released as soon as the test case is printed.
+        try {
+            query.findTestCaseStartedBy(testCaseFinished)
+                    .map(query::findTestStepFinishedAndTestStepBy)
+                    .ifPresent(allSteps -> {
+                        List<Map.Entry<TestStepFinished, TestStep>> pertinentSteps = findPertinentSteps(allSteps);
+                        for (Map.Entry<TestStepFinished, TestStep> step : pertinentSteps) {
+                            printStep(step.getKey(), step.getValue());
+                        }
+                    });
+        } finally {
+            attachmentFormatter.finishTestCase(testCaseFinished.getTestCaseStartedId());
+        }
     }
 
     private void printStep(TestStepFinished testStepFinished, TestStep testStep) {
@@ -207,66 +226,41 @@ final class SummaryReportWriter implements AutoCloseable {
         query.findPickleStepBy(testStep)
                 .ifPresent(pickleStep ->
                         query.findStepBy(pickleStep).ifPresent(step -> {
-                            out.println(formatPickleStep(testStepFinished, testStep, pickleStep, step));
+                            formatPickleStep(testStepFinished, testStep, pickleStep, step);
+                            lineBuilder.newLine();
                             pickleStep.getArgument().ifPresent(pickleStepArgument -> {
                                 pickleStepArgument.getDataTable().ifPresent(pickleTable ->
-                                        out.print(new LineBuilder(theme)
-                                                .accept(lineBuilder -> PickleTableFormatter.builder()
-                                                        .indentation(9)
-                                                        .build()
-                                                        .formatTo(pickleTable, lineBuilder))
-                                                .build())
-                                );
+                                        pickleTableFormatter.formatTo(pickleTable, 9, lineBuilder));
                                 pickleStepArgument.getDocString().ifPresent(pickleDocString ->
-                                        out.print(new LineBuilder(theme)
-                                                .accept(lineBuilder -> PickleDocStringFormatter.builder()
-                                                        .indentation(9)
-                                                        .build()
-                                                        .formatTo(pickleDocString, lineBuilder))
-                                                .build())
-                                );
+                                        pickleDocStringFormatter.formatTo(pickleDocString, 9, lineBuilder));
                             });
                             if (status == AMBIGUOUS) {
-                                out.print(new LineBuilder(theme)
-                                        .accept(lineBuilder -> AmbiguousStepDefinitionsFormatter
-                                                .builder(sourceReferenceFormatter, theme)
-                                                .indentation(11)
-                                                .build()
-                                                .formatTo(query.findStepDefinitionsBy(testStep), lineBuilder))
-                                        .build());
+                                ambiguousStepDefinitionsFormatter.formatTo(query.findStepDefinitionsBy(testStep), 11, lineBuilder);
                             }
+                            lineBuilder.writeTo(out);
                         }));
 
         query.findHookBy(testStep)
                 .ifPresent(hook -> {
-                    out.println(formatHookStep(testStepFinished, hook));
+                    formatHookStep(testStepFinished, hook);
+                    lineBuilder.newLine().writeTo(out);
                 });
 
-        ExceptionFormatter formatter = new ExceptionFormatter(11, theme, status);
-        TestStepResult testStepResult = testStepFinished.getTestStepResult();
-        String standaloneMessage = testStepResult.getMessage().orElse(null);
-        testStepResult
-                .getException()
-                .flatMap(exception -> formatter.format(exception, standaloneMessage))
-                .or(() -> Optional.ofNullable(standaloneMessage).map(formatter::format))
-                .ifPresent(out::print);
+        exceptionFormatter.formatTo(testStepFinished.getTestStepResult(), 11, lineBuilder);
+        lineBuilder.writeTo(out);
 
         if (features.contains(MessagesToSummaryWriter.SummaryFeature.INCLUDE_ATTACHMENTS)) {
-            query.findAttachmentsBy(testStepFinished).forEach(attachment ->
-                    out.print(new LineBuilder(theme)
-                            .newLine()
-                            .accept(lineBuilder -> AttachmentFormatter.builder()
-                                    .indentation(11)
-                                    .build()
-                                    .formatTo(attachment, lineBuilder))
-                            .build())
-            );
+            query.findAttachmentsBy(testStepFinished).forEach(attachment -> {
+                lineBuilder.newLine();
+                attachmentFormatter.formatTo(attachment, 11, lineBuilder);
+                lineBuilder.writeTo(out);
+            });
         }
     }
 
-    private String formatHookStep(TestStepFinished testStepFinished, Hook hook) {
+    private void formatHookStep(TestStepFinished testStepFinished, Hook hook) {
         TestStepResultStatus status = testStepFinished.getTestStepResult().getStatus();
-        return new LineBuilder(theme)
+        lineBuilder
                 .indent(7)
                 .begin(STEP, status)
                 .append(STEP_KEYWORD, hook.getType()
@@ -275,21 +269,19 @@ final class SummaryReportWriter implements AutoCloseable {
                 .append(hook.getName()
                         .map(name -> "(" + name + ")")
                         .orElse(""))
-                .end(STEP, status)
-                .accept(lineBuilder -> formatLocationCommentTo(hook, lineBuilder))
-                .build();
+                .end(STEP, status);
+        formatLocationCommentTo(hook, lineBuilder);
     }
 
-    private String formatPickleStep(TestStepFinished testStepFinished, TestStep testStep, PickleStep pickleStep, Step step) {
+    private void formatPickleStep(TestStepFinished testStepFinished, TestStep testStep, PickleStep pickleStep, Step step) {
         TestStepResultStatus status = testStepFinished.getTestStepResult().getStatus();
-        return new LineBuilder(theme)
+        lineBuilder
                 .indent(7)
                 .begin(STEP, status)
-                .append(STEP_KEYWORD, step.getKeyword())
-                .accept(lineBuilder -> stepTextFormatter.formatTo(testStep, pickleStep, lineBuilder))
-                .end(STEP, status)
-                .accept(lineBuilder -> formatLocationCommentTo(testStep, lineBuilder))
-                .build();
+                .append(STEP_KEYWORD, step.getKeyword());
+        stepTextFormatter.formatTo(testStep, pickleStep, lineBuilder);
+        lineBuilder.end(STEP, status);
+        formatLocationCommentTo(testStep, lineBuilder);
     }
 
     private void formatScenarioLineTo(TestCaseFinished testCaseFinished, LineBuilder lineBuilder) {
@@ -342,12 +334,14 @@ final class SummaryReportWriter implements AutoCloseable {
         out.println(theme.style(STEP, status, finishItemByStatusTitle));
         for (int i = 0; i < items.size(); i++) {
             T finishedItem = items.get(i);
-            out.println(new LineBuilder(theme)
+            lineBuilder
                     .append("  ")
-                    .append(String.valueOf(i + 1))
-                    .append(") ")
-                    .accept(lineBuilder -> formatFinishedItem.accept(finishedItem, lineBuilder))
-                    .build());
+                    .append(i + 1)
+                    .append(") ");
+            formatFinishedItem.accept(finishedItem, lineBuilder);
+            lineBuilder
+                    .newLine()
+                    .writeTo(out);
             printSupplementaryContent.accept(finishedItem, status);
         }
     }
@@ -373,7 +367,6 @@ final class SummaryReportWriter implements AutoCloseable {
 
     private void formatLocationCommentTo(TestStep testStep, LineBuilder lineBuilder) {
         query.findUnambiguousStepDefinitionBy(testStep)
-                .map(StepDefinition::getSourceReference)
                 .flatMap(sourceReferenceFormatter::format)
                 .ifPresent(comment -> lineBuilder
                         .append(" ")
@@ -381,7 +374,7 @@ final class SummaryReportWriter implements AutoCloseable {
     }
 
     private void formatLocationCommentTo(Hook hook, LineBuilder lineBuilder) {
-        sourceReferenceFormatter.format(hook.getSourceReference())
+        sourceReferenceFormatter.format(hook)
                 .ifPresent(comment -> {
                     lineBuilder.append(" ")
                             .append(LOCATION, "# " + comment);
@@ -392,8 +385,8 @@ final class SummaryReportWriter implements AutoCloseable {
         findTestRunWithException()
                 .ifPresent(exception -> {
                     out.println(theme.style(STEP, FAILED, firstLetterCapitalizedName(FAILED) + " test run:"));
-                    ExceptionFormatter formatter = new ExceptionFormatter(7, theme, FAILED);
-                    formatter.format(exception).ifPresent(out::print);
+                    exceptionFormatter.formatTo(exception, 7, lineBuilder);
+                    lineBuilder.writeTo(out);
                 });
     }
 
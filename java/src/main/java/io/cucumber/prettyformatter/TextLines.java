@@ -0,0 +1,71 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.prettyformatter.Theme.Element;
+
+/**
+ * Scans text for lines without creating substrings.
+ * <p>
+ * Lines are separated by {@code \n}, {@code \r} or {@code \r\n}. Like
+ * {@link java.io.BufferedReader#readLine()}, a trailing line separator does
+ * not start a new line. Each method works on the range of text between
+ * {@code start} and {@code end}.
+ */
+final class TextLines {
+
+    private TextLines() {
+    }
+
+    /**
+     * Returns the end of the line that starts at {@code start}, excluding
+     * the line separator.
+     */
+    static int lineEnd(String text, int start, int end) {
+        int lineEnd = start;
+        while (lineEnd < end && !isLineSeparator(text.charAt(lineEnd))) {
+            lineEnd++;
+        }
+        return lineEnd;
+    }
+
+    /**
+     * Returns the start of the line after the line that ends at
+     * {@code lineEnd}.
+     */
+    static int nextLineStart(String text, int lineEnd, int end) {
+        if (lineEnd >= end) {
+            return end;
+        }
+        if (text.charAt(lineEnd) == '\r' && lineEnd + 1 < end && text.charAt(lineEnd + 1) == '\n') {
+            return lineEnd + 2;
+        }
+        return lineEnd + 1;
+    }
+
+    static boolean isLineSeparator(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    static int countLines(String text, int start, int end) {
+        int lines = 0;
+        while (start < end) {
+            lines++;
+            start = nextLineStart(text, lineEnd(text, start, end), end);
+        }
+        return lines;
+    }
+
+    /**
+     * Writes each line indented and styled as the element.
+     */
+    static void formatTo(String text, int start, int end, int indent, Element element, LineBuilder lineBuilder) {
+        while (start < end) {
+            int lineEnd = lineEnd(text, start, end);
+            lineBuilder.indent(indent)
+                    .begin(element)
+                    .append(text, start, lineEnd)
+                    .end(element)
+                    .newLine();
+            start = nextLineStart(text, lineEnd, end);
+        }
+    }
+}
@@ -46,31 +46,119 @@ import static java.util.Objects.requireNonNull;
  */
 public final class Theme {
 
-    private final Map<Element, Entry<Ansi, Ansi>> styleByElement;
-    private final Map<Element, Map<TestStepResultStatus, Entry<Ansi, Ansi>>> styleByStatusByElement;
-    private final Map<TestStepResultStatus, String> statusIconByStatus;
-    private final Map<TestStepResultStatus, String> progressIconByStatus;
+    private static final Element[] ELEMENTS = Element.values();
+    private static final TestStepResultStatus[] STATUSES = TestStepResultStatus.values();
+    private static final Theme CUCUMBER = createCucumber();
+    private static final Theme NONE = createNone();
+    private static final Theme PLAIN = createPlain();
+
+    // The escape sequences are rendered once, when the theme is built, and
+    // looked up by ordinal while formatting.
+    private final String[] beginStyleByElement;
+    private final String[] endStyleByElement;
+    private final String[] beginStyleByElementAndStatus;
+    private final String[] endStyleByElementAndStatus;
+    private final @Nullable Ansi[] beginAnsiByElement;
+    private final @Nullable Ansi[] endAnsiByElement;
+    private final @Nullable Ansi[] beginAnsiByElementAndStatus;
+    private final @Nullable Ansi[] endAnsiByElementAndStatus;
+    private final String[] statusIconByStatus;
+    private final String[] progressIconByStatus;
+    // The progress icons are printed for every step, so they are styled once
+    private final String[] styledProgressIconByStatus;
+    private final boolean hasStatusIcons;
+    private final int statusIconWidth;
     private final @Nullable String bulletPointIcon;
 
     private Theme(
             Map<Element, Entry<Ansi, Ansi>> styleByElement,
-            Map<Element, Map<TestStepResultStatus,
-            Entry<Ansi, Ansi>>> styleByStatusByElement,
+            Map<Element, Map<TestStepResultStatus, Entry<Ansi, Ansi>>> styleByStatusByElement,
             Map<TestStepResultStatus, String> statusIconByStatus,
             Map<TestStepResultStatus, String> progressIconByStatus,
             @Nullable String bulletPointIcon
     ) {
-        this.styleByElement = requireNonNull(styleByElement);
-        this.styleByStatusByElement = requireNonNull(styleByStatusByElement);
-        this.statusIconByStatus = statusIconByStatus;
-        this.progressIconByStatus = progressIconByStatus;
+        this.beginStyleByElement = new String[ELEMENTS.length];
+        this.endStyleByElement = new String[ELEMENTS.length];
+        this.beginStyleByElementAndStatus = new String[ELEMENTS.length * STATUSES.length];
+        this.endStyleByElementAndStatus = new String[ELEMENTS.length * STATUSES.length];
+        this.beginAnsiByElement = new Ansi[ELEMENTS.length];
+        this.endAnsiByElement = new Ansi[ELEMENTS.length];
+        this.beginAnsiByElementAndStatus = new Ansi[ELEMENTS.length * STATUSES.length];
+        this.endAnsiByElementAndStatus = new Ansi[ELEMENTS.length * STATUSES.length];
+        for (Element element : ELEMENTS) {
+            Entry<Ansi, Ansi> style = styleByElement.get(element);
+            if (style != null) {
+                beginAnsiByElement[element.ordinal()] = style.getKey();
+                endAnsiByElement[element.ordinal()] = style.getValue();
+            }
+            beginStyleByElement[element.ordinal()] = style == null ? "" : style.getKey().toString();
+            endStyleByElement[element.ordinal()] = style == null ? "" : style.getValue().toString();
+            Map<TestStepResultStatus, Entry<Ansi, Ansi>> styleByStatus = styleByStatusByElement.get(element);
+            for (TestStepResultStatus status : STATUSES) {
+                Entry<Ansi, Ansi> statusStyle = styleByStatus == null ? null : styleByStatus.get(status);
+                int index = indexOf(element, status);
+                if (statusStyle != null) {
+                    beginAnsiByElementAndStatus[index] = statusStyle.getKey();
+                    endAnsiByElementAndStatus[index] = statusStyle.getValue();
+                }
+                beginStyleByElementAndStatus[index] = statusStyle == null ? "" : statusStyle.getKey().toString();
+                endStyleByElementAndStatus[index] = statusStyle == null ? "" : statusStyle.getValue().toString();
+            }
+        }
+        this.statusIconByStatus = new String[STATUSES.length];
+        this.progressIconByStatus = new String[STATUSES.length];
+        this.styledProgressIconByStatus = new String[STATUSES.length];
+        for (TestStepResultStatus status : STATUSES) {
+            // Icons are assumed to be 1 character wide by default.
+            this.statusIconByStatus[status.ordinal()] = statusIconByStatus.getOrDefault(status, " ");
+            this.progressIconByStatus[status.ordinal()] = progressIconByStatus.getOrDefault(status, " ");
+            this.styledProgressIconByStatus[status.ordinal()] = style(PROGRESS_ICON, status, this.progressIconByStatus[status.ordinal()]);
+        }
+        this.hasStatusIcons = !statusIconByStatus.isEmpty();
+        this.statusIconWidth = calculateStatusIconWidth(this.statusIconByStatus);
         this.bulletPointIcon = bulletPointIcon;
     }
 
+    private static int calculateStatusIconWidth(String[] statusIcons) {
+        int width = 0;
+        for (String statusIcon : statusIcons) {
+            width = Math.max(width, DisplayWidth.of(statusIcon));
+        }
+        return width;
+    }
+
+    private static int indexOf(Element element, TestStepResultStatus status) {
+        return element.ordinal() * STATUSES.length + status.ordinal();
+    }
+
     /**
      * The default Cucumber theme.
+     * <p>
+     * Themes are immutable, the same instance is returned on every call.
      */
     public static Theme cucumber() {
+        return CUCUMBER;
+    }
+
+    /**
+     * Empty theme that does not apply any styling to the output.
+     * <p>
+     * Themes are immutable, the same instance is returned on every call.
+     */
+    public static Theme none() {
+        return NONE;
+    }
+
+    /**
+     * A plain text theme. Does not use any ANSI.
+     * <p>
+     * Themes are immutable, the same instance is returned on every call.
+     */
+    public static Theme plain() {
+        return PLAIN;
+    }
+
+    private static Theme createCucumber() {
         return Theme.builder()
                 .style(ATTACHMENT, Ansi.with(FOREGROUND_BLUE), Ansi.with(FOREGROUND_DEFAULT))
                 .style(FEATURE_KEYWORD, Ansi.with(BOLD), Ansi.with(BOLD_OFF))
@@ -113,17 +201,11 @@ public final class Theme {
                 .build();
     }
 
-    /**
-     * Empty theme that does not apply any styling to the output.
-     */
-    public static Theme none() {
+    private static Theme createNone() {
         return Theme.builder().build();
     }
 
-    /**
-     * A plain text theme. Does not use any ANSI.
-     */
-    public static Theme plain() {
+    private static Theme createPlain() {
         return Theme.builder()
                 .statusIcon(AMBIGUOUS, "✘")
                 .statusIcon(FAILED, "✘")
@@ -149,62 +231,84 @@ public final class Theme {
     }
 
     String style(Element element, String text) {
-        Entry<Ansi, Ansi> ansiStyle = findAnsiBy(element);
-        return ansiStyle == null ? text : ansiStyle.getKey() + text + ansiStyle.getValue();
+        String begin = beginStyle(element);
+        String end = endStyle(element);
+        return begin.isEmpty() && end.isEmpty() ? text : begin + text + end;
     }
 
     String style(Element element, TestStepResultStatus status, String text) {
-        Entry<Ansi, Ansi> ansiStyle = findAnsiBy(element, status);
-        return ansiStyle == null ? text : ansiStyle.getKey() + text + ansiStyle.getValue();
+        String begin = beginStyle(element, status);
+        String end = endStyle(element, status);
+        return begin.isEmpty() && end.isEmpty() ? text : begin + text + end;
     }
 
     String beginStyle(Element element) {
-        Entry<Ansi, Ansi> style = findAnsiBy(element);
-        return style == null ? "" : style.getKey().toString();
+        return beginStyleByElement[element.ordinal()];
     }
 
     String beginStyle(Element element, TestStepResultStatus status) {
-        Entry<Ansi, Ansi> style = findAnsiBy(element, status);
-        return style == null ? "" : style.getKey().toString();
+        return beginStyleByElementAndStatus[indexOf(element, status)];
     }
 
     String endStyle(Element element) {
-        Entry<Ansi, Ansi> style = findAnsiBy(element);
-        return style == null ? "" : style.getValue().toString();
+        return endStyleByElement[element.ordinal()];
     }
 
     String endStyle(Element element, TestStepResultStatus status) {
-        Entry<Ansi, Ansi> style = findAnsiBy(element, status);
-        return style == null ? "" : style.getValue().toString();
+        return endStyleByElementAndStatus[indexOf(element, status)];
+    }
+
+    /**
+     * Applies the begin style of an element to a {@link SgrState}.
+     */
+    int beginState(Element element, int state) {
+        Ansi ansi = beginAnsiByElement[element.ordinal()];
+        return ansi == null ? state : SgrState.apply(state, ansi);
+    }
+
+    int beginState(Element element, TestStepResultStatus status, int state) {
+        Ansi ansi = beginAnsiByElementAndStatus[indexOf(element, status)];
+        return ansi == null ? state : SgrState.apply(state, ansi);
+    }
+
+    int endState(Element element, int state) {
+        Ansi ansi = endAnsiByElement[element.ordinal()];
+        return ansi == null ? state : SgrState.apply(state, ansi);
+    }
+
+    int endState(Element element, TestStepResultStatus status, int state) {
+        Ansi ansi = endAnsiByElementAndStatus[indexOf(element, status)];
+        return ansi == null ? state : SgrState.apply(state, ansi);
     }
 
     String progressIcon(TestStepResultStatus status) {
-        // Progress icons are assumed to be 1 character wide by default.
-        return progressIconByStatus.getOrDefault(status, " ");
+        return progressIconByStatus[status.ordinal()];
+    }
+
+    /**
+     * The progress icon of a status, with the progress icon style applied.
+     */
+    String styledProgressIcon(TestStepResultStatus status) {
+        return styledProgressIconByStatus[status.ordinal()];
     }
 
     String statusIcon(TestStepResultStatus status) {
-        // Status icons are assumed to be 1 character wide by default.
-        return statusIconByStatus.getOrDefault(status, " ");
+        return statusIconByStatus[status.ordinal()];
     }
 
     String bulletPointIcon() {
         return bulletPointIcon == null ? " " : bulletPointIcon;
     }
 
-    @Nullable
-    private Entry<Ansi, Ansi> findAnsiBy(Element element) {
-        return styleByElement.get(element);
-    }
-
-    @Nullable
-    private Entry<Ansi, Ansi> findAnsiBy(Element element, TestStepResultStatus status) {
-        Map<TestStepResultStatus, Entry<Ansi, Ansi>> styleByStatus = styleByStatusByElement.get(element);
-        return styleByStatus == null ? null : styleByStatus.get(status);
+    boolean hasStatusIcons() {
+        return hasStatusIcons;
     }
 
-    boolean hasStatusIcons() {
-        return !statusIconByStatus.isEmpty();
+    /**
+     * The number of columns used by the widest status icon.
+     */
+    int statusIconWidth() {
+        return statusIconWidth;
     }
 
     /**
@@ -470,10 +574,10 @@ public final class Theme {
 
         public Theme build() {
             return new Theme(
-                    new EnumMap<>(styleByElement),
-                    new EnumMap<>(styleByStatusByElement),
-                    new EnumMap<>(statusIconByStatus),
-                    new EnumMap<>(progressIconByStatus),
+                    styleByElement,
+                    styleByStatusByElement,
+                    statusIconByStatus,
+                    progressIconByStatus,
                     bulletPointIcon
             );
         }
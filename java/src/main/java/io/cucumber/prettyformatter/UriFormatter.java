@@ -0,0 +1,121 @@
+package io.cucumber.prettyformatter;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shortens URIs by replacing their prefix.
+ * <p>
+ * The prefixes are compiled into a trie, the longest prefix that matches a
+ * URI is replaced. A run only has a few distinct URIs, those of the feature
+ * files and glue code, so each URI is rewritten once and remembered.
+ */
+final class UriFormatter implements Function<String, String> {
+
+    private final Node root;
+    private final boolean empty;
+    private final Map<String, String> formattedByUri = new HashMap<>();
+
+    private UriFormatter(Node root, boolean empty) {
+        this.root = root;
+        this.empty = empty;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String apply(String uri) {
+        if (empty) {
+            return uri;
+        }
+        return formattedByUri.computeIfAbsent(uri, this::format);
+    }
+
+    private String format(String uri) {
+        Node node = root;
+        @Nullable String replacement = root.replacement;
+        int prefixLength = 0;
+        for (int i = 0; i < uri.length(); i++) {
+            node = node.child(uri.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.replacement != null) {
+                replacement = node.replacement;
+                prefixLength = i + 1;
+            }
+        }
+        if (replacement == null) {
+            return uri;
+        }
+        return replacement + uri.substring(prefixLength);
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private @Nullable String replacement;
+
+        @Nullable Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        Node addChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            Node child = new Node();
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = child;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    static final class Builder {
+
+        private final Map<String, String> replacementByPrefix = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Replaces the prefix of URIs. A later rule for the same prefix
+         * replaces the earlier one.
+         */
+        Builder replacePrefix(String prefix, String replacement) {
+            replacementByPrefix.put(requireNonNull(prefix), requireNonNull(replacement));
+            return this;
+        }
+
+        UriFormatter build() {
+            Node root = new Node();
+            replacementByPrefix.forEach((prefix, replacement) -> {
+                Node node = root;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.addChild(prefix.charAt(i));
+                }
+                node.replacement = replacement;
+            });
+            return new UriFormatter(root, replacementByPrefix.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
+import io.cucumber.messages.types.TestRunFinished;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.messages.types.Timestamp;
+import io.cucumber.query.Query;
+import io.cucumber.query.Repository;
+import org.jspecify.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.cucumber.messages.Convertor.toInstant;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes one lane per worker, showing the scenario each worker is currently
+ * executing and for how long.
+ * <p>
+ * Time is derived from the message timestamps rather than the wall clock. The
+ * lanes are updated in place using ANSI cursor movement, or written as
+ * periodic snapshots when the output is not a terminal.
+ */
+final class WorkerLaneWriter implements AutoCloseable {
+
+    private static final String CURSOR_UP = "\u001B[%dA";
+    private static final String ERASE_LINE = "\u001B[2K";
+    private static final String UNKNOWN_WORKER = "-";
+
+    private final Repository repository;
+    private final boolean updatesRepository;
+    private final Query query;
+    private final Map<String, Lane> laneByWorkerId = new LinkedHashMap<>();
+    private final Map<String, Lane> laneByTestCaseStartedId = new HashMap<>();
+    private final PrintWriter writer;
+    private final Theme theme;
+    private final int maxWidth;
+    private final boolean updateInPlace;
+    private final Duration snapshotInterval;
+    private @Nullable Instant now;
+    private @Nullable Instant lastSnapshot;
+    private int printedLines = 0;
+
+    /**
+     * @param sharedRepository a repository that is updated by its owner, or
+     *                         {@code null} to create and update a repository
+     */
+    WorkerLaneWriter(OutputStream out, Theme theme, int maxWidth, boolean updateInPlace, Duration snapshotInterval, @Nullable Repository sharedRepository) {
+        this.repository = sharedRepository == null ? Repository.builder().build() : sharedRepository;
+        this.updatesRepository = sharedRepository == null;
+        this.query = new Query(repository);
+        this.writer = createPrintWriter(out);
+        this.theme = requireNonNull(theme);
+        this.maxWidth = maxWidth;
+        this.updateInPlace = updateInPlace;
+        this.snapshotInterval = requireNonNull(snapshotInterval);
+    }
+
+    private static PrintWriter createPrintWriter(OutputStream out) {
+        return new PrintWriter(
+                new OutputStreamWriter(
+                        requireNonNull(out),
+                        StandardCharsets.UTF_8
+                )
+        );
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    void update(Envelope envelope) {
+        if (updatesRepository) {
+            repository.update(envelope);
+        }
+        envelope.getTestCaseStarted().ifPresent(this::handleTestCaseStarted);
+        envelope.getTestStepFinished().ifPresent(this::handleTestStepFinished);
+        envelope.getTestCaseFinished().ifPresent(this::handleTestCaseFinished);
+        envelope.getTestRunFinished().ifPresent(this::handleTestRunFinished);
+    }
+
+    private void handleTestCaseStarted(TestCaseStarted event) {
+        advanceClock(event.getTimestamp());
+        String workerId = event.getWorkerId().orElse(UNKNOWN_WORKER);
+        Lane lane = laneByWorkerId.computeIfAbsent(workerId, Lane::new);
+        lane.scenarioName = query.findPickleBy(event).map(Pickle::getName).orElse("");
+        lane.startedAt = toInstant(event.getTimestamp());
+        lane.icon = null;
+        laneByTestCaseStartedId.put(event.getId(), lane);
+        printLanes(false);
+    }
+
+    private void handleTestStepFinished(TestStepFinished event) {
+        advanceClock(event.getTimestamp());
+        Lane lane = laneByTestCaseStartedId.get(event.getTestCaseStartedId());
+        if (lane != null) {
+            var status = event.getTestStepResult().getStatus();
+            lane.icon = theme.styledProgressIcon(status);
+        }
+        printLanes(false);
+    }
+
+    private void handleTestCaseFinished(TestCaseFinished event) {
+        advanceClock(event.getTimestamp());
+        Lane lane = laneByTestCaseStartedId.remove(event.getTestCaseStartedId());
+        if (lane != null) {
+            lane.finished++;
+            lane.scenarioName = null;
+            lane.startedAt = null;
+            lane.icon = null;
+        }
+        printLanes(false);
+    }
+
+    private void handleTestRunFinished(TestRunFinished event) {
+        advanceClock(event.getTimestamp());
+        printLanes(true);
+    }
+
+    private void advanceClock(Timestamp timestamp) {
+        Instant instant = toInstant(timestamp);
+        if (now == null || instant.isAfter(now)) {
+            now = instant;
+        }
+    }
+
+    private void printLanes(boolean force) {
+        if (laneByWorkerId.isEmpty()) {
+            return;
+        }
+        if (updateInPlace) {
+            redrawLanes();
+        } else if (force || isSnapshotDue()) {
+            printSnapshot();
+        }
+        // Flush to provide immediate feedback.
+        writer.flush();
+    }
+
+    private boolean isSnapshotDue() {
+        if (lastSnapshot == null || now == null) {
+            return true;
+        }
+        return Duration.between(lastSnapshot, now).compareTo(snapshotInterval) >= 0;
+    }
+
+    private void redrawLanes() {
+        // Prevent tearing in output when multiple threads write to System.out
+        StringBuilder buffer = new StringBuilder();
+        if (printedLines > 0) {
+            buffer.append(CURSOR_UP.formatted(printedLines));
+        }
+        for (Lane lane : laneByWorkerId.values()) {
+            buffer.append(ERASE_LINE)
+                    .append(formatLane(lane))
+                    .append(System.lineSeparator());
+        }
+        printedLines = laneByWorkerId.size();
+        writer.append(buffer);
+    }
+
+    private void printSnapshot() {
+        StringBuilder buffer = new StringBuilder();
+        for (Lane lane : laneByWorkerId.values()) {
+            buffer.append(formatLane(lane))
+                    .append(System.lineSeparator());
+        }
+        buffer.append(System.lineSeparator());
+        lastSnapshot = now;
+        writer.append(buffer);
+    }
+
+    private String formatLane(Lane lane) {
+        String done = "(" + lane.finished + " done)";
+        if (lane.scenarioName == null || lane.startedAt == null || now == null) {
+            return truncate(lane.workerId + ": idle " + done);
+        }
+        String prefix = lane.workerId + ": " + formatDuration(Duration.between(lane.startedAt, now)) + " ";
+        String line = truncate(prefix + done + " " + lane.scenarioName);
+        // The icon is added after truncating, its escape codes have no width
+        return lane.icon == null ? line : line + " " + lane.icon;
+    }
+
+    private String truncate(String line) {
+        // Leave room for the status icon and avoid wrapping, a wrapped line
+        // can not be redrawn in place.
+        int available = maxWidth - 2;
+        // Not cached, lines with durations are rarely seen twice
+        if (DisplayWidth.of(line, 0, line.length()) <= available) {
+            return line;
+        }
+        // Leave a column for the ellipsis and never split a code point
+        int width = 0;
+        int end = 0;
+        while (end < line.length()) {
+            int codePoint = line.codePointAt(end);
+            int codePointWidth = DisplayWidth.of(codePoint);
+            if (width + codePointWidth > available - 1) {
+                break;
+            }
+            width += codePointWidth;
+            end += Character.charCount(codePoint);
+        }
+        return line.substring(0, end) + "…";
+    }
+
+    private static String formatDuration(Duration duration) {
+        long minutes = duration.toMinutes();
+        long seconds = duration.toSecondsPart();
+        long milliseconds = duration.toMillisPart();
+        return "%dm %d.%03ds".formatted(minutes, seconds, milliseconds);
+    }
+
+    private static final class Lane {
+        private final String workerId;
+        private @Nullable String scenarioName;
+        private @Nullable Instant startedAt;
+        private @Nullable String icon;
+        private int finished;
+
+        private Lane(String workerId) {
+            this.workerId = workerId;
+        }
+    }
+}
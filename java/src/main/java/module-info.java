@@ -1,5 +1,7 @@
 module io.cucumber.prettyformatter {
     requires org.jspecify;
+    requires static java.management;
+    requires static jdk.jfr;
     
     requires transitive io.cucumber.messages;
     requires io.cucumber.query;
@@ -0,0 +1,48 @@
+package io.cucumber.prettyformatter;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Measures the bytes allocated by the current thread.
+ * <p>
+ * Uses reflection so the module does not have to require
+ * {@code jdk.management}. Tests using the meter are skipped when the
+ * measurement is not supported by the JVM.
+ */
+final class AllocationMeter {
+
+    private final Object threadMXBean;
+    private final Method getCurrentThreadAllocatedBytes;
+
+    private AllocationMeter(Object threadMXBean, Method getCurrentThreadAllocatedBytes) {
+        this.threadMXBean = threadMXBean;
+        this.getCurrentThreadAllocatedBytes = getCurrentThreadAllocatedBytes;
+    }
+
+    static AllocationMeter create() {
+        try {
+            Class<?> managementFactory = Class.forName("java.lang.management.ManagementFactory");
+            Object threadMXBean = managementFactory.getMethod("getThreadMXBean").invoke(null);
+            Class<?> threadMXBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+            assumeTrue(threadMXBeanClass.isInstance(threadMXBean), "Allocation measurement is not supported");
+            Method isSupported = threadMXBeanClass.getMethod("isThreadAllocatedMemorySupported");
+            assumeTrue((Boolean) isSupported.invoke(threadMXBean), "Allocation measurement is not supported");
+            Method setEnabled = threadMXBeanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class);
+            setEnabled.invoke(threadMXBean, true);
+            return new AllocationMeter(threadMXBean, threadMXBeanClass.getMethod("getCurrentThreadAllocatedBytes"));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            assumeTrue(false, "Allocation measurement is not available: " + e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    long allocatedBytes() {
+        try {
+            return (Long) getCurrentThreadAllocatedBytes.invoke(threadMXBean);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
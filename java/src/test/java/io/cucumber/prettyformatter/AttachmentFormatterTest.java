@@ -0,0 +1,282 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Attachment;
+import io.cucumber.messages.types.AttachmentContentEncoding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static io.cucumber.messages.types.AttachmentContentEncoding.BASE64;
+import static io.cucumber.messages.types.AttachmentContentEncoding.IDENTITY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AttachmentFormatterTest {
+
+    private final LineBuilder lineBuilder = new LineBuilder(Theme.none(), false);
+
+    @Test
+    void prints_text_in_full() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder().build();
+        formatter.formatTo(attachment("a\r\nb\n", IDENTITY, "tcs-1"), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  a
+                  b
+                """);
+    }
+
+    @Test
+    void limits_the_number_of_bytes() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .maxBytes(6)
+                .build();
+        formatter.formatTo(attachment("abc\ndef\nghi", IDENTITY, null), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  abc
+                  de
+                  [truncated, 5 more bytes]
+                """);
+    }
+
+    @Test
+    void limits_the_number_of_lines() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .maxLines(2)
+                .build();
+        formatter.formatTo(attachment("abc\ndef\nghi", IDENTITY, null), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  abc
+                  def
+                  [truncated, 3 more bytes]
+                """);
+    }
+
+    @Test
+    void does_not_split_characters() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .maxBytes(6)
+                .build();
+        // 'é' takes 2 bytes and '😀' takes 4 bytes in UTF-8
+        formatter.formatTo(attachment("é😀é", IDENTITY, null), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  é😀
+                  [truncated, 2 more bytes]
+                """);
+    }
+
+    @Test
+    void counts_the_bytes_of_characters_in_utf8() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .maxBytes(3)
+                .build();
+        // '€' takes 3 bytes and '😀' takes 4 bytes in UTF-8
+        formatter.formatTo(attachment("€😀", IDENTITY, null), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  €
+                  [truncated, 4 more bytes]
+                """);
+    }
+
+    @Test
+    void limits_the_attachments_of_a_test_case_together() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .maxLinesPerTestCase(3)
+                .build();
+        formatter.formatTo(attachment("a\nb", IDENTITY, "tcs-1"), 2, lineBuilder);
+        formatter.formatTo(attachment("c\nd", IDENTITY, "tcs-1"), 2, lineBuilder);
+        formatter.formatTo(attachment("e", IDENTITY, "tcs-1"), 2, lineBuilder);
+        formatter.finishTestCase("tcs-1");
+        formatter.formatTo(attachment("f", IDENTITY, "tcs-1"), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  a
+                  b
+                  c
+                  [truncated, 1 more bytes]
+                  [truncated, 1 more bytes]
+                  f
+                """);
+    }
+
+    @Test
+    void releases_the_budgets_of_unfinished_test_cases_when_the_test_run_finishes() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .maxLinesPerTestCase(1)
+                .build();
+        formatter.formatTo(attachment("a", IDENTITY, "tcs-1"), 2, lineBuilder);
+        formatter.formatTo(attachment("b", IDENTITY, "tcs-2"), 2, lineBuilder);
+        formatter.finishTestRun();
+        formatter.formatTo(attachment("c", IDENTITY, "tcs-1"), 2, lineBuilder);
+        formatter.formatTo(attachment("d", IDENTITY, "tcs-2"), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  a
+                  b
+                  c
+                  d
+                """);
+    }
+
+    @Test
+    void prints_the_decoded_size_of_binary_attachments() {
+        AttachmentFormatter formatter = AttachmentFormatter.builder().build();
+        formatter.formatTo(attachment("YQ==", BASE64, null), 2, lineBuilder);
+        formatter.formatTo(attachment("YWI=", BASE64, null), 2, lineBuilder);
+        formatter.formatTo(attachment("YWJj", BASE64, null), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  Embedding [application/octet-stream 1 bytes]
+                  Embedding [application/octet-stream 2 bytes]
+                  Embedding [application/octet-stream 3 bytes]
+                """);
+    }
+
+    @Test
+    void writes_attachments_to_files(@TempDir Path directory) throws IOException {
+        Path attachments = directory.resolve("attachments");
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(attachments)
+                .build();
+        formatter.formatTo(attachment("YWJj", BASE64, null), 2, lineBuilder);
+        formatter.formatTo(attachment("h\u00e9", IDENTITY, null), 2, lineBuilder);
+        formatter.close();
+
+        List<Path> files = referencedFiles(lineBuilder.toString());
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines(
+                "  Embedding [application/octet-stream 3 bytes] -> " + files.get(0) + "\n" +
+                "  Embedding [text/plain 3 bytes] -> " + files.get(1) + "\n");
+        assertThat(files.get(0)).isEqualTo(attachments.resolve("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad.bin"));
+        assertThat(files.get(1).toString()).endsWith(".txt");
+        assertThat(Files.readString(files.get(0), UTF_8)).isEqualTo("abc");
+        assertThat(Files.readString(files.get(1), UTF_8)).isEqualTo("h\u00e9");
+    }
+
+    @Test
+    void stores_identical_attachments_once(@TempDir Path directory) throws IOException {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(directory)
+                .build();
+        Attachment attachment = new Attachment("YWJj", BASE64, "screenshot.png", "image/png", null, null, null, null, null, null, null);
+        formatter.formatTo(attachment, 2, lineBuilder);
+        formatter.formatTo(attachment, 2, lineBuilder);
+        formatter.close();
+
+        List<Path> files = referencedFiles(lineBuilder.toString());
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines(
+                "  Embedding screenshot.png [image/png 3 bytes] -> " + files.get(0) + "\n" +
+                "  Embedding screenshot.png [image/png 3 bytes] -> " + files.get(1) + "\n");
+        assertThat(files.get(0).toString()).endsWith(".png");
+        assertThat(files.get(1)).isEqualTo(files.get(0));
+        assertThat(Files.readString(files.get(0), UTF_8)).isEqualTo("abc");
+    }
+
+    @Test
+    void does_not_write_files_that_exist(@TempDir Path directory) throws IOException {
+        Path existing = Files.writeString(directory.resolve("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad.txt"), "abc");
+        Files.setLastModifiedTime(existing, FileTime.fromMillis(0));
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(directory)
+                .build();
+        formatter.formatTo(attachment("abc", IDENTITY, null), 2, lineBuilder);
+        formatter.close();
+
+        assertThat(referencedFiles(lineBuilder.toString())).containsExactly(existing);
+        assertThat(Files.getLastModifiedTime(existing)).isEqualTo(FileTime.fromMillis(0));
+    }
+
+    @Test
+    void shares_the_sink_of_formatters_writing_to_the_same_directory(@TempDir Path directory) throws IOException {
+        AttachmentSinks sinks = new AttachmentSinks();
+        AttachmentFormatter first = AttachmentFormatter.builder()
+                .directory(directory)
+                .sharedSinks(sinks)
+                .build();
+        AttachmentFormatter second = AttachmentFormatter.builder()
+                .directory(directory.resolve("..").resolve(directory.getFileName()))
+                .sharedSinks(sinks)
+                .build();
+        first.formatTo(attachment("abc", IDENTITY, null), 2, lineBuilder);
+        first.close();
+        // The shared sink is still open
+        second.formatTo(attachment("def", IDENTITY, null), 2, lineBuilder);
+        second.close();
+        sinks.close();
+
+        assertThat(sinks.get(directory, null)).isSameAs(sinks.get(directory.resolve("."), null));
+        List<Path> files = referencedFiles(lineBuilder.toString());
+        assertThat(Files.readString(files.get(0), UTF_8)).isEqualTo("abc");
+        assertThat(Files.readString(files.get(1), UTF_8)).isEqualTo("def");
+    }
+
+    @Test
+    void reports_files_that_could_not_be_written(@TempDir Path directory) throws IOException {
+        Path notADirectory = Files.createFile(directory.resolve("attachments"));
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(notADirectory)
+                .build();
+        formatter.formatTo(attachment("abc", IDENTITY, null), 2, lineBuilder);
+        assertThrows(RuntimeException.class, formatter::close);
+    }
+
+    @Test
+    void names_files_after_the_file_name_or_the_media_type(@TempDir Path directory) {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(directory)
+                .build();
+        formatter.formatTo(new Attachment("abc", IDENTITY, "report.html", "text/html", null, null, null, null, null, null, null), 2, lineBuilder);
+        formatter.formatTo(new Attachment("abc", IDENTITY, "report", "image/jpeg", null, null, null, null, null, null, null), 2, lineBuilder);
+        formatter.formatTo(new Attachment("abc", IDENTITY, "report.tar gz", "image/svg+xml", null, null, null, null, null, null, null), 2, lineBuilder);
+        formatter.formatTo(new Attachment("abc", IDENTITY, "report.averyveryverylongextension", "application/json", null, null, null, null, null, null, null), 2, lineBuilder);
+        formatter.formatTo(new Attachment("abc", IDENTITY, null, "application/vnd.cucumber+json", null, null, null, null, null, null, null), 2, lineBuilder);
+        formatter.close();
+
+        assertThat(referencedFiles(lineBuilder.toString()))
+                .extracting(file -> file.getFileName().toString().substring(file.getFileName().toString().indexOf('.') + 1))
+                .containsExactly("html", "jpg", "svg", "json", "bin");
+    }
+
+    @Test
+    void waits_when_writing_files_falls_behind(@TempDir Path directory) throws IOException {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(directory)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            formatter.formatTo(attachment("attachment " + i, IDENTITY, null), 2, lineBuilder);
+        }
+        formatter.close();
+
+        List<Path> files = referencedFiles(lineBuilder.toString());
+        assertThat(files).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(Files.readString(files.get(i), UTF_8)).isEqualTo("attachment " + i);
+        }
+    }
+
+    @Test
+    void reports_attachments_that_could_not_be_decoded(@TempDir Path directory) {
+        AttachmentFormatter formatter = AttachmentFormatter.builder()
+                .directory(directory)
+                .build();
+        formatter.formatTo(attachment("not base64!", BASE64, null), 2, lineBuilder);
+        formatter.formatTo(attachment("abc", IDENTITY, null), 2, lineBuilder);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, formatter::close);
+        assertThat(exception.getCause()).hasMessageStartingWith("Could not decode the attachment for ");
+        // Writing stops after the first failure
+        assertThat(referencedFiles(lineBuilder.toString())).noneMatch(Files::exists);
+    }
+
+    private static List<Path> referencedFiles(String output) {
+        return output.lines()
+                .map(line -> Path.of(line.substring(line.indexOf(" -> ") + 4)))
+                .toList();
+    }
+
+    private static Attachment attachment(String body, AttachmentContentEncoding encoding, String testCaseStartedId) {
+        String mediaType = encoding == BASE64 ? "application/octet-stream" : "text/plain";
+        return new Attachment(body, encoding, null, mediaType, null, testCaseStartedId, null, null, null, null, null);
+    }
+}
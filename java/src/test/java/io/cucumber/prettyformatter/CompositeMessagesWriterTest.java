@@ -0,0 +1,223 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestRunStarted;
+import io.cucumber.messages.types.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_ATTACHMENTS;
+import static io.cucumber.prettyformatter.MessagesToProgressWriter.ProgressFeature.USE_WORKER_LANES;
+import static io.cucumber.prettyformatter.Theme.plain;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompositeMessagesWriterTest {
+
+    private final SyntheticRun run = SyntheticRun.builder()
+            .features(2)
+            .rules(2)
+            .scenarios(3)
+            .steps(3)
+            .tableRows(2)
+            .attachments(1)
+            .failureRate(0.2)
+            .retries(1)
+            .workers(2)
+            .build();
+
+    @Test
+    void writesSameOutputAsSeparateWriters() throws IOException {
+        ByteArrayOutputStream pretty = new ByteArrayOutputStream();
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        ByteArrayOutputStream progress = new ByteArrayOutputStream();
+        try (CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                .pretty(MessagesToPrettyWriter.builder().theme(plain()), pretty)
+                .summary(MessagesToSummaryWriter.builder().theme(plain()), summary)
+                .progress(MessagesToProgressWriter.builder().theme(plain()).feature(USE_WORKER_LANES, true), progress)
+                .build()) {
+            writeTo(run, writer);
+        }
+
+        assertThat(pretty.toString(UTF_8))
+                .isEqualTo(render(MessagesToPrettyWriter.builder().theme(plain())::build));
+        assertThat(summary.toString(UTF_8))
+                .isEqualTo(render(MessagesToSummaryWriter.builder().theme(plain())::build));
+        assertThat(progress.toString(UTF_8))
+                .isEqualTo(render(MessagesToProgressWriter.builder().theme(plain()).feature(USE_WORKER_LANES, true)::build));
+    }
+
+    @Test
+    void usesMessagesUsedByAnyWriter() {
+        OutputStream out = OutputStream.nullOutputStream();
+        CompositeMessagesWriter prettyAndProgress = CompositeMessagesWriter.builder()
+                .pretty(MessagesToPrettyWriter.builder().feature(INCLUDE_ATTACHMENTS, false), out)
+                .progress(MessagesToProgressWriter.builder(), out)
+                .build();
+        CompositeMessagesWriter prettyAndSummary = CompositeMessagesWriter.builder()
+                .pretty(MessagesToPrettyWriter.builder().feature(INCLUDE_ATTACHMENTS, false), out)
+                .summary(MessagesToSummaryWriter.builder(), out)
+                .build();
+        CompositeMessagesWriter progressOnly = CompositeMessagesWriter.builder()
+                .progress(MessagesToProgressWriter.builder(), out)
+                .build();
+
+        assertThat(prettyAndProgress.envelopeTypes()).contains(EnvelopeType.GHERKIN_DOCUMENT, EnvelopeType.TEST_RUN_HOOK_FINISHED);
+        assertThat(prettyAndProgress.envelopeTypes()).doesNotContain(EnvelopeType.ATTACHMENT, EnvelopeType.HOOK);
+        assertThat(prettyAndSummary.envelopeTypes()).contains(EnvelopeType.ATTACHMENT, EnvelopeType.HOOK);
+        assertThat(progressOnly.envelopeTypes()).containsExactlyInAnyOrder(
+                EnvelopeType.TEST_RUN_HOOK_FINISHED,
+                EnvelopeType.TEST_STEP_FINISHED,
+                EnvelopeType.TEST_RUN_FINISHED);
+    }
+
+    @Test
+    void throwsWhenWritingAfterClose() {
+        CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                .summary(MessagesToSummaryWriter.builder(), new ByteArrayOutputStream())
+                .build();
+        writer.close();
+        assertThrows(IOException.class, () -> writer.write(
+                Envelope.of(new TestRunStarted(new Timestamp(0L, 0), ""))
+        ));
+    }
+
+    @Test
+    void canBeClosedTwice() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                .summary(MessagesToSummaryWriter.builder(), bytes)
+                .build();
+        writer.close();
+        int size = bytes.size();
+        assertDoesNotThrow(writer::close);
+        assertThat(bytes.size()).isEqualTo(size);
+    }
+
+    @Test
+    void closesSharedStreamOnceAfterAllWriters() throws IOException {
+        SharedStream shared = new SharedStream();
+        try (CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                .pretty(MessagesToPrettyWriter.builder().theme(plain()), shared)
+                .summary(MessagesToSummaryWriter.builder().theme(plain()), shared)
+                .build()) {
+            writeTo(run, writer);
+        }
+
+        assertThat(shared.closed).isEqualTo(1);
+        assertThat(shared.bytes.toString(UTF_8))
+                .isEqualTo(render(MessagesToPrettyWriter.builder().theme(plain())::build)
+                        + render(MessagesToSummaryWriter.builder().theme(plain())::build));
+    }
+
+    @Test
+    void closesOtherStreamsWhenClosingAStreamFails() {
+        SharedStream other = new SharedStream();
+        CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                .pretty(MessagesToPrettyWriter.builder(), new FailingStream())
+                .summary(MessagesToSummaryWriter.builder(), other)
+                .build();
+
+        UncheckedIOException exception = assertThrows(UncheckedIOException.class, writer::close);
+
+        assertThat(exception.getCause()).hasMessage("Could not close");
+        assertThat(other.closed).isEqualTo(1);
+        assertDoesNotThrow(writer::close);
+    }
+
+    @Test
+    void writesAttachmentsOfWritersSharingADirectoryOnce(@TempDir Path directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                .pretty(MessagesToPrettyWriter.builder().attachmentsDirectory(directory), bytes)
+                .summary(MessagesToSummaryWriter.builder().attachmentsDirectory(directory), bytes)
+                .build()) {
+            writeTo(run, writer);
+        }
+
+        Set<Path> referenced = bytes.toString(UTF_8).lines()
+                .filter(line -> line.contains(" -> "))
+                .map(line -> Path.of(line.substring(line.indexOf(" -> ") + 4)))
+                .collect(Collectors.toSet());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.collect(Collectors.toSet())).isEqualTo(referenced);
+        }
+    }
+
+    private String render(WriterFactory factory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesWriter writer = factory.build(bytes)) {
+            writeTo(run, writer);
+        }
+        return bytes.toString(UTF_8);
+    }
+
+    private static void writeTo(SyntheticRun run, MessagesWriter... writers) throws IOException {
+        Iterator<Envelope> envelopes = run.envelopes().iterator();
+        while (envelopes.hasNext()) {
+            Envelope envelope = envelopes.next();
+            for (MessagesWriter writer : writers) {
+                writer.write(envelope);
+            }
+        }
+    }
+
+    /**
+     * Fails when written to after it was closed.
+     */
+    private static final class SharedStream extends OutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int closed = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (closed > 0) {
+                throw new IOException("Stream closed");
+            }
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed > 0) {
+                throw new IOException("Stream closed");
+            }
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    private static final class FailingStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void close() throws IOException {
+            throw new IOException("Could not close");
+        }
+    }
+
+    @FunctionalInterface
+    private interface WriterFactory {
+        MessagesWriter build(OutputStream out);
+    }
+}
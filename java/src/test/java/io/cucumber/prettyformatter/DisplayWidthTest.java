@@ -0,0 +1,61 @@
+package io.cucumber.prettyformatter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DisplayWidthTest {
+
+    @Test
+    void asciiIsOneColumnPerCharacter() {
+        assertThat(DisplayWidth.of("")).isZero();
+        assertThat(DisplayWidth.of("a step")).isEqualTo(6);
+        assertThat(DisplayWidth.of("a step", 2, 6)).isEqualTo(4);
+    }
+
+    @Test
+    void eastAsianWideCharactersAreTwoColumns() {
+        assertThat(DisplayWidth.of("日本語")).isEqualTo(6);
+        assertThat(DisplayWidth.of("한국어")).isEqualTo(6);
+        assertThat(DisplayWidth.of("ＡＢ")).isEqualTo(4);
+        assertThat(DisplayWidth.of("a 日本語", 2, 4)).isEqualTo(4);
+    }
+
+    @Test
+    void emojiAreTwoColumns() {
+        assertThat(DisplayWidth.of("🥒")).isEqualTo(2);
+        assertThat(DisplayWidth.of("I have 🥒")).isEqualTo(9);
+    }
+
+    @Test
+    void combiningCharactersAreZeroColumns() {
+        // e + combining acute accent
+        assertThat(DisplayWidth.of("e\u0301")).isEqualTo(1);
+        // zero width space
+        assertThat(DisplayWidth.of("a\u200Bb")).isEqualTo(2);
+        // Hangul initial consonant + medial vowel
+        assertThat(DisplayWidth.of("\u1100\u1161")).isEqualTo(2);
+    }
+
+    @Test
+    void otherCharactersAreOneColumn() {
+        assertThat(DisplayWidth.of("café")).isEqualTo(4);
+        assertThat(DisplayWidth.of("✔")).isEqualTo(1);
+        // soft hyphen
+        assertThat(DisplayWidth.of("\u00AD")).isEqualTo(1);
+        assertThat(DisplayWidth.of("Ωμέγα")).isEqualTo(5);
+    }
+
+    @Test
+    void remembersWidthOfRepeatedText() {
+        assertThat(DisplayWidth.of("日本語のステップ")).isEqualTo(16);
+        assertThat(DisplayWidth.of("日本語のステップ")).isEqualTo(16);
+    }
+
+    @Test
+    void staysBounded() {
+        for (int i = 0; i < 5000; i++) {
+            assertThat(DisplayWidth.of("日" + i)).isEqualTo(2 + String.valueOf(i).length());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnvelopeTypeTest {
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    @Test
+    void findsTypeOfEachMessageInTheSamples() throws IOException {
+        Set<EnvelopeType> types = EnumSet.noneOf(EnvelopeType.class);
+        for (Path source : getSources()) {
+            for (String line : Files.readAllLines(source)) {
+                EnvelopeType type = EnvelopeType.of(deserializer.readValue(line));
+                // The name of the message is the only field of the envelope
+                assertThat(line).startsWith("{\"" + type.getFieldName() + "\":");
+                types.add(type);
+            }
+        }
+        assertThat(types.contains(EnvelopeType.UNKNOWN)).isFalse();
+    }
+
+    @Test
+    void findsTypeOfEachKindOfEnvelope() throws ReflectiveOperationException {
+        Set<EnvelopeType> types = EnumSet.noneOf(EnvelopeType.class);
+        for (Method of : Envelope.class.getMethods()) {
+            if (!of.getName().equals("of") || !Modifier.isStatic(of.getModifiers())) {
+                continue;
+            }
+            Class<?> messageType = of.getParameterTypes()[0];
+            Envelope envelope = (Envelope) of.invoke(null, minimalInstanceOf(messageType));
+            EnvelopeType type = EnvelopeType.of(envelope);
+            String simpleName = messageType.getSimpleName();
+            assertThat(type.getFieldName()).isEqualTo(Character.toLowerCase(simpleName.charAt(0)) + simpleName.substring(1));
+            types.add(type);
+        }
+        assertThat(types).isEqualTo(EnumSet.complementOf(EnumSet.of(EnvelopeType.UNKNOWN)));
+    }
+
+    @Test
+    void findsOnlyTheGivenTypes() throws IOException {
+        EnvelopeType[] probeOrder = EnvelopeType.probeOrder(Set.of(EnvelopeType.TEST_RUN_FINISHED, EnvelopeType.TEST_STEP_FINISHED));
+        Envelope testRunStarted = deserializer.readValue("{\"testRunStarted\":{\"timestamp\":{\"seconds\":0,\"nanos\":0}}}");
+        Envelope testRunFinished = deserializer.readValue("{\"testRunFinished\":{\"success\":true,\"timestamp\":{\"seconds\":0,\"nanos\":0}}}");
+
+        assertThat(probeOrder).containsExactly(EnvelopeType.TEST_STEP_FINISHED, EnvelopeType.TEST_RUN_FINISHED);
+        assertThat(EnvelopeType.of(testRunStarted, probeOrder)).isEqualTo(EnvelopeType.UNKNOWN);
+        assertThat(EnvelopeType.of(testRunFinished, probeOrder)).isEqualTo(EnvelopeType.TEST_RUN_FINISHED);
+    }
+
+    @Test
+    void findsUnknownTypeOfEmptyEnvelope() throws IOException {
+        assertThat(EnvelopeType.of(deserializer.readValue("{}"))).isEqualTo(EnvelopeType.UNKNOWN);
+    }
+
+    @Test
+    void findsTypeByFieldName() {
+        for (EnvelopeType type : EnvelopeType.values()) {
+            byte[] line = ("{\"" + type.getFieldName() + "\":{}}").getBytes(UTF_8);
+            assertThat(EnvelopeType.ofFieldName(ByteBuffer.wrap(line), 2, line.length - 7)).isEqualTo(type);
+        }
+        byte[] line = "{\"testStep\":{}}".getBytes(UTF_8);
+        assertThat(EnvelopeType.ofFieldName(ByteBuffer.wrap(line), 2, line.length - 7)).isEqualTo(EnvelopeType.UNKNOWN);
+    }
+
+    /**
+     * Creates a message with all fields set to an empty or zero value.
+     */
+    private static Object minimalInstanceOf(Class<?> type) throws ReflectiveOperationException {
+        if (type == String.class) {
+            return "";
+        }
+        if (type == Long.class) {
+            return 0L;
+        }
+        if (type == Integer.class) {
+            return 0;
+        }
+        if (type == Double.class) {
+            return 0.0;
+        }
+        if (type == Boolean.class) {
+            return false;
+        }
+        if (type == List.class) {
+            return List.of();
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        Constructor<?> constructor = Arrays.stream(type.getConstructors())
+                .max(Comparator.comparingInt(Constructor::getParameterCount))
+                .orElseThrow();
+        Object[] arguments = new Object[constructor.getParameterCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = minimalInstanceOf(constructor.getParameterTypes()[i]);
+        }
+        return constructor.newInstance(arguments);
+    }
+
+    private static List<Path> getSources() throws IOException {
+        try (Stream<Path> paths = Files.list(Paths.get("..", "testdata", "src"))) {
+            return paths
+                    .filter(path -> path.getFileName().toString().endsWith(".ndjson"))
+                    .collect(Collectors.toList());
+        }
+    }
+}
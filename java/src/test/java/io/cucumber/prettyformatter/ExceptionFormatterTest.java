@@ -0,0 +1,246 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Duration;
+import io.cucumber.messages.types.Exception;
+import io.cucumber.messages.types.TestStepResult;
+import io.cucumber.messages.types.TestStepResultStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExceptionFormatterTest {
+
+    private static final String STACK_TRACE = """
+            java.lang.RuntimeException: boom
+            \tat com.example.Steps.fails(Steps.java:10)
+            \tat java.base/jdk.internal.reflect.DirectMethodHandleAccessor.invoke(DirectMethodHandleAccessor.java:103)
+            \tat java.base/java.lang.reflect.Method.invoke(Method.java:580)
+            \tat io.cucumber.core.runner.Runner.run(Runner.java:1)
+            \tat org.junitx.Example.run(Example.java:1)
+            \tat org.junit.platform.Launcher.run(Launcher.java:1)
+            Caused by: java.lang.IllegalStateException: inner
+            \tat com.example.Steps.inner(Steps.java:20)
+            \t... 5 more
+            Caused by: java.lang.IllegalStateException: inner
+            \tat com.example.Steps.inner(Steps.java:20)
+            \t... 6 more
+            Caused by: java.lang.IllegalStateException: inner
+            \tat com.example.Steps.inner(Steps.java:20)
+            \t... 7 more
+            Caused by: java.lang.Error: root
+            \tat com.example.Steps.root(Steps.java:30)
+            """;
+
+    private final LineBuilder lineBuilder = new LineBuilder(Theme.none(), false);
+
+    @Test
+    void folds_frames_of_excluded_packages() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder()
+                .excludeFramesOf(List.of("jdk.internal", "java.lang.reflect.", "io.cucumber.core", "org.junit"))
+                .build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", STACK_TRACE), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  java.lang.RuntimeException: boom
+                  \tat com.example.Steps.fails(Steps.java:10)
+                  \t... 3 framework frames
+                  \tat org.junitx.Example.run(Example.java:1)
+                  \t... 1 framework frame
+                  Caused by: java.lang.IllegalStateException: inner
+                  \tat com.example.Steps.inner(Steps.java:20)
+                  \t... 5 more
+                  ... 2 identical causes
+                  Caused by: java.lang.Error: root
+                  \tat com.example.Steps.root(Steps.java:30)
+                """);
+    }
+
+    @Test
+    void limits_the_number_of_lines() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder()
+                .maxLines(3)
+                .build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", STACK_TRACE), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  java.lang.RuntimeException: boom
+                  \tat com.example.Steps.fails(Steps.java:10)
+                  \tat java.base/jdk.internal.reflect.DirectMethodHandleAccessor.invoke(DirectMethodHandleAccessor.java:103)
+                  ... 15 more lines
+                """);
+    }
+
+    @Test
+    void limits_the_number_of_lines_when_folding() {
+        ExceptionFormatter framesFormatter = ExceptionFormatter.builder()
+                .excludeFramesOf(List.of("jdk.internal", "java.lang.reflect.", "io.cucumber.core", "org.junit"))
+                .maxLines(2)
+                .build();
+        framesFormatter.formatTo(new Exception("java.lang.RuntimeException", "boom", STACK_TRACE), 2, lineBuilder);
+        ExceptionFormatter causesFormatter = ExceptionFormatter.builder()
+                .excludeFramesOf(List.of("jdk.internal", "java.lang.reflect.", "io.cucumber.core", "org.junit"))
+                .maxLines(8)
+                .build();
+        causesFormatter.formatTo(new Exception("java.lang.RuntimeException", "boom", STACK_TRACE), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  java.lang.RuntimeException: boom
+                  \tat com.example.Steps.fails(Steps.java:10)
+                  ... 16 more lines
+                  java.lang.RuntimeException: boom
+                  \tat com.example.Steps.fails(Steps.java:10)
+                  \t... 3 framework frames
+                  \tat org.junitx.Example.run(Example.java:1)
+                  \t... 1 framework frame
+                  Caused by: java.lang.IllegalStateException: inner
+                  \tat com.example.Steps.inner(Steps.java:20)
+                  \t... 5 more
+                  ... 8 more lines
+                """);
+    }
+
+    @Test
+    void summarizes_a_single_remaining_line() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder()
+                .maxLines(12)
+                .build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", STACK_TRACE), 2, lineBuilder);
+        assertThat(lineBuilder.toString())
+                .doesNotContain("Steps.root")
+                .contains("  ... 1 more line");
+    }
+
+    @Test
+    void folds_frames_and_causes_at_the_end() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder()
+                .excludeFramesOf(List.of("org.junit"))
+                .build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", """
+                java.lang.RuntimeException: boom
+                \tat com.example.Steps.fails(Steps.java:10)
+                \tat org.junit.platform.Launcher.run(Launcher.java:1)
+                """), 2, lineBuilder);
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", """
+                java.lang.RuntimeException: boom
+                Caused by: java.lang.IllegalStateException: inner
+                \tat com.example.Steps.inner(Steps.java:20)
+                Caused by: java.lang.IllegalStateException: inner
+                \tat com.example.Steps.inner(Steps.java:20)
+                """), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  java.lang.RuntimeException: boom
+                  \tat com.example.Steps.fails(Steps.java:10)
+                  \t... 1 framework frame
+                  java.lang.RuntimeException: boom
+                  Caused by: java.lang.IllegalStateException: inner
+                  \tat com.example.Steps.inner(Steps.java:20)
+                  ... 1 identical cause
+                """);
+    }
+
+    @Test
+    void does_not_fold_causes_separated_by_suppressed_exceptions() {
+        String stackTrace = """
+                java.lang.RuntimeException: boom
+                Caused by: java.lang.IllegalStateException: inner
+                \tat com.example.Steps.inner(Steps.java:20)
+                Suppressed: java.lang.Error: other
+                \tat com.example.Steps.other(Steps.java:30)
+                Caused by: java.lang.IllegalStateException: inner
+                \tat com.example.Steps.inner(Steps.java:20)
+                """;
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", stackTrace), 0, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines(stackTrace);
+    }
+
+    @Test
+    void does_not_fold_frames_of_parent_packages() {
+        String stackTrace = """
+                java.lang.RuntimeException: boom
+                \tat org.junit(Unknown Source)
+                """;
+        ExceptionFormatter formatter = ExceptionFormatter.builder()
+                .excludeFramesOf(List.of("org.junit.platform"))
+                .build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", stackTrace), 0, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines(stackTrace);
+    }
+
+    @Test
+    void rejects_empty_packages() {
+        ExceptionFormatter.Builder builder = ExceptionFormatter.builder().excludeFramesOf(List.of("."));
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
+    @Test
+    void prints_the_message_of_failures_without_a_stack_trace() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", null), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  boom
+                """);
+    }
+
+    @Test
+    void prints_only_the_message_of_pending_steps() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        Exception exception = new Exception("io.cucumber.java.PendingException", "TODO: implement me", STACK_TRACE);
+        TestStepResult result = new TestStepResult(new Duration(0L, 0), null, TestStepResultStatus.PENDING, exception);
+        formatter.formatTo(result, 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  TODO: implement me
+                """);
+    }
+
+    @Test
+    void reads_lines_like_a_buffered_reader() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        formatter.formatTo(new Exception("java.lang.RuntimeException", "boom", "a\r\nb\rc\n\nd\n"), 2, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  a
+                  b
+                  c
+                 \s
+                  d
+                """);
+    }
+
+    @Test
+    void renders_identical_text_once() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        Exception exception = new Exception("java.lang.RuntimeException", "boom", STACK_TRACE);
+        LineBuilder lineBuilder = new LineBuilder(Theme.cucumber(), true);
+        formatter.formatTo(exception, 2, lineBuilder);
+        String rendered = lineBuilder.toString();
+        lineBuilder.reset();
+        formatter.formatTo(exception, 2, lineBuilder);
+
+        assertThat(lineBuilder.toString()).isEqualTo(rendered);
+        assertThat(formatter.cache().hits()).isEqualTo(1);
+        assertThat(formatter.cache().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void does_not_cache_long_texts() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        String message = "x".repeat(64 * 1024 + 1);
+        formatter.formatTo(new Exception("java.lang.RuntimeException", message, null), 2, lineBuilder);
+
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("  " + message + "\n");
+        assertThat(formatter.cache().misses()).isEqualTo(0);
+    }
+
+    @Test
+    void does_not_replay_text_rendered_with_another_theme() {
+        ExceptionFormatter formatter = ExceptionFormatter.builder().build();
+        Exception exception = new Exception("java.lang.RuntimeException", "boom", STACK_TRACE);
+        formatter.formatTo(exception, 2, new LineBuilder(Theme.none(), false));
+        LineBuilder lineBuilder = new LineBuilder(Theme.cucumber(), false);
+        formatter.formatTo(exception, 2, lineBuilder);
+
+        assertThat(lineBuilder.toString()).startsWith("  \u001B[31m");
+        assertThat(formatter.cache().hits()).isEqualTo(0);
+        assertThat(formatter.cache().misses()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,95 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FlightRecordingTest {
+
+    private static final String ENVELOPE_RENDERED = "io.cucumber.prettyformatter.EnvelopeRendered";
+    private static final String OUTPUT_FLUSHED = "io.cucumber.prettyformatter.OutputFlushed";
+    private static final String SUMMARY_RENDERED = "io.cucumber.prettyformatter.SummaryRendered";
+
+    private final SyntheticRun run = SyntheticRun.builder()
+            .features(1)
+            .scenarios(2)
+            .steps(2)
+            .build();
+
+    @Test
+    void recordsEventsWhenEnabled(@TempDir Path directory) throws IOException {
+        assumeTrue(FlightRecording.AVAILABLE, "Flight recording is not available");
+        ByteArrayOutputStream pretty = new ByteArrayOutputStream();
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        Path file = directory.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(ENVELOPE_RENDERED).withThreshold(Duration.ZERO);
+            recording.enable(OUTPUT_FLUSHED).withThreshold(Duration.ZERO);
+            recording.enable(SUMMARY_RENDERED).withThreshold(Duration.ZERO);
+            recording.start();
+            try (MessagesToPrettyWriter prettyWriter = MessagesToPrettyWriter.builder().build(pretty);
+                 MessagesToSummaryWriter summaryWriter = MessagesToSummaryWriter.builder().build(summary)) {
+                Iterator<Envelope> envelopes = run.envelopes().iterator();
+                while (envelopes.hasNext()) {
+                    Envelope envelope = envelopes.next();
+                    prettyWriter.write(envelope);
+                    summaryWriter.write(envelope);
+                }
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> stepsFinished = events.stream()
+                .filter(event -> event.getEventType().getName().equals(ENVELOPE_RENDERED))
+                .filter(event -> "testStepFinished".equals(event.getString("type")))
+                .toList();
+        assertThat(stepsFinished.size()).isEqualTo(4);
+        assertThat(stepsFinished.get(0).getString("testCaseStartedId")).isEqualTo("tcs0-0-0");
+        assertThat(stepsFinished.get(0).getLong("bytes")).isGreaterThan(0);
+        assertThat(events.stream()
+                .filter(event -> event.getEventType().getName().equals(OUTPUT_FLUSHED))
+                .count()).isGreaterThan(0);
+        assertThat(events.stream()
+                .filter(event -> event.getEventType().getName().equals(SUMMARY_RENDERED))
+                .mapToLong(event -> event.getLong("bytes"))
+                .sum()).isEqualTo(summary.size());
+    }
+
+    @Test
+    void recordsNoEventsByDefault(@TempDir Path directory) throws IOException {
+        assumeTrue(FlightRecording.AVAILABLE, "Flight recording is not available");
+        Path file = directory.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.start();
+            try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().build(new ByteArrayOutputStream())) {
+                Iterator<Envelope> envelopes = run.envelopes().iterator();
+                while (envelopes.hasNext()) {
+                    writer.write(envelopes.next());
+                }
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        assertThat(RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("io.cucumber.prettyformatter."))
+                .count()).isZero();
+    }
+}
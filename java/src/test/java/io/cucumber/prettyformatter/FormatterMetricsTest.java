@@ -0,0 +1,111 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FormatterMetricsTest {
+
+    private final SyntheticRun run = SyntheticRun.builder()
+            .features(1)
+            .scenarios(2)
+            .steps(2)
+            .attachments(1)
+            .build();
+
+    @Test
+    void recordsMessagesAndOutputOfPrettyWriter() throws IOException {
+        FormatterMetrics metrics = FormatterMetrics.create();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().metrics(metrics).build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+
+        Map<String, Long> envelopeCounts = metrics.getEnvelopeCounts();
+        assertThat(envelopeCounts.get("testStepFinished")).isEqualTo(4L);
+        assertThat(envelopeCounts.get("attachment")).isEqualTo(2L);
+        assertThat(metrics.getEnvelopeNanos().keySet()).isEqualTo(envelopeCounts.keySet());
+        assertThat(metrics.getBytesWritten()).isEqualTo(bytes.size());
+        assertThat(metrics.getFlushes()).isGreaterThan(0);
+    }
+
+    @Test
+    void recordsMessagesAndOutputOfSummaryWriter() throws IOException {
+        FormatterMetrics metrics = FormatterMetrics.create();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToSummaryWriter writer = MessagesToSummaryWriter.builder().metrics(metrics).build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+
+        assertThat(metrics.getEnvelopeCounts().get("testCase")).isEqualTo(2L);
+        assertThat(metrics.getBytesWritten()).isEqualTo(bytes.size());
+    }
+
+    @Test
+    void recordsMessagesAndOutputOfProgressWriter() throws IOException {
+        FormatterMetrics metrics = FormatterMetrics.create();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToProgressWriter writer = MessagesToProgressWriter.builder().metrics(metrics).build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+
+        assertThat(metrics.getEnvelopeCounts().get("testRunFinished")).isEqualTo(1L);
+        assertThat(metrics.getBytesWritten()).isEqualTo(bytes.size());
+    }
+
+    @Test
+    void recordsPendingAttachmentWrites(@TempDir Path directory) throws IOException {
+        FormatterMetrics metrics = FormatterMetrics.create();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder()
+                .attachmentsDirectory(directory)
+                .metrics(metrics)
+                .build(new ByteArrayOutputStream())) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+
+        assertThat(metrics.getPendingAttachmentWrites()).isZero();
+    }
+
+    @Test
+    void registersMBean() throws JMException {
+        FormatterMetrics metrics = FormatterMetrics.create();
+        metrics.recordWrite(42, 1);
+        ObjectName objectName = new ObjectName("io.cucumber.prettyformatter:type=FormatterMetrics,name=\"test\"");
+
+        metrics.registerMBean("test");
+        try {
+            assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "BytesWritten")).isEqualTo(42L);
+            assertThrows(IllegalStateException.class, () -> metrics.registerMBean("test"));
+            assertThrows(IllegalStateException.class, () -> FormatterMetrics.create().registerMBean("test"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)).isFalse();
+        metrics.unregisterMBean();
+    }
+}
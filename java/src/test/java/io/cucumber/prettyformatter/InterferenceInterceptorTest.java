@@ -0,0 +1,183 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.prettyformatter.InterferenceInterceptor.Mode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InterferenceInterceptorTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private PrintStream systemOut;
+    private PrintStream systemErr;
+    private String consoleOutEncoding;
+    private String consoleErrEncoding;
+
+    @BeforeEach
+    void replaceSystemStreams() {
+        systemOut = System.out;
+        systemErr = System.err;
+        System.setOut(new PrintStream(out, true, UTF_8));
+        System.setErr(new PrintStream(err, true, UTF_8));
+        // The charset of System.out and System.err on Java 17, later
+        // versions use the charset of the print stream itself
+        consoleOutEncoding = System.setProperty("sun.stdout.encoding", UTF_8.name());
+        consoleErrEncoding = System.setProperty("sun.stderr.encoding", UTF_8.name());
+    }
+
+    @AfterEach
+    void restoreSystemStreams() {
+        System.setOut(systemOut);
+        System.setErr(systemErr);
+        restoreProperty("sun.stdout.encoding", consoleOutEncoding);
+        restoreProperty("sun.stderr.encoding", consoleErrEncoding);
+    }
+
+    private static void restoreProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
+    @Test
+    void passthrough_leaves_system_streams_untouched() {
+        PrintStream original = System.out;
+        InterferenceInterceptor interceptor = create(Mode.PASSTHROUGH);
+        interceptor.acquire();
+        System.out.print("glue");
+        interceptor.release();
+
+        assertThat(System.out).isSameAs(original);
+        assertThat(interceptor.originalOut()).isSameAs(original);
+        assertThat(out.toString(UTF_8)).isEqualTo("glue");
+    }
+
+    @Test
+    void buffer_ignores_capture() {
+        InterferenceInterceptor interceptor = create(Mode.BUFFER);
+        interceptor.acquire();
+        interceptor.beginCapture("started-1");
+        System.out.print("glue");
+        interceptor.endCapture();
+        interceptor.release();
+
+        assertThat(out.toString(UTF_8)).isEqualTo("glue");
+    }
+
+    @Test
+    void suppress_discards_writes() {
+        InterferenceInterceptor interceptor = create(Mode.SUPPRESS);
+        interceptor.acquire();
+        System.out.print("glue");
+        System.err.print("glue");
+        interceptor.originalOut().print("formatter");
+        interceptor.originalErr().print("formatter");
+        interceptor.release();
+
+        assertThat(out.toString(UTF_8)).isEqualTo("formatter");
+        assertThat(err.toString(UTF_8)).isEqualTo("formatter");
+    }
+
+    @Test
+    void buffer_emits_writes_after_formatter_output() {
+        InterferenceInterceptor interceptor = create(Mode.BUFFER);
+        interceptor.acquire();
+        System.out.print("glue-1 ");
+        interceptor.originalOut().print("formatter ");
+        interceptor.emit();
+        System.out.print("glue-2");
+        System.err.print("error");
+        assertThat(out.toString(UTF_8)).isEqualTo("formatter glue-1 ");
+
+        interceptor.release();
+        assertThat(out.toString(UTF_8)).isEqualTo("formatter glue-1 glue-2");
+        assertThat(err.toString(UTF_8)).isEqualTo("error");
+    }
+
+    @Test
+    void buffer_drops_writes_beyond_limit() {
+        InterferenceInterceptor interceptor = InterferenceInterceptor.builder()
+                .mode(Mode.BUFFER)
+                .bufferLimit(10)
+                .build();
+        interceptor.acquire();
+        System.out.print("glue-1 ");
+        System.out.print("glue-2 ");
+        System.out.print("ü");
+        interceptor.release();
+
+        assertThat(out.toString(UTF_8)).isEqualTo("glue-1 ü[7 more bytes of output dropped]" + System.lineSeparator());
+    }
+
+    @Test
+    void encodes_like_the_original_streams() {
+        System.setOut(new PrintStream(out, true, ISO_8859_1));
+        System.setProperty("sun.stdout.encoding", ISO_8859_1.name());
+        InterferenceInterceptor interceptor = create(Mode.BUFFER);
+        interceptor.acquire();
+        System.out.print("glü");
+        interceptor.release();
+
+        assertThat(out.toByteArray()).isEqualTo("glü".getBytes(ISO_8859_1));
+    }
+
+    @Test
+    void rejects_limits_that_are_negative() {
+        InterferenceInterceptor.Builder builder = InterferenceInterceptor.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.bufferLimit(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.captureLimit(-1));
+    }
+
+    @Test
+    void release_restores_system_streams() {
+        PrintStream original = System.out;
+        try (InterferenceInterceptor interceptor = create(Mode.SUPPRESS)) {
+            interceptor.acquire();
+            assertThat(System.out).isNotSameAs(original);
+        }
+        assertThat(System.out).isSameAs(original);
+    }
+
+    @Test
+    void retained_streams_pass_through_after_release() {
+        InterferenceInterceptor interceptor = create(Mode.SUPPRESS);
+        interceptor.acquire();
+        PrintStream retained = System.out;
+        interceptor.release();
+        retained.print("late");
+        retained.flush();
+
+        assertThat(out.toString(UTF_8)).isEqualTo("late");
+    }
+
+    @Test
+    void can_be_acquired_and_released_twice() {
+        PrintStream original = System.out;
+        InterferenceInterceptor interceptor = create(Mode.BUFFER);
+        interceptor.acquire();
+        PrintStream intercepted = System.out;
+        interceptor.acquire();
+        assertThat(System.out).isSameAs(intercepted);
+
+        interceptor.release();
+        interceptor.release();
+        assertThat(System.out).isSameAs(original);
+    }
+
+    private static InterferenceInterceptor create(Mode mode) {
+        return InterferenceInterceptor.builder()
+                .mode(mode)
+                .build();
+    }
+}
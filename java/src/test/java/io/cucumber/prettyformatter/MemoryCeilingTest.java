@@ -0,0 +1,124 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.cucumber.prettyformatter.Theme.cucumber;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writes a large synthetic run in a JVM with a small heap.
+ * <p>
+ * The writers keep a record of the test run, including messages of finished
+ * test cases, so their memory grows with the size of the run. These tests do
+ * not guard against that. They guard against a writer retaining much more
+ * per message than the record, for example the output it has written, so
+ * that an ordinary large run no longer fits in a small heap.
+ */
+class MemoryCeilingTest {
+
+    private static final String MAX_HEAP = "-Xmx64m";
+    private static final long TIMEOUT_IN_MINUTES = 5;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"pretty", "summary", "progress", "composite"})
+    void writesLargeRunWithinHeap(String writer, @TempDir Path tempDir) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        // Redirect to a file so the process can not block on a full pipe
+        Path outputFile = tempDir.resolve("output.txt");
+        Process process = new ProcessBuilder(java, MAX_HEAP, "-cp", classPath(), MemoryCeilingTest.class.getName(), writer)
+                .redirectErrorStream(true)
+                .redirectOutput(outputFile.toFile())
+                .start();
+        boolean exited = process.waitFor(TIMEOUT_IN_MINUTES, TimeUnit.MINUTES);
+        if (!exited) {
+            process.destroyForcibly().waitFor();
+        }
+        String output = Files.readString(outputFile, StandardCharsets.UTF_8);
+        assertThat(exited)
+                .withFailMessage("Writer %s did not finish within %d minutes:%n%s", writer, TIMEOUT_IN_MINUTES, output)
+                .isTrue();
+        assertThat(process.exitValue())
+                .withFailMessage("Writer %s failed within %s:%n%s", writer, MAX_HEAP, output)
+                .isZero();
+    }
+
+    /**
+     * Tests may run on the module path, the child process uses the class
+     * path instead.
+     */
+    private static String classPath() {
+        return Stream.of(System.getProperty("jdk.module.path"), System.getProperty("java.class.path"))
+                .filter(path -> path != null && !path.isEmpty())
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    static SyntheticRun largeRun() {
+        // About 40k messages
+        return SyntheticRun.builder()
+                .features(50)
+                .rules(2)
+                .scenarios(25)
+                .steps(5)
+                .tableRows(3)
+                .attachments(1)
+                .failureRate(0.05)
+                .retries(1)
+                .workers(4)
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (OutputStream out = OutputStream.nullOutputStream()) {
+            Iterator<Envelope> envelopes = largeRun().envelopes().iterator();
+            switch (args[0]) {
+                case "pretty" -> {
+                    try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().theme(cucumber()).build(out)) {
+                        while (envelopes.hasNext()) {
+                            writer.write(envelopes.next());
+                        }
+                    }
+                }
+                case "summary" -> {
+                    try (MessagesToSummaryWriter writer = MessagesToSummaryWriter.builder().theme(cucumber()).build(out)) {
+                        while (envelopes.hasNext()) {
+                            writer.write(envelopes.next());
+                        }
+                    }
+                }
+                case "progress" -> {
+                    try (MessagesToProgressWriter writer = MessagesToProgressWriter.builder().theme(cucumber()).build(out)) {
+                        while (envelopes.hasNext()) {
+                            writer.write(envelopes.next());
+                        }
+                    }
+                }
+                case "composite" -> {
+                    try (CompositeMessagesWriter writer = CompositeMessagesWriter.builder()
+                            .pretty(MessagesToPrettyWriter.builder().theme(cucumber()), out)
+                            .summary(MessagesToSummaryWriter.builder().theme(cucumber()), out)
+                            .progress(MessagesToProgressWriter.builder().theme(cucumber()), out)
+                            .build()) {
+                        while (envelopes.hasNext()) {
+                            writer.write(envelopes.next());
+                        }
+                    }
+                }
+                default -> throw new IllegalArgumentException(args[0]);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import io.cucumber.messages.NdjsonToMessageReader;
 import io.cucumber.messages.ndjson.Json;
 import io.cucumber.messages.types.Envelope;
 import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -22,7 +23,9 @@ import java.util.stream.Stream;
 
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_ATTACHMENTS;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_FEATURE_LINE;
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_PASSED_STEP_ARGUMENTS;
 import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_RULE_LINE;
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.USE_COMPACT_ANSI;
 import static io.cucumber.prettyformatter.TestTheme.demo;
 import static io.cucumber.prettyformatter.Theme.cucumber;
 import static io.cucumber.prettyformatter.Theme.none;
@@ -61,6 +64,21 @@ class MessagesToPrettyWriterAcceptanceTest {
         return testCases;
     }
 
+    static List<TestCase> compactAnsi() throws IOException {
+        Map<String, MessagesToPrettyWriter.Builder> themes = new LinkedHashMap<>();
+        themes.put("cucumber", MessagesToPrettyWriter.builder().theme(cucumber()).feature(USE_COMPACT_ANSI, true));
+        themes.put("demo", MessagesToPrettyWriter.builder().theme(demo()).feature(USE_COMPACT_ANSI, true));
+
+        List<Path> sources = getSources();
+
+        List<TestCase> testCases = new ArrayList<>();
+        sources.forEach(path ->
+                themes.forEach((strategyName, strategy) ->
+                        testCases.add(new TestCase(path, strategyName, strategy))));
+
+        return testCases;
+    }
+
     private static List<Path> getSources() throws IOException {
         try (Stream<Path> paths = Files.list(Paths.get("..", "testdata", "src"))) {
             return paths
@@ -69,6 +87,10 @@ class MessagesToPrettyWriterAcceptanceTest {
         }
     }
 
+    private static Path getSource(String name) {
+        return Paths.get("..", "testdata", "src", name + ".ndjson");
+    }
+
     private static <T extends OutputStream> T writePrettyReport(TestCase testCase, T out, MessagesToPrettyWriter.Builder builder) throws IOException {
         try (var in = Files.newInputStream(testCase.source)) {
             try (var reader = new NdjsonToMessageReader(in, deserializer)) {
@@ -89,6 +111,98 @@ class MessagesToPrettyWriterAcceptanceTest {
         assertThat(bytes.toString(UTF_8)).isEqualToIgnoringNewLines(Files.readString(testCase.expected));
     }
 
+    @ParameterizedTest
+    @MethodSource("compactAnsi")
+    void compactAnsiLooksTheSame(TestCase testCase) throws IOException {
+        String compact = writePrettyReport(testCase, new ByteArrayOutputStream(), testCase.builder).toString(UTF_8);
+        String expected = Files.readString(testCase.expected);
+        assertThat(TerminalEmulator.render(compact)).isEqualTo(TerminalEmulator.render(expected));
+    }
+
+    @Test
+    void compactAnsiReducesOutputSize() throws IOException {
+        long expectedSize = 0;
+        long compactSize = 0;
+        for (TestCase testCase : compactAnsi()) {
+            expectedSize += Files.readString(testCase.expected).length();
+            compactSize += writePrettyReport(testCase, new ByteArrayOutputStream(), testCase.builder)
+                    .toString(UTF_8)
+                    .replace(System.lineSeparator(), "\n")
+                    .length();
+        }
+        assertThat(compactSize).isLessThan(expectedSize);
+    }
+
+    @Test
+    void limitsDataTables() throws IOException {
+        TestCase testCase = new TestCase(getSource("markdown"), "none", MessagesToPrettyWriter.builder()
+                .theme(none())
+                .maxTableRows(2)
+                .maxTableCellWidth(3));
+        String output = writePrettyReport(testCase, new ByteArrayOutputStream(), testCase.builder)
+                .toString(UTF_8)
+                .replace(System.lineSeparator(), "\n");
+        assertThat(output).contains(""
+                + "        | na… | age |\n"
+                + "        | Bi… | 3   |\n"
+                + "        … 2 more rows\n");
+    }
+
+    @Test
+    void limitsDocStrings() throws IOException {
+        TestCase testCase = new TestCase(getSource("doc-strings"), "none", MessagesToPrettyWriter.builder()
+                .theme(none())
+                .maxDocStringLines(1));
+        String output = writePrettyReport(testCase, new ByteArrayOutputStream(), testCase.builder)
+                .toString(UTF_8)
+                .replace(System.lineSeparator(), "\n");
+        assertThat(output).contains(""
+                + "      \"\"\"\n"
+                + "      Here is some content\n"
+                + "      … 1 more line\n"
+                + "      \"\"\"\n");
+        assertThat(output).contains(""
+                + "      \"\"\"application/json\n"
+                + "      {\n"
+                + "      … 2 more lines\n"
+                + "      \"\"\"\n");
+    }
+
+    @Test
+    void summarizesArgumentsOfPassedSteps() throws IOException {
+        TestCase testCase = new TestCase(getSource("markdown"), "none", MessagesToPrettyWriter.builder()
+                .theme(none())
+                .feature(INCLUDE_PASSED_STEP_ARGUMENTS, false));
+        String output = writePrettyReport(testCase, new ByteArrayOutputStream(), testCase.builder)
+                .toString(UTF_8)
+                .replace(System.lineSeparator(), "\n");
+        assertThat(output).doesNotContain("type Cheese");
+        assertThat(output).contains(""
+                + "      Given some TypeScript code:                                 # samples/markdown/markdown.ts:4\n"
+                + "        (doc string, 1 line)\n");
+        // The failed step keeps its table
+        assertThat(output).contains(""
+                + "      When we use a data table and attach something and then fail # samples/markdown/markdown.ts:12\n"
+                + "        | name | age |\n");
+        assertThat(output).contains(""
+                + "      When we use a data table and attach something and then pass # samples/markdown/markdown.ts:12\n"
+                + "        (table 4x2)\n");
+    }
+
+    @Test
+    void rewritesUris() throws IOException {
+        TestCase testCase = new TestCase(getSource("markdown"), "none", MessagesToPrettyWriter.builder()
+                .theme(none())
+                .removeUriPrefix("samples/")
+                .replaceUriPrefix("samples/markdown/markdown.ts", "glue.ts"));
+        String output = writePrettyReport(testCase, new ByteArrayOutputStream(), testCase.builder)
+                .toString(UTF_8)
+                .replace(System.lineSeparator(), "\n");
+        assertThat(output).contains("# markdown/markdown.feature.md:");
+        assertThat(output).contains("# glue.ts:4\n");
+        assertThat(output).doesNotContain("# samples/");
+    }
+
     @ParameterizedTest
     @MethodSource("acceptance")
     @Disabled
@@ -1,16 +1,31 @@
 package io.cucumber.prettyformatter;
 
+import io.cucumber.messages.types.Duration;
 import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
 import io.cucumber.messages.types.TestRunFinished;
 import io.cucumber.messages.types.TestRunStarted;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.messages.types.TestStepResult;
+import io.cucumber.messages.types.TestStepResultStatus;
 import io.cucumber.messages.types.Timestamp;
+import io.cucumber.prettyformatter.InterferenceInterceptor.Mode;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static io.cucumber.messages.Convertor.toMessage;
+import static io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature.INCLUDE_ATTACHMENTS;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -54,6 +69,239 @@ class MessagesToPrettyWriterTest {
         assertDoesNotThrow(writer::close);
     }
 
+    @Test
+    void it_prints_captured_output_under_the_scenario(@TempDir Path spillDirectory) throws IOException {
+        InterferenceInterceptor interceptor = InterferenceInterceptor.builder()
+                .mode(Mode.CAPTURE)
+                .spillDirectory(spillDirectory)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        interceptor.acquire();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().captureOutput(interceptor).build(bytes)) {
+            writer.write(Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", null, new Timestamp(0L, 0))));
+            interceptor.beginCapture("started-1");
+            System.out.println("hello from glue");
+            writer.write(Envelope.of(new TestStepFinished("started-1", "step-1", passed(), new Timestamp(0L, 0))));
+            System.err.println("hello from hook");
+            interceptor.endCapture();
+            writer.write(Envelope.of(new TestCaseFinished("started-1", new Timestamp(0L, 0), false)));
+        } finally {
+            interceptor.release();
+        }
+
+        assertThat(bytes.toString(UTF_8)).isEqualToNormalizingNewlines("""
+                
+                
+                      hello from glue
+                
+                
+                      hello from hook
+                
+                """);
+    }
+
+    @Test
+    void it_spills_captured_output_beyond_the_limit(@TempDir Path spillDirectory) throws IOException {
+        InterferenceInterceptor interceptor = InterferenceInterceptor.builder()
+                .mode(Mode.CAPTURE)
+                .captureLimit(5)
+                .spillDirectory(spillDirectory)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        interceptor.acquire();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().captureOutput(interceptor).build(bytes)) {
+            writer.write(Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", null, new Timestamp(0L, 0))));
+            interceptor.beginCapture("started-1");
+            System.out.print("hello world");
+            interceptor.endCapture();
+            writer.write(Envelope.of(new TestCaseFinished("started-1", new Timestamp(0L, 0), false)));
+        } finally {
+            interceptor.release();
+        }
+
+        String output = bytes.toString(UTF_8);
+        assertThat(output).containsPattern("      hello\\r?\\n      \\[6 more bytes written to .+]");
+        try (Stream<Path> spilled = Files.list(spillDirectory)) {
+            List<Path> files = spilled.toList();
+            assertThat(files).hasSize(1);
+            assertThat(Files.readString(files.get(0))).isEqualTo(" world");
+        }
+    }
+
+    @Test
+    void it_does_not_split_characters_when_spilling(@TempDir Path spillDirectory) throws IOException {
+        InterferenceInterceptor interceptor = InterferenceInterceptor.builder()
+                .mode(Mode.CAPTURE)
+                .captureLimit(2)
+                .spillDirectory(spillDirectory)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream systemOut = System.out;
+        // Glue code writes to a console that uses UTF-8, the charset of
+        // System.out on Java 17
+        String consoleEncoding = System.setProperty("sun.stdout.encoding", UTF_8.name());
+        System.setOut(new PrintStream(new ByteArrayOutputStream(), true, UTF_8));
+        interceptor.acquire();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().captureOutput(interceptor).build(bytes)) {
+            writer.write(Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", null, new Timestamp(0L, 0))));
+            interceptor.beginCapture("started-1");
+            System.out.print("h\u00e9llo");
+            System.out.print("!");
+            interceptor.endCapture();
+            writer.write(Envelope.of(new TestCaseFinished("started-1", new Timestamp(0L, 0), false)));
+        } finally {
+            interceptor.release();
+            System.setOut(systemOut);
+            if (consoleEncoding == null) {
+                System.clearProperty("sun.stdout.encoding");
+            } else {
+                System.setProperty("sun.stdout.encoding", consoleEncoding);
+            }
+        }
+
+        String output = bytes.toString(UTF_8);
+        assertThat(output).containsPattern("      h\\r?\\n      \\[6 more bytes written to .+]");
+        try (Stream<Path> spilled = Files.list(spillDirectory)) {
+            List<Path> files = spilled.toList();
+            assertThat(files).hasSize(1);
+            assertThat(Files.readString(files.get(0))).isEqualTo("\u00e9llo!");
+        }
+    }
+
+    @Test
+    void it_captures_output_of_test_cases_executed_by_other_threads(@TempDir Path spillDirectory) throws Exception {
+        InterferenceInterceptor interceptor = InterferenceInterceptor.builder()
+                .mode(Mode.CAPTURE)
+                .spillDirectory(spillDirectory)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        interceptor.acquire();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().captureOutput(interceptor).build(bytes)) {
+            writer.write(Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", "worker-1", new Timestamp(0L, 0))));
+            writer.write(Envelope.of(new TestCaseStarted(0L, "started-2", "test-case-2", "worker-2", new Timestamp(0L, 0))));
+            Thread worker1 = new Thread(() -> {
+                interceptor.beginCapture("started-1");
+                System.out.println("hello from worker 1");
+                interceptor.endCapture();
+            });
+            Thread worker2 = new Thread(() -> {
+                interceptor.beginCapture("started-2");
+                System.out.println("hello from worker 2");
+                interceptor.endCapture();
+            });
+            worker1.start();
+            worker2.start();
+            worker1.join();
+            worker2.join();
+            writer.write(Envelope.of(new TestCaseFinished("started-2", new Timestamp(0L, 0), false)));
+            writer.write(Envelope.of(new TestCaseFinished("started-1", new Timestamp(0L, 0), false)));
+        } finally {
+            interceptor.release();
+        }
+
+        assertThat(bytes.toString(UTF_8))
+                .contains("      hello from worker 1", "      hello from worker 2");
+    }
+
+    @Test
+    void it_passes_through_output_of_threads_without_a_test_case() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream systemOut = System.out;
+        System.setOut(new PrintStream(out, true, UTF_8));
+        InterferenceInterceptor interceptor = InterferenceInterceptor.builder()
+                .mode(Mode.CAPTURE)
+                .build();
+        interceptor.acquire();
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder().captureOutput(interceptor).build(new ByteArrayOutputStream())) {
+            writer.write(Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", null, new Timestamp(0L, 0))));
+            interceptor.beginCapture("started-1");
+            Thread thread = new Thread(() -> System.out.print("other thread"));
+            thread.start();
+            thread.join();
+            System.out.print("unfinished");
+        } finally {
+            interceptor.release();
+            System.setOut(systemOut);
+        }
+        // Output of unfinished test cases is written on release
+        assertThat(out.toString(UTF_8)).isEqualTo("other threadunfinished");
+    }
+
+    @Test
+    void it_rejects_limits_that_are_not_positive() {
+        MessagesToPrettyWriter.Builder builder = MessagesToPrettyWriter.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.maxTableRows(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxTableCellWidth(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxDocStringLines(-1));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxStackTraceLines(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentBytes(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentLines(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentBytesPerTestCase(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentLinesPerTestCase(0));
+    }
+
+    @Test
+    void it_uses_attachments_only_when_included() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessagesToPrettyWriter withAttachments = MessagesToPrettyWriter.builder().build(bytes);
+        MessagesToPrettyWriter withoutAttachments = MessagesToPrettyWriter.builder()
+                .feature(INCLUDE_ATTACHMENTS, false)
+                .build(bytes);
+
+        assertThat(withAttachments.envelopeTypes()).contains(EnvelopeType.ATTACHMENT, EnvelopeType.GHERKIN_DOCUMENT);
+        assertThat(withoutAttachments.envelopeTypes()).doesNotContain(EnvelopeType.ATTACHMENT, EnvelopeType.SOURCE);
+    }
+
+    private static TestStepResult passed() {
+        return new TestStepResult(new Duration(0L, 0), null, TestStepResultStatus.PASSED, null);
+    }
+
+    @Test
+    void it_folds_and_limits_stack_traces() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .failureRate(1)
+                .build();
+
+        String folded = render(run, MessagesToPrettyWriter.builder().foldStackTraceFramesOf("io.cucumber.core"));
+        String limited = render(run, MessagesToPrettyWriter.builder().maxStackTraceLines(1));
+
+        assertThat(folded)
+                .contains("\tat com.example.Steps.check(Steps.java:42)", "\t... 1 framework frame")
+                .doesNotContain("Runner.run");
+        assertThat(limited)
+                .contains("java.lang.AssertionError: expected scenario", "... 2 more lines")
+                .doesNotContain("Steps.check");
+    }
+
+    @Test
+    void it_limits_attachments() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .attachments(2)
+                .failureRate(1)
+                .build();
+
+        String limited = render(run, MessagesToPrettyWriter.builder()
+                .maxAttachmentBytes(10)
+                .maxAttachmentLines(1)
+                .maxAttachmentBytesPerTestCase(100)
+                .maxAttachmentLinesPerTestCase(1));
+
+        assertThat(limited)
+                .contains("  attachment" + System.lineSeparator(), "[truncated, ")
+                .doesNotContain("attachment 0 of", "attachment 1 of");
+    }
+
+    private static String render(SyntheticRun run, MessagesToPrettyWriter.Builder builder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToPrettyWriter writer = builder.build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+        return bytes.toString(UTF_8);
+    }
+
     private static String renderAsPretty(Envelope... messages) throws IOException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try (MessagesToPrettyWriter writer = create(bytes)) {
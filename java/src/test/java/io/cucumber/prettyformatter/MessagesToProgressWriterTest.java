@@ -2,6 +2,10 @@ package io.cucumber.prettyformatter;
 
 import io.cucumber.messages.types.Duration;
 import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.TestCase;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
 import io.cucumber.messages.types.TestRunFinished;
 import io.cucumber.messages.types.TestRunStarted;
 import io.cucumber.messages.types.TestStepFinished;
@@ -14,8 +18,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
 
 import static io.cucumber.messages.Convertor.toMessage;
+import static io.cucumber.prettyformatter.MessagesToProgressWriter.ProgressFeature.UPDATE_LANES_IN_PLACE;
+import static io.cucumber.prettyformatter.MessagesToProgressWriter.ProgressFeature.USE_WORKER_LANES;
+import static java.util.Collections.emptyList;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -101,6 +109,126 @@ class MessagesToProgressWriterTest {
         assertThat(progress).containsPattern("^\\.{75}\r?\n\\.{53}$");
     }
 
+    @Test
+    void it_renders_snapshots_of_worker_lanes() throws IOException {
+        String progress = renderAsProgress(builder().feature(USE_WORKER_LANES, true), twoWorkers());
+        assertThat(progress).isEqualToNormalizingNewlines("""
+                worker-1: 0m 0.000s (0 done) slow scenario
+                
+                worker-1: 0m 5.000s (0 done) slow scenario .
+                worker-2: idle (1 done)
+                
+                """);
+    }
+
+    @Test
+    void it_renders_a_snapshot_of_worker_lanes_every_interval() throws IOException {
+        String progress = renderAsProgress(builder()
+                .feature(USE_WORKER_LANES, true)
+                .snapshotInterval(java.time.Duration.ofSeconds(1)), twoWorkers());
+        assertThat(progress).isEqualToNormalizingNewlines("""
+                worker-1: 0m 0.000s (0 done) slow scenario
+                
+                worker-1: 0m 1.000s (0 done) slow scenario .
+                worker-2: 0m 1.000s (0 done) fast scenario
+                
+                worker-1: 0m 5.000s (0 done) slow scenario .
+                worker-2: idle (1 done)
+                
+                """);
+    }
+
+    @Test
+    void it_redraws_worker_lanes_in_place() throws IOException {
+        String progress = renderAsProgress(builder()
+                .feature(USE_WORKER_LANES, true)
+                .feature(UPDATE_LANES_IN_PLACE, true), twoWorkers());
+        assertThat(progress)
+                .startsWith("\u001B[2Kworker-1: 0m 0.000s (0 done) slow scenario")
+                .contains("\u001B[1A\u001B[2Kworker-1")
+                .endsWith("\u001B[2A\u001B[2Kworker-1: 0m 5.000s (0 done) slow scenario ." + System.lineSeparator()
+                        + "\u001B[2Kworker-2: idle (1 done)" + System.lineSeparator());
+    }
+
+    @Test
+    void it_truncates_worker_lanes_to_max_width() throws IOException {
+        String progress = renderAsProgress(builder()
+                .feature(USE_WORKER_LANES, true)
+                .maxWidth(20), twoWorkers());
+        assertThat(progress).startsWith("worker-1: 0m 0.00…" + System.lineSeparator());
+    }
+
+    @Test
+    void it_truncates_worker_lanes_to_the_display_width_of_wide_characters() throws IOException {
+        String progress = renderAsProgress(builder()
+                .feature(USE_WORKER_LANES, true)
+                .maxWidth(36), oneWorker("\u65e5\u672c\u8a9e\u306e\u540d\u524d"));
+        assertThat(progress).startsWith("worker-1: 0m 0.000s (0 done) \u65e5\u672c\u2026" + System.lineSeparator());
+    }
+
+    @Test
+    void it_truncates_worker_lanes_without_splitting_surrogate_pairs() throws IOException {
+        String progress = renderAsProgress(builder()
+                .feature(USE_WORKER_LANES, true)
+                .maxWidth(35), oneWorker("\uD83D\uDE00\uD83D\uDE00\uD83D\uDE00\uD83D\uDE00"));
+        assertThat(progress).startsWith("worker-1: 0m 0.000s (0 done) \uD83D\uDE00\u2026" + System.lineSeparator());
+    }
+
+    @Test
+    void it_rejects_snapshot_intervals_that_are_not_positive() {
+        MessagesToProgressWriter.Builder builder = builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.snapshotInterval(java.time.Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> builder.snapshotInterval(java.time.Duration.ZERO));
+    }
+
+    @Test
+    void it_uses_only_the_messages_shown_as_progress() {
+        MessagesToProgressWriter writer = MessagesToProgressWriter.builder().build(new ByteArrayOutputStream());
+        assertThat(writer.envelopeTypes()).containsExactlyInAnyOrder(
+                EnvelopeType.TEST_RUN_HOOK_FINISHED,
+                EnvelopeType.TEST_STEP_FINISHED,
+                EnvelopeType.TEST_RUN_FINISHED);
+        assertThrows(UnsupportedOperationException.class, () -> writer.envelopeTypes().add(EnvelopeType.PICKLE));
+    }
+
+    @Test
+    void it_uses_messages_about_test_cases_for_worker_lanes() {
+        MessagesToProgressWriter writer = builder().feature(USE_WORKER_LANES, true).build(new ByteArrayOutputStream());
+        assertThat(writer.envelopeTypes()).contains(
+                EnvelopeType.PICKLE,
+                EnvelopeType.TEST_CASE,
+                EnvelopeType.TEST_CASE_STARTED,
+                EnvelopeType.TEST_STEP_STARTED);
+    }
+
+    private static Envelope[] twoWorkers() {
+        return new Envelope[]{
+                Envelope.of(new Pickle("pickle-1", "example.feature", null, "slow scenario", "en", emptyList(), emptyList(), List.of())),
+                Envelope.of(new Pickle("pickle-2", "example.feature", null, "fast scenario", "en", emptyList(), emptyList(), List.of())),
+                Envelope.of(new TestCase("test-case-1", "pickle-1", emptyList(), null)),
+                Envelope.of(new TestCase("test-case-2", "pickle-2", emptyList(), null)),
+                Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", "worker-1", new Timestamp(0L, 0))),
+                Envelope.of(new TestCaseStarted(0L, "started-2", "test-case-2", "worker-2", new Timestamp(0L, 0))),
+                Envelope.of(new TestStepFinished("started-1", "", passed(), new Timestamp(1L, 0))),
+                Envelope.of(new TestStepFinished("started-2", "", passed(), new Timestamp(1L, 0))),
+                Envelope.of(new TestCaseFinished("started-2", new Timestamp(1L, 0), false)),
+                Envelope.of(new TestRunFinished(null, true, new Timestamp(5L, 0), null, null))
+        };
+    }
+
+    private static Envelope[] oneWorker(String scenarioName) {
+        return new Envelope[]{
+                Envelope.of(new Pickle("pickle-1", "example.feature", null, scenarioName, "en", emptyList(), emptyList(), List.of())),
+                Envelope.of(new TestCase("test-case-1", "pickle-1", emptyList(), null)),
+                Envelope.of(new TestCaseStarted(0L, "started-1", "test-case-1", "worker-1", new Timestamp(0L, 0))),
+                Envelope.of(new TestRunFinished(null, true, new Timestamp(5L, 0), null, null))
+        };
+    }
+
+    private static TestStepResult passed() {
+        return new TestStepResult(new Duration(0L, 0), null, TestStepResultStatus.PASSED, null);
+    }
+
     private static String renderAsProgress(Envelope... messages) throws IOException {
         return renderAsProgress(builder(), messages);
     }
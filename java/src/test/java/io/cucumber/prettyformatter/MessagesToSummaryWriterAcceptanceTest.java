@@ -24,6 +24,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static io.cucumber.prettyformatter.MessagesToSummaryWriter.SummaryFeature.INCLUDE_ATTACHMENTS;
+import static io.cucumber.prettyformatter.MessagesToSummaryWriter.SummaryFeature.USE_COMPACT_ANSI;
 import static io.cucumber.prettyformatter.Theme.cucumber;
 import static io.cucumber.prettyformatter.Theme.plain;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -56,6 +57,14 @@ class MessagesToSummaryWriterAcceptanceTest {
         return testCases;
     }
 
+    static List<TestCase> compactAnsi() throws IOException {
+        List<TestCase> testCases = new ArrayList<>();
+        getSources().forEach(path -> testCases.add(new TestCase(path, "cucumber", MessagesToSummaryWriter.builder()
+                .theme(cucumber())
+                .feature(USE_COMPACT_ANSI, true))));
+        return testCases;
+    }
+
     private static List<Path> getSources() throws IOException {
         try (Stream<Path> paths = Files.list(Paths.get("..", "testdata", "src"))) {
             return paths
@@ -98,6 +107,14 @@ class MessagesToSummaryWriterAcceptanceTest {
         assertThat(bytes.toString(UTF_8)).isEqualToIgnoringNewLines(Files.readString(testCase.expected));
     }
 
+    @ParameterizedTest
+    @MethodSource("compactAnsi")
+    void compactAnsiLooksTheSame(TestCase testCase) throws IOException {
+        ByteArrayOutputStream bytes = writeSummaryReport(testCase, testCase.builder, messageOrderer.originalOrder());
+        String expected = Files.readString(testCase.expected);
+        assertThat(TerminalEmulator.render(bytes.toString(UTF_8))).isEqualTo(TerminalEmulator.render(expected));
+    }
+
     @ParameterizedTest
     @MethodSource("acceptance")
     @Disabled
@@ -5,10 +5,15 @@ import io.cucumber.messages.types.TestRunFinished;
 import io.cucumber.messages.types.TestRunStarted;
 import io.cucumber.messages.types.Timestamp;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import static io.cucumber.messages.Convertor.toMessage;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -64,6 +69,100 @@ class MessagesToSummaryWriterTest {
         assertDoesNotThrow(writer::close);
     }
 
+    @Test
+    void it_rejects_limits_that_are_not_positive() {
+        MessagesToSummaryWriter.Builder builder = MessagesToSummaryWriter.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.maxStackTraceLines(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentBytes(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentLines(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentBytesPerTestCase(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.maxAttachmentLinesPerTestCase(0));
+    }
+
+    @Test
+    void it_writes_attachments_of_failed_scenarios_to_files(@TempDir Path directory) throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .attachments(1)
+                .failureRate(1)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToSummaryWriter writer = MessagesToSummaryWriter.builder().attachmentsDirectory(directory).build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+
+        assertThat(bytes.toString(UTF_8)).contains("Embedding [text/plain 24 bytes] -> " + directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void it_folds_and_limits_stack_traces() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .failureRate(1)
+                .build();
+
+        String folded = render(run, MessagesToSummaryWriter.builder().foldStackTraceFramesOf("io.cucumber.core"));
+        String limited = render(run, MessagesToSummaryWriter.builder().maxStackTraceLines(1));
+
+        assertThat(folded)
+                .contains("\tat com.example.Steps.check(Steps.java:42)", "\t... 1 framework frame")
+                .doesNotContain("Runner.run");
+        assertThat(limited)
+                .contains("java.lang.AssertionError: expected scenario", "... 2 more lines")
+                .doesNotContain("Steps.check");
+    }
+
+    @Test
+    void it_limits_attachments() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .attachments(2)
+                .failureRate(1)
+                .build();
+
+        String limited = render(run, MessagesToSummaryWriter.builder()
+                .maxAttachmentBytes(10)
+                .maxAttachmentLines(1)
+                .maxAttachmentBytesPerTestCase(100)
+                .maxAttachmentLinesPerTestCase(1));
+
+        assertThat(limited)
+                .contains("  attachment" + System.lineSeparator(), "[truncated, ")
+                .doesNotContain("attachment 0 of", "attachment 1 of");
+    }
+
+    @Test
+    void it_limits_the_attachments_of_each_test_case_separately() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .features(1)
+                .scenarios(3)
+                .attachments(2)
+                .failureRate(1)
+                .build();
+
+        String limited = render(run, MessagesToSummaryWriter.builder()
+                .maxAttachmentLinesPerTestCase(1));
+
+        assertThat(limited).contains(
+                "attachment 0 of tcs0-0-0",
+                "attachment 0 of tcs0-1-0",
+                "attachment 0 of tcs0-2-0");
+    }
+
+    private static String render(SyntheticRun run, MessagesToSummaryWriter.Builder builder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToSummaryWriter writer = builder.build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+        return bytes.toString(UTF_8);
+    }
+
     private static String renderAsSummary(Envelope... messages) throws IOException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try (MessagesToSummaryWriter writer = create(bytes)) {
@@ -0,0 +1,295 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.cucumber.prettyformatter.Theme.plain;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NdjsonFileReaderTest {
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    @Test
+    void writesMessagesInOrderToEachWriter(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.write(file, SyntheticRun.builder()
+                .features(3)
+                .scenarios(10)
+                .tableRows(3)
+                .attachments(2)
+                .failureRate(0.2)
+                .retries(1)
+                .workers(3)
+                .build()
+                .lines()
+                .toList(), UTF_8);
+        NdjsonFileReader reader = NdjsonFileReader.builder(deserializer)
+                .threads(4)
+                // Smaller than most lines
+                .chunkSize(64)
+                .build();
+
+        ByteArrayOutputStream pretty = new ByteArrayOutputStream();
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        try (MessagesToPrettyWriter prettyWriter = MessagesToPrettyWriter.builder().theme(plain()).build(pretty);
+             MessagesToSummaryWriter summaryWriter = MessagesToSummaryWriter.builder().theme(plain()).build(summary)) {
+            reader.read(file, prettyWriter, summaryWriter);
+        }
+
+        assertThat(pretty.toString(UTF_8)).isEqualTo(renderSequentially(file, MessagesToPrettyWriter.builder().theme(plain())));
+        assertThat(summary.toString(UTF_8)).isEqualTo(renderSequentially(file, MessagesToSummaryWriter.builder().theme(plain())));
+    }
+
+    @Test
+    void parsesOnlyMessagesUsedByWriters(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        List<String> lines = SyntheticRun.builder()
+                .features(2)
+                .scenarios(5)
+                .attachments(3)
+                .build()
+                .lines()
+                .toList();
+        Files.write(file, lines, UTF_8);
+        List<String> parsed = Collections.synchronizedList(new ArrayList<>());
+        NdjsonFileReader reader = NdjsonFileReader.builder(json -> {
+                    parsed.add(json);
+                    return deserializer.readValue(json);
+                })
+                .chunkSize(1024)
+                .build();
+
+        ByteArrayOutputStream progress = new ByteArrayOutputStream();
+        try (MessagesToProgressWriter writer = MessagesToProgressWriter.builder().build(progress)) {
+            reader.read(file, writer);
+        }
+
+        assertThat(parsed.size()).isEqualTo(lines.stream()
+                .filter(line -> line.startsWith("{\"testStepFinished\"") || line.startsWith("{\"testRunFinished\""))
+                .count());
+        assertThat(progress.toString(UTF_8)).isEqualTo(renderSequentially(file, MessagesToProgressWriter.builder()));
+    }
+
+    @Test
+    void parsesAttachmentsOnlyWhenIncluded(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.write(file, SyntheticRun.builder().attachments(1).build().lines().toList(), UTF_8);
+        List<String> parsed = Collections.synchronizedList(new ArrayList<>());
+        NdjsonFileReader reader = NdjsonFileReader.builder(json -> {
+            parsed.add(json);
+            return deserializer.readValue(json);
+        }).build();
+
+        try (MessagesToPrettyWriter writer = MessagesToPrettyWriter.builder()
+                .feature(MessagesToPrettyWriter.PrettyFeature.INCLUDE_ATTACHMENTS, false)
+                .build(new ByteArrayOutputStream())) {
+            reader.read(file, writer);
+        }
+
+        assertThat(parsed.stream().anyMatch(line -> line.startsWith("{\"attachment\""))).isFalse();
+        assertThat(parsed.stream().anyMatch(line -> line.startsWith("{\"source\""))).isFalse();
+        assertThat(parsed.stream().anyMatch(line -> line.startsWith("{\"pickle\""))).isTrue();
+    }
+
+    @Test
+    void readsSamples() throws IOException {
+        NdjsonFileReader reader = NdjsonFileReader.builder(deserializer).threads(2).chunkSize(4096).build();
+        Path file = Paths.get("..", "testdata", "src", "attachments.ndjson");
+        CollectingWriter writer = new CollectingWriter();
+
+        reader.read(file, writer);
+
+        assertThat(writer.envelopes.size()).isEqualTo(Files.readAllLines(file).size());
+    }
+
+    @Test
+    void skipsBlankLines(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.writeString(file, "\n{\"testRunStarted\":{\"id\":\"1\",\"timestamp\":{\"seconds\":0,\"nanos\":0}}}\r\n  \n"
+                + "{\"testRunFinished\":{\"testRunStartedId\":\"1\",\"timestamp\":{\"seconds\":0,\"nanos\":0},\"success\":true}}");
+        CollectingWriter writer = new CollectingWriter();
+
+        NdjsonFileReader.builder(deserializer).chunkSize(10).build().read(file, writer);
+
+        assertThat(writer.envelopes.size()).isEqualTo(2);
+        assertThat(writer.envelopes.get(0).getTestRunStarted().isPresent()).isTrue();
+        assertThat(writer.envelopes.get(1).getTestRunFinished().isPresent()).isTrue();
+    }
+
+    @Test
+    void readsEmptyFile(@TempDir Path directory) throws IOException {
+        Path file = Files.createFile(directory.resolve("messages.ndjson"));
+        CollectingWriter writer = new CollectingWriter();
+
+        NdjsonFileReader.builder(deserializer).build().read(file, writer);
+
+        assertThat(writer.envelopes.isEmpty()).isTrue();
+    }
+
+    @Test
+    void throwsWhenMessageCanNotBeParsed(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.writeString(file, "{\"testRunStarted\":{\"id\":\"1\",\"timestamp\":{\"seconds\":0,\"nanos\":0}}}\n{\"testRunStarted\":\n");
+        NdjsonFileReader reader = NdjsonFileReader.builder(deserializer).build();
+
+        IOException exception = assertThrows(IOException.class, () -> reader.read(file, new CollectingWriter()));
+
+        assertThat(exception.getMessage()).startsWith("Could not parse the message at byte 66 of ");
+    }
+
+    @Test
+    void reportsLinesThatAreNotMessages(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        NdjsonFileReader reader = NdjsonFileReader.builder(deserializer).build();
+
+        for (String line : List.of("not a message", "{ 1 }", "{\"testRunStarted")) {
+            Files.writeString(file, line + "\n");
+            IOException exception = assertThrows(IOException.class, () -> reader.read(file, new CollectingWriter()));
+            assertThat(exception.getMessage()).startsWith("Could not parse the message at byte 0 of ");
+        }
+    }
+
+    @Test
+    void readsMessagesWithWhitespaceAroundTheFieldName(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.writeString(file, " {\t\"testRunStarted\" : {\"id\":\"1\",\"timestamp\":{\"seconds\":0,\"nanos\":0}}}\n");
+        CollectingWriter writer = new CollectingWriter();
+
+        NdjsonFileReader.builder(deserializer).build().read(file, writer);
+
+        assertThat(writer.envelopes.size()).isEqualTo(1);
+        assertThat(writer.envelopes.get(0).getTestRunStarted().isPresent()).isTrue();
+    }
+
+    @Test
+    void rethrowsFailuresOfTheDeserializer(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.writeString(file, "{\"testRunStarted\":{\"id\":\"1\",\"timestamp\":{\"seconds\":0,\"nanos\":0}}}\n");
+        NdjsonFileReader unchecked = NdjsonFileReader.builder(json -> {
+            throw new IllegalStateException("unchecked");
+        }).build();
+        NdjsonFileReader error = NdjsonFileReader.builder(json -> {
+            throw new AssertionError("error");
+        }).build();
+
+        IllegalStateException uncheckedException = assertThrows(IllegalStateException.class, () -> unchecked.read(file, new CollectingWriter()));
+        IOException errorException = assertThrows(IOException.class, () -> error.read(file, new CollectingWriter()));
+
+        assertThat(uncheckedException.getMessage()).isEqualTo("unchecked");
+        assertThat(errorException.getCause()).isInstanceOf(AssertionError.class);
+    }
+
+    @Test
+    void throwsWhenInterruptedWhileWaitingForMessages(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("messages.ndjson");
+        Files.writeString(file, "{\"testRunStarted\":{\"id\":\"1\",\"timestamp\":{\"seconds\":0,\"nanos\":0}}}\n");
+        CountDownLatch parsing = new CountDownLatch(1);
+        NdjsonFileReader reader = NdjsonFileReader.builder(json -> {
+            parsing.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            throw new IllegalStateException("never parsed");
+        }).build();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicReference<Boolean> interrupted = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                reader.read(file, new CollectingWriter());
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        thread.start();
+        parsing.await();
+        thread.interrupt();
+        thread.join();
+
+        assertThat(failure.get()).isInstanceOf(InterruptedIOException.class);
+        assertThat(interrupted.get()).isTrue();
+    }
+
+    @Test
+    void rejectsSettingsThatAreNotPositive() {
+        NdjsonFileReader.Builder builder = NdjsonFileReader.builder(deserializer);
+        assertThrows(IllegalArgumentException.class, () -> builder.threads(0));
+        assertThrows(IllegalArgumentException.class, () -> builder.chunkSize(0));
+    }
+
+    private static String renderSequentially(Path file, MessagesToPrettyWriter.Builder builder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToPrettyWriter writer = builder.build(bytes)) {
+            writeSequentially(file, writer);
+        }
+        return bytes.toString(UTF_8);
+    }
+
+    private static String renderSequentially(Path file, MessagesToSummaryWriter.Builder builder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToSummaryWriter writer = builder.build(bytes)) {
+            writeSequentially(file, writer);
+        }
+        return bytes.toString(UTF_8);
+    }
+
+    private static String renderSequentially(Path file, MessagesToProgressWriter.Builder builder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToProgressWriter writer = builder.build(bytes)) {
+            writeSequentially(file, writer);
+        }
+        return bytes.toString(UTF_8);
+    }
+
+    private static void writeSequentially(Path file, MessagesWriter writer) throws IOException {
+        try (var in = Files.newInputStream(file)) {
+            try (var reader = new NdjsonToMessageReader(in, deserializer)) {
+                for (var envelope : reader.lines().toList()) {
+                    writer.write(envelope);
+                }
+            }
+        }
+    }
+
+    @Test
+    void otherWritersUseAllMessagesByDefault() {
+        CollectingWriter writer = new CollectingWriter();
+        assertThat(writer.envelopeTypes()).containsExactlyInAnyOrder(EnvelopeType.values());
+        assertThrows(UnsupportedOperationException.class, () -> writer.envelopeTypes().remove(EnvelopeType.ATTACHMENT));
+    }
+
+    private static final class CollectingWriter implements MessagesWriter {
+        private final List<Envelope> envelopes = new ArrayList<>();
+
+        @Override
+        public void write(Envelope envelope) {
+            envelopes.add(envelope);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.prettyformatter.MessagesToPrettyWriter.PrettyFeature;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static io.cucumber.prettyformatter.Theme.cucumber;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrettyReportWriterAllocationTest {
+
+    // At most 888 bytes were measured, for the ambiguous sample on JDK 17,
+    // plus a margin of about 10%. Most of what remains is allocated by the
+    // query and when formatting source references.
+    private static final long BUDGET_IN_BYTES_PER_STEP = 1000;
+    private static final int ITERATIONS = 1000;
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"minimal", "all-statuses", "ambiguous", "data-tables", "doc-strings", "stack-traces"})
+    void allocatesWithinBudgetPerStep(String sample) throws IOException {
+        AllocationMeter meter = AllocationMeter.create();
+        Set<PrettyFeature> features = EnumSet.allOf(PrettyFeature.class);
+        PrettyReportData data = new PrettyReportData(features, cucumber());
+        List<TestStepFinished> steps = new ArrayList<>();
+
+        try (var writer = new PrettyReportWriter(OutputStream.nullOutputStream(), cucumber(), Function.identity(), features, data,
+                PickleTableFormatter.builder().build(), PickleDocStringFormatter.builder().build(),
+                ExceptionFormatter.builder().build(), AttachmentFormatter.builder().build(), null)) {
+            for (Envelope envelope : readEnvelopes(Paths.get("..", "testdata", "src", sample + ".ndjson"))) {
+                data.update(envelope);
+                envelope.getTestCaseStarted().ifPresent(writer::handleTestCaseStarted);
+                envelope.getTestStepFinished().ifPresent(steps::add);
+            }
+            assertThat(steps).isNotEmpty();
+
+            // Warm up, gives the JIT a chance to eliminate short-lived objects
+            replay(writer, steps);
+            long before = meter.allocatedBytes();
+            replay(writer, steps);
+            long allocated = meter.allocatedBytes() - before;
+
+            long allocatedPerStep = allocated / ((long) ITERATIONS * steps.size());
+            assertThat(allocatedPerStep)
+                    .withFailMessage("%s allocated %d bytes per step, the budget is %d", sample, allocatedPerStep, BUDGET_IN_BYTES_PER_STEP)
+                    .isLessThanOrEqualTo(BUDGET_IN_BYTES_PER_STEP);
+        }
+    }
+
+    private static void replay(PrettyReportWriter writer, List<TestStepFinished> steps) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (TestStepFinished step : steps) {
+                writer.handleTestStepFinished(step);
+            }
+        }
+    }
+
+    private static List<Envelope> readEnvelopes(Path source) throws IOException {
+        try (var in = Files.newInputStream(source)) {
+            try (var reader = new NdjsonToMessageReader(in, deserializer)) {
+                return reader.lines().toList();
+            }
+        }
+    }
+}
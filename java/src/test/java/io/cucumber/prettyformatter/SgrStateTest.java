@@ -0,0 +1,74 @@
+package io.cucumber.prettyformatter;
+
+import org.junit.jupiter.api.Test;
+
+import static io.cucumber.prettyformatter.Ansi.Attributes.BACKGROUND_BRIGHT_WHITE;
+import static io.cucumber.prettyformatter.Ansi.Attributes.BACKGROUND_DEFAULT;
+import static io.cucumber.prettyformatter.Ansi.Attributes.BOLD;
+import static io.cucumber.prettyformatter.Ansi.Attributes.FAINT;
+import static io.cucumber.prettyformatter.Ansi.Attributes.FAINT_OFF;
+import static io.cucumber.prettyformatter.Ansi.Attributes.FOREGROUND_RED;
+import static io.cucumber.prettyformatter.Ansi.Attributes.ITALIC;
+import static io.cucumber.prettyformatter.Ansi.Attributes.RESET;
+import static io.cucumber.prettyformatter.Ansi.Attributes.UNDERLINE;
+import static io.cucumber.prettyformatter.Ansi.Attributes.UNDERLINE_OFF;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SgrStateTest {
+
+    private static String transition(int from, int to) {
+        char[] buffer = new char[2 * SgrState.MAX_TRANSITION_LENGTH];
+        int end = SgrState.writeTransition(from, to, buffer, 0);
+        return new String(buffer, 0, end).replace("\u001B", "ESC");
+    }
+
+    private static int state(Ansi.Attributes... attributes) {
+        return SgrState.apply(SgrState.DEFAULT, Ansi.with(attributes));
+    }
+
+    @Test
+    void writesNothingWithoutChange() {
+        assertThat(transition(SgrState.DEFAULT, SgrState.DEFAULT)).isEmpty();
+    }
+
+    @Test
+    void writesOnlyChangedParameters() {
+        assertThat(transition(state(FOREGROUND_RED), state(FOREGROUND_RED, BOLD))).isEqualTo("ESC[1m");
+        assertThat(transition(state(BOLD), state(BOLD, ITALIC, UNDERLINE))).isEqualTo("ESC[3;4m");
+        assertThat(transition(state(ITALIC), state(ITALIC, BACKGROUND_BRIGHT_WHITE))).isEqualTo("ESC[107m");
+    }
+
+    @Test
+    void restoresIntensityAfterTurningItOff() {
+        assertThat(transition(state(BOLD, FAINT, FOREGROUND_RED), state(BOLD, FOREGROUND_RED))).isEqualTo("ESC[22;1m");
+    }
+
+    @Test
+    void prefersResetWhenShorter() {
+        assertThat(transition(state(BOLD, ITALIC, FOREGROUND_RED), SgrState.DEFAULT)).isEqualTo("ESC[0m");
+        assertThat(transition(state(BOLD, ITALIC, UNDERLINE, FOREGROUND_RED), state(ITALIC))).isEqualTo("ESC[0;3m");
+        assertThat(transition(state(UNDERLINE), state(BACKGROUND_BRIGHT_WHITE))).isEqualTo("ESC[0;107m");
+    }
+
+    @Test
+    void appliesAttributes() {
+        assertThat(state(FAINT, FAINT_OFF)).isEqualTo(SgrState.DEFAULT);
+        assertThat(state(UNDERLINE, UNDERLINE_OFF)).isEqualTo(SgrState.DEFAULT);
+        assertThat(state(BACKGROUND_BRIGHT_WHITE, BACKGROUND_DEFAULT)).isEqualTo(SgrState.DEFAULT);
+        assertThat(state(BOLD, FOREGROUND_RED, RESET)).isEqualTo(SgrState.DEFAULT);
+    }
+
+    @Test
+    void ignoresUntrackedParameters() {
+        // Blink
+        assertThat(SgrState.apply(SgrState.DEFAULT, 5)).isEqualTo(SgrState.DEFAULT);
+    }
+
+    @Test
+    void spacesOnlyShowBackgroundAndUnderline() {
+        assertThat(SgrState.isSpaceEquivalent(state(BOLD, FOREGROUND_RED), SgrState.DEFAULT)).isTrue();
+        assertThat(SgrState.isSpaceEquivalent(state(BACKGROUND_BRIGHT_WHITE), SgrState.DEFAULT)).isFalse();
+        assertThat(SgrState.isSpaceEquivalent(state(UNDERLINE), state(UNDERLINE, FOREGROUND_RED))).isFalse();
+        assertThat(SgrState.isSpaceEquivalent(state(UNDERLINE), state(UNDERLINE))).isTrue();
+    }
+}
@@ -1,13 +1,19 @@
 package io.cucumber.prettyformatter;
 
+import io.cucumber.messages.types.Hook;
 import io.cucumber.messages.types.JavaMethod;
 import io.cucumber.messages.types.JavaStackTraceElement;
 import io.cucumber.messages.types.Location;
 import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinition;
+import io.cucumber.messages.types.StepDefinitionPattern;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+import static io.cucumber.messages.types.HookType.BEFORE_TEST_CASE;
+import static io.cucumber.messages.types.StepDefinitionPatternType.CUCUMBER_EXPRESSION;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -123,4 +129,43 @@ class SourceReferenceFormatterTest {
                 .contains("org.example.Example.example(path/to/org/example/Example.java:31415)");
     }
 
+    @Test
+    void formats_the_location_of_a_step_definition_once() {
+        AtomicInteger formatted = new AtomicInteger();
+        SourceReferenceFormatter formatter = new SourceReferenceFormatter(uri -> {
+            formatted.incrementAndGet();
+            return uri;
+        });
+        StepDefinition stepDefinition = new StepDefinition(
+                "step-definition-1",
+                new StepDefinitionPattern("a step", CUCUMBER_EXPRESSION),
+                new SourceReference("path/to/steps.js", null, null, new Location(3, null))
+        );
+        assertThat(formatter.format(stepDefinition))
+                .contains("path/to/steps.js:3");
+        assertThat(formatter.format(stepDefinition))
+                .contains("path/to/steps.js:3");
+        assertThat(formatted.get()).isEqualTo(1);
+    }
+
+    @Test
+    void formats_the_location_of_a_hook_once() {
+        AtomicInteger formatted = new AtomicInteger();
+        SourceReferenceFormatter formatter = new SourceReferenceFormatter(uri -> {
+            formatted.incrementAndGet();
+            return uri;
+        });
+        Hook hook = new Hook(
+                "hook-1",
+                null,
+                new SourceReference("path/to/hooks.js", null, null, new Location(7, null)),
+                null,
+                BEFORE_TEST_CASE
+        );
+        assertThat(formatter.format(hook))
+                .contains("path/to/hooks.js:7");
+        assertThat(formatter.format(hook))
+                .contains("path/to/hooks.js:7");
+        assertThat(formatted.get()).isEqualTo(1);
+    }
 }
@@ -0,0 +1,444 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates the messages of a test run of any size.
+ * <p>
+ * The messages are generated lazily, in the order Cucumber would emit them:
+ * the sources, documents and pickles of each feature, the step definitions,
+ * the test cases and finally the executions of the test cases. Everything
+ * is derived from indices, so generating a message requires no memory of
+ * earlier messages. Executions of test cases by different workers are
+ * interleaved message by message. Timestamps are taken in the order the
+ * messages are emitted, so the executions of the workers overlap in time.
+ */
+final class SyntheticRun {
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    private static final String TEST_RUN_STARTED_ID = "run";
+    private static final String[] KEYWORDS = {"Given ", "When ", "Then ", "And "};
+    private static final String[] KEYWORD_TYPES = {"Context", "Action", "Outcome", "Conjunction"};
+    // Replaced by a timestamp once the message is emitted
+    private static final String NOW = "\"now\"";
+
+    private final int features;
+    private final int rules;
+    private final int scenarios;
+    private final int steps;
+    private final int tableRows;
+    private final int attachments;
+    private final double failureRate;
+    private final int retries;
+    private final int workers;
+    private final long seed;
+    private long clock;
+
+    private SyntheticRun(Builder builder) {
+        this.features = builder.features;
+        this.rules = builder.rules;
+        this.scenarios = builder.scenarios;
+        this.steps = builder.steps;
+        this.tableRows = builder.tableRows;
+        this.attachments = builder.attachments;
+        this.failureRate = builder.failureRate;
+        this.retries = builder.retries;
+        this.workers = builder.workers;
+        this.seed = builder.seed;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The messages of the run. Each call generates the run anew.
+     */
+    Stream<Envelope> envelopes() {
+        return lines().map(SyntheticRun::parse);
+    }
+
+    /**
+     * The messages of the run, as lines of NDJSON. The timestamps are taken
+     * from a clock shared by the streams, so only one stream should be
+     * consumed at a time.
+     */
+    Stream<String> lines() {
+        clock = 0;
+        return Stream.of(
+                features().flatMap(this::feature),
+                IntStream.range(0, steps).mapToObj(this::stepDefinition),
+                Stream.generate(this::testRunStarted).limit(1),
+                features().flatMap(feature -> scenariosOf(feature).mapToObj(scenario -> testCase(feature, scenario))),
+                executions(),
+                Stream.generate(this::testRunFinished).limit(1)
+        ).flatMap(lines -> lines);
+    }
+
+    private String testRunStarted() {
+        return "{\"testRunStarted\":{\"id\":\"" + TEST_RUN_STARTED_ID + "\",\"timestamp\":" + timestamp() + "}}";
+    }
+
+    private String testRunFinished() {
+        boolean success = features().allMatch(feature -> scenariosOf(feature).noneMatch(scenario ->
+                IntStream.rangeClosed(0, retries).allMatch(attempt -> fails(feature, scenario, attempt))));
+        return "{\"testRunFinished\":{\"testRunStartedId\":\"" + TEST_RUN_STARTED_ID + "\",\"timestamp\":"
+                + timestamp() + ",\"success\":" + success + "}}";
+    }
+
+    private static Envelope parse(String line) {
+        try {
+            return deserializer.readValue(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Stream<Integer> features() {
+        return IntStream.range(0, features).boxed();
+    }
+
+    private IntStream scenariosOf(int feature) {
+        return IntStream.range(0, Math.max(rules, 1) * scenarios);
+    }
+
+    private Stream<String> feature(int feature) {
+        String uri = uri(feature);
+        StringBuilder source = new StringBuilder("Feature: feature " + feature + "\n");
+        StringBuilder children = new StringBuilder();
+        List<String> pickles = new ArrayList<>();
+        int line = 1;
+        for (int rule = 0; rule < Math.max(rules, 1); rule++) {
+            StringBuilder scenarioNodes = new StringBuilder();
+            int indent = 2;
+            int ruleLine = 0;
+            if (rules > 0) {
+                line += 2;
+                ruleLine = line;
+                indent = 4;
+                source.append("\n  Rule: rule ").append(rule).append("\n");
+            }
+            for (int i = 0; i < scenarios; i++) {
+                int scenario = rule * scenarios + i;
+                String scenarioId = "f" + feature + "-sc" + scenario;
+                line += 2;
+                int scenarioLine = line;
+                source.append("\n").append(" ".repeat(indent)).append("Scenario: scenario ").append(scenario).append("\n");
+                StringBuilder stepNodes = new StringBuilder();
+                StringBuilder pickleSteps = new StringBuilder();
+                for (int step = 0; step < steps; step++) {
+                    line++;
+                    String stepId = scenarioId + "-st" + step;
+                    String keyword = KEYWORDS[Math.min(step, KEYWORDS.length - 1)];
+                    String keywordType = KEYWORD_TYPES[Math.min(step, KEYWORD_TYPES.length - 1)];
+                    source.append(" ".repeat(indent + 2)).append(keyword).append(stepText(step)).append("\n");
+                    StringBuilder tableNode = new StringBuilder();
+                    StringBuilder pickleTable = new StringBuilder();
+                    if (step == 0 && tableRows > 0) {
+                        tableNode.append(",\"dataTable\":{\"location\":").append(location(line + 1, indent + 5)).append(",\"rows\":[");
+                        pickleTable.append(",\"argument\":{\"dataTable\":{\"rows\":[");
+                        for (int row = 0; row < tableRows; row++) {
+                            line++;
+                            String name = row == 0 ? "name" : "user " + row;
+                            String value = row == 0 ? "value" : String.valueOf(row * 7);
+                            source.append(" ".repeat(indent + 4)).append("| ").append(name).append(" | ").append(value).append(" |\n");
+                            tableNode.append(row == 0 ? "" : ",")
+                                    .append("{\"id\":\"").append(stepId).append("-r").append(row)
+                                    .append("\",\"location\":").append(location(line, indent + 5))
+                                    .append(",\"cells\":[{\"location\":").append(location(line, indent + 7))
+                                    .append(",\"value\":\"").append(name).append("\"},{\"location\":")
+                                    .append(location(line, indent + 10 + name.length()))
+                                    .append(",\"value\":\"").append(value).append("\"}]}");
+                            pickleTable.append(row == 0 ? "" : ",")
+                                    .append("{\"cells\":[{\"value\":\"").append(name)
+                                    .append("\"},{\"value\":\"").append(value).append("\"}]}");
+                        }
+                        tableNode.append("]}");
+                        pickleTable.append("]}}");
+                    }
+                    stepNodes.append(step == 0 ? "" : ",")
+                            .append("{\"id\":\"").append(stepId).append("\",\"location\":")
+                            .append(location(line - (step == 0 ? tableRows : 0), indent + 3))
+                            .append(",\"keyword\":\"").append(keyword).append("\",\"keywordType\":\"").append(keywordType)
+                            .append("\",\"text\":\"").append(stepText(step)).append("\"").append(tableNode).append("}");
+                    pickleSteps.append(step == 0 ? "" : ",")
+                            .append("{\"id\":\"").append(pickleStepId(feature, scenario, step))
+                            .append("\",\"text\":\"").append(stepText(step))
+                            .append("\",\"type\":\"").append(keywordType.equals("Conjunction") ? "Outcome" : keywordType)
+                            .append("\"").append(pickleTable)
+                            .append(",\"astNodeIds\":[\"").append(stepId).append("\"]}");
+                }
+                scenarioNodes.append(i == 0 ? "" : ",")
+                        .append("{\"scenario\":{\"id\":\"").append(scenarioId).append("\",\"tags\":[],\"location\":")
+                        .append(location(scenarioLine, indent + 1))
+                        .append(",\"keyword\":\"Scenario\",\"name\":\"scenario ").append(scenario)
+                        .append("\",\"description\":\"\",\"steps\":[").append(stepNodes).append("],\"examples\":[]}}");
+                pickles.add("{\"pickle\":{\"id\":\"" + pickleId(feature, scenario) + "\",\"uri\":\"" + uri
+                        + "\",\"location\":" + location(scenarioLine, indent + 1)
+                        + ",\"astNodeIds\":[\"" + scenarioId + "\"],\"tags\":[],\"name\":\"scenario " + scenario
+                        + "\",\"language\":\"en\",\"steps\":[" + pickleSteps + "]}}");
+            }
+            if (rules > 0) {
+                children.append(rule == 0 ? "" : ",")
+                        .append("{\"rule\":{\"id\":\"f").append(feature).append("-r").append(rule)
+                        .append("\",\"location\":").append(location(ruleLine, 3))
+                        .append(",\"keyword\":\"Rule\",\"name\":\"rule ").append(rule)
+                        .append("\",\"description\":\"\",\"children\":[").append(scenarioNodes).append("],\"tags\":[]}}");
+            } else {
+                children.append(scenarioNodes);
+            }
+        }
+        String sourceMessage = "{\"source\":{\"data\":\"" + source.toString().replace("\n", "\\n")
+                + "\",\"uri\":\"" + uri + "\",\"mediaType\":\"text/x.cucumber.gherkin+plain\"}}";
+        String document = "{\"gherkinDocument\":{\"feature\":{\"tags\":[],\"location\":" + location(1, 1)
+                + ",\"language\":\"en\",\"keyword\":\"Feature\",\"name\":\"feature " + feature
+                + "\",\"description\":\"\",\"children\":[" + children + "]},\"comments\":[],\"uri\":\"" + uri + "\"}}";
+        return Stream.concat(Stream.of(sourceMessage, document), pickles.stream());
+    }
+
+    private String stepDefinition(int step) {
+        return "{\"stepDefinition\":{\"id\":\"sd" + step + "\",\"pattern\":{\"type\":\"CUCUMBER_EXPRESSION\",\"source\":\""
+                + stepText(step) + "\"},\"sourceReference\":{\"uri\":\"src/steps.ts\",\"location\":{\"line\":"
+                + (step * 3 + 1) + "}}}}";
+    }
+
+    private String testCase(int feature, int scenario) {
+        StringBuilder testSteps = new StringBuilder();
+        for (int step = 0; step < steps; step++) {
+            testSteps.append(step == 0 ? "" : ",")
+                    .append("{\"id\":\"").append(testStepId(feature, scenario, step))
+                    .append("\",\"pickleStepId\":\"").append(pickleStepId(feature, scenario, step))
+                    .append("\",\"stepDefinitionIds\":[\"sd").append(step)
+                    .append("\"],\"stepMatchArgumentsLists\":[{\"stepMatchArguments\":[]}]}");
+        }
+        return "{\"testCase\":{\"id\":\"" + testCaseId(feature, scenario) + "\",\"pickleId\":\"" + pickleId(feature, scenario)
+                + "\",\"testSteps\":[" + testSteps + "],\"testRunStartedId\":\"" + TEST_RUN_STARTED_ID + "\"}}";
+    }
+
+    /**
+     * Each worker executes a test case, including its retries, after which
+     * the workers take the next test cases. The messages of the workers are
+     * interleaved, then timestamped.
+     */
+    private Stream<String> executions() {
+        int testCasesPerFeature = Math.max(rules, 1) * scenarios;
+        int testCases = features * testCasesPerFeature;
+        int rounds = (testCases + workers - 1) / workers;
+        return IntStream.range(0, rounds).boxed().flatMap(round -> {
+            List<List<String>> executions = new ArrayList<>();
+            for (int worker = 0; worker < workers; worker++) {
+                int testCase = round * workers + worker;
+                if (testCase < testCases) {
+                    executions.add(execution(testCase / testCasesPerFeature, testCase % testCasesPerFeature, worker));
+                }
+            }
+            List<String> interleaved = new ArrayList<>();
+            for (int i = 0; !executions.isEmpty(); i++) {
+                for (int worker = 0; worker < executions.size(); worker++) {
+                    List<String> execution = executions.get(worker);
+                    if (i < execution.size()) {
+                        interleaved.add(execution.get(i));
+                    }
+                }
+                int index = i;
+                executions.removeIf(execution -> index + 1 >= execution.size());
+            }
+            return interleaved.stream().map(message -> message.replace(NOW, timestamp()));
+        });
+    }
+
+    private List<String> execution(int feature, int scenario, int worker) {
+        List<String> messages = new ArrayList<>();
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            boolean failed = fails(feature, scenario, attempt);
+            boolean willBeRetried = failed && attempt < retries;
+            String testCaseStartedId = "tcs" + feature + "-" + scenario + "-" + attempt;
+            messages.add("{\"testCaseStarted\":{\"id\":\"" + testCaseStartedId + "\",\"testCaseId\":\"" + testCaseId(feature, scenario)
+                    + "\",\"workerId\":\"worker-" + worker + "\",\"timestamp\":" + NOW + ",\"attempt\":" + attempt + "}}");
+            for (int step = 0; step < steps; step++) {
+                String testStepId = testStepId(feature, scenario, step);
+                messages.add("{\"testStepStarted\":{\"testCaseStartedId\":\"" + testCaseStartedId + "\",\"testStepId\":\""
+                        + testStepId + "\",\"timestamp\":" + NOW + "}}");
+                if (step == steps - 1) {
+                    for (int attachment = 0; attachment < attachments; attachment++) {
+                        messages.add("{\"attachment\":{\"testCaseStartedId\":\"" + testCaseStartedId + "\",\"testStepId\":\""
+                                + testStepId + "\",\"body\":\"attachment " + attachment + " of " + testCaseStartedId
+                                + "\",\"contentEncoding\":\"IDENTITY\",\"mediaType\":\"text/plain\",\"timestamp\":" + NOW + "}}");
+                    }
+                }
+                messages.add("{\"testStepFinished\":{\"testCaseStartedId\":\"" + testCaseStartedId + "\",\"testStepId\":\""
+                        + testStepId + "\",\"testStepResult\":" + result(failed && step == steps - 1, feature, scenario)
+                        + ",\"timestamp\":" + NOW + "}}");
+            }
+            messages.add("{\"testCaseFinished\":{\"testCaseStartedId\":\"" + testCaseStartedId + "\",\"timestamp\":" + NOW
+                    + ",\"willBeRetried\":" + willBeRetried + "}}");
+            if (!willBeRetried) {
+                break;
+            }
+        }
+        return messages;
+    }
+
+    private boolean fails(int feature, int scenario, int attempt) {
+        if (failureRate == 0) {
+            return false;
+        }
+        long index = ((long) feature * 1_000_003 + scenario) * 31 + attempt;
+        return new SplittableRandom(seed ^ index * 0x9E3779B97F4A7C15L).nextDouble() < failureRate;
+    }
+
+    private static String result(boolean failed, int feature, int scenario) {
+        String duration = "\"duration\":{\"seconds\":0,\"nanos\":1000000}";
+        if (!failed) {
+            return "{\"status\":\"PASSED\"," + duration + "}";
+        }
+        String message = "expected scenario " + scenario + " of feature " + feature + " to pass";
+        return "{\"message\":\"" + message + "\",\"exception\":{\"type\":\"java.lang.AssertionError\",\"message\":\"" + message
+                + "\",\"stackTrace\":\"java.lang.AssertionError: " + message
+                + "\\n\\tat com.example.Steps.check(Steps.java:42)\\n\\tat io.cucumber.core.runner.Runner.run(Runner.java:1)\"},"
+                + "\"status\":\"FAILED\"," + duration + "}";
+    }
+
+    private String timestamp() {
+        long nanos = clock++ * 1_000_000;
+        return "{\"seconds\":" + nanos / 1_000_000_000 + ",\"nanos\":" + nanos % 1_000_000_000 + "}";
+    }
+
+    private static String location(int line, int column) {
+        return "{\"line\":" + line + ",\"column\":" + column + "}";
+    }
+
+    private static String uri(int feature) {
+        return "features/feature-" + feature + ".feature";
+    }
+
+    private static String stepText(int step) {
+        return "step " + step + " is executed";
+    }
+
+    private static String pickleId(int feature, int scenario) {
+        return "p" + feature + "-" + scenario;
+    }
+
+    private static String pickleStepId(int feature, int scenario, int step) {
+        return pickleId(feature, scenario) + "-" + step;
+    }
+
+    private static String testCaseId(int feature, int scenario) {
+        return "tc" + feature + "-" + scenario;
+    }
+
+    private static String testStepId(int feature, int scenario, int step) {
+        return testCaseId(feature, scenario) + "-" + step;
+    }
+
+    static final class Builder {
+
+        private int features = 1;
+        private int rules;
+        private int scenarios = 1;
+        private int steps = 3;
+        private int tableRows;
+        private int attachments;
+        private double failureRate;
+        private int retries;
+        private int workers = 1;
+        private long seed = 1;
+
+        private Builder() {
+        }
+
+        Builder features(int features) {
+            this.features = features;
+            return this;
+        }
+
+        /**
+         * The number of rules per feature. With no rules, the scenarios are
+         * placed directly in the feature.
+         */
+        Builder rules(int rules) {
+            this.rules = rules;
+            return this;
+        }
+
+        /**
+         * The number of scenarios per rule, or per feature without rules.
+         */
+        Builder scenarios(int scenarios) {
+            this.scenarios = scenarios;
+            return this;
+        }
+
+        Builder steps(int steps) {
+            if (steps < 1) {
+                throw new IllegalArgumentException("steps must be a positive value");
+            }
+            this.steps = steps;
+            return this;
+        }
+
+        /**
+         * The number of rows, including the header, of a data table on the
+         * first step of each scenario.
+         */
+        Builder tableRows(int tableRows) {
+            this.tableRows = tableRows;
+            return this;
+        }
+
+        /**
+         * The number of attachments on the last step of each scenario.
+         */
+        Builder attachments(int attachments) {
+            this.attachments = attachments;
+            return this;
+        }
+
+        /**
+         * The chance that an attempt of a scenario fails on its last step.
+         */
+        Builder failureRate(double failureRate) {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * The number of times a failed scenario is retried.
+         */
+        Builder retries(int retries) {
+            this.retries = retries;
+            return this;
+        }
+
+        Builder workers(int workers) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("workers must be a positive value");
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        SyntheticRun build() {
+            return new SyntheticRun(this);
+        }
+    }
+}
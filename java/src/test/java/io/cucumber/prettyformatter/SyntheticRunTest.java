@@ -0,0 +1,87 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestRunFinished;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyntheticRunTest {
+
+    @Test
+    void summarizesRun() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .features(2)
+                .rules(2)
+                .scenarios(3)
+                .steps(4)
+                .tableRows(3)
+                .attachments(2)
+                .workers(3)
+                .build();
+
+        String summary = renderAsSummary(run);
+
+        assertThat(summary).contains("12 scenarios (12 passed)");
+        assertThat(summary).contains("48 steps (48 passed)");
+    }
+
+    @Test
+    void retriesFailedScenarios() throws IOException {
+        SyntheticRun run = SyntheticRun.builder()
+                .features(1)
+                .scenarios(2)
+                .failureRate(1)
+                .retries(2)
+                .workers(2)
+                .build();
+
+        List<Envelope> envelopes = run.envelopes().toList();
+
+        assertThat(envelopes.stream().filter(envelope -> envelope.getTestCaseStarted().isPresent()).count())
+                .isEqualTo(6);
+        assertThat(envelopes.get(envelopes.size() - 1).getTestRunFinished().map(TestRunFinished::getSuccess))
+                .contains(false);
+        assertThat(renderAsSummary(run)).contains("2 scenarios (2 failed)");
+    }
+
+    @Test
+    void timestampsMessagesInTheOrderTheyAreEmitted() {
+        SyntheticRun run = SyntheticRun.builder()
+                .features(1)
+                .scenarios(4)
+                .attachments(1)
+                .failureRate(0.5)
+                .retries(1)
+                .workers(3)
+                .build();
+        Pattern timestamp = Pattern.compile("\"timestamp\":\\{\"seconds\":(\\d+),\"nanos\":(\\d+)}");
+
+        List<Long> timestamps = run.lines()
+                .map(timestamp::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> Long.parseLong(matcher.group(1)) * 1_000_000_000 + Long.parseLong(matcher.group(2)))
+                .toList();
+
+        assertThat(timestamps).isSorted().doesNotHaveDuplicates();
+    }
+
+    private static String renderAsSummary(SyntheticRun run) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToSummaryWriter writer = MessagesToSummaryWriter.builder().theme(Theme.plain()).build(bytes)) {
+            Iterator<Envelope> envelopes = run.envelopes().iterator();
+            while (envelopes.hasNext()) {
+                writer.write(envelopes.next());
+            }
+        }
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+}
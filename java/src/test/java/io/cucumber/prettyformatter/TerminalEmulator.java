@@ -0,0 +1,96 @@
+package io.cucumber.prettyformatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders output with ANSI escape codes into the cells a terminal would show.
+ * <p>
+ * Two outputs that render to the same cells look the same. Spaces only show
+ * their background and underline. The style at the end of each line is kept
+ * as well, as it affects whatever is written next.
+ */
+final class TerminalEmulator {
+
+    private boolean bold;
+    private boolean faint;
+    private boolean italic;
+    private boolean underline;
+    private int foreground = 39;
+    private int background = 49;
+
+    private TerminalEmulator() {
+
+    }
+
+    static List<String> render(String output) {
+        return new TerminalEmulator().renderCells(output);
+    }
+
+    private List<String> renderCells(String output) {
+        List<String> cells = new ArrayList<>();
+        int i = 0;
+        while (i < output.length()) {
+            char c = output.charAt(i);
+            if (c == 27 && i + 1 < output.length() && output.charAt(i + 1) == '[') {
+                int end = output.indexOf('m', i);
+                for (String parameter : output.substring(i + 2, end).split(";", -1)) {
+                    apply(parameter.isEmpty() ? 0 : Integer.parseInt(parameter));
+                }
+                i = end + 1;
+                continue;
+            }
+            if (c == '\n') {
+                cells.add("\\n " + describe());
+            } else if (c == ' ' && !underline) {
+                cells.add("  background=" + background);
+            } else if (c != '\r') {
+                cells.add(c + " " + describe());
+            }
+            i++;
+        }
+        cells.add("end " + describe());
+        return cells;
+    }
+
+    private void apply(int parameter) {
+        if (parameter == 0) {
+            bold = false;
+            faint = false;
+            italic = false;
+            underline = false;
+            foreground = 39;
+            background = 49;
+        } else if (parameter == 1) {
+            bold = true;
+        } else if (parameter == 2) {
+            faint = true;
+        } else if (parameter == 22) {
+            bold = false;
+            faint = false;
+        } else if (parameter == 3) {
+            italic = true;
+        } else if (parameter == 23) {
+            italic = false;
+        } else if (parameter == 4) {
+            underline = true;
+        } else if (parameter == 24) {
+            underline = false;
+        } else if ((parameter >= 30 && parameter <= 39) || (parameter >= 90 && parameter <= 97)) {
+            foreground = parameter;
+        } else if ((parameter >= 40 && parameter <= 49) || (parameter >= 100 && parameter <= 107)) {
+            background = parameter;
+        } else {
+            throw new IllegalArgumentException("Unsupported parameter " + parameter);
+        }
+    }
+
+    private String describe() {
+        return "bold=" + bold
+                + " faint=" + faint
+                + " italic=" + italic
+                + " underline=" + underline
+                + " foreground=" + foreground
+                + " background=" + background;
+    }
+}
@@ -0,0 +1,41 @@
+package io.cucumber.prettyformatter;
+
+import org.junit.jupiter.api.Test;
+
+import static io.cucumber.prettyformatter.Theme.Element.ATTACHMENT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextLinesTest {
+
+    @Test
+    void counts_lines_like_a_buffered_reader() {
+        assertThat(TextLines.countLines("", 0, 0)).isEqualTo(0);
+        assertThat(TextLines.countLines("a", 0, 1)).isEqualTo(1);
+        assertThat(TextLines.countLines("a\n", 0, 2)).isEqualTo(1);
+        assertThat(TextLines.countLines("\n", 0, 1)).isEqualTo(1);
+        assertThat(TextLines.countLines("a\r\nb\rc\n\nd", 0, 9)).isEqualTo(5);
+    }
+
+    @Test
+    void finds_lines_within_a_range() {
+        String text = "a\r\nbc\nd";
+        assertThat(TextLines.lineEnd(text, 0, text.length())).isEqualTo(1);
+        assertThat(TextLines.nextLineStart(text, 1, text.length())).isEqualTo(3);
+        assertThat(TextLines.lineEnd(text, 3, 4)).isEqualTo(4);
+        assertThat(TextLines.nextLineStart(text, 4, 4)).isEqualTo(4);
+        // A \r at the end of the range is not followed by its \n
+        assertThat(TextLines.nextLineStart(text, 1, 2)).isEqualTo(2);
+    }
+
+    @Test
+    void formats_each_line() {
+        LineBuilder lineBuilder = new LineBuilder(Theme.none(), false);
+        String text = "hello\r\n\r\nworld\n";
+        TextLines.formatTo(text, 0, text.length(), 2, ATTACHMENT, lineBuilder);
+        assertThat(lineBuilder.toString()).isEqualToNormalizingNewlines("""
+                  hello
+                 \s
+                  world
+                """);
+    }
+}
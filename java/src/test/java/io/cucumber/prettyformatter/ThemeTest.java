@@ -0,0 +1,66 @@
+package io.cucumber.prettyformatter;
+
+import org.junit.jupiter.api.Test;
+
+import static io.cucumber.messages.types.TestStepResultStatus.FAILED;
+import static io.cucumber.messages.types.TestStepResultStatus.PASSED;
+import static io.cucumber.messages.types.TestStepResultStatus.UNKNOWN;
+import static io.cucumber.prettyformatter.Ansi.Attributes.BOLD;
+import static io.cucumber.prettyformatter.Ansi.Attributes.BOLD_OFF;
+import static io.cucumber.prettyformatter.Ansi.Attributes.FOREGROUND_DEFAULT;
+import static io.cucumber.prettyformatter.Ansi.Attributes.FOREGROUND_RED;
+import static io.cucumber.prettyformatter.Theme.Element.LOCATION;
+import static io.cucumber.prettyformatter.Theme.Element.PROGRESS_ICON;
+import static io.cucumber.prettyformatter.Theme.Element.STEP;
+import static io.cucumber.prettyformatter.Theme.Element.STEP_KEYWORD;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThemeTest {
+
+    @Test
+    void builtInThemesAreShared() {
+        assertThat(Theme.cucumber()).isSameAs(Theme.cucumber());
+        assertThat(Theme.none()).isSameAs(Theme.none());
+        assertThat(Theme.plain()).isSameAs(Theme.plain());
+    }
+
+    @Test
+    void looksUpStylesByElementAndStatus() {
+        Theme theme = Theme.builder()
+                .style(STEP_KEYWORD, Ansi.with(BOLD), Ansi.with(BOLD_OFF))
+                .style(STEP, FAILED, Ansi.with(FOREGROUND_RED), Ansi.with(FOREGROUND_DEFAULT))
+                .build();
+
+        assertThat(theme.beginStyle(STEP_KEYWORD)).isEqualTo("\u001B[1m");
+        assertThat(theme.endStyle(STEP_KEYWORD)).isEqualTo("\u001B[22m");
+        assertThat(theme.beginStyle(STEP, FAILED)).isEqualTo("\u001B[31m");
+        assertThat(theme.endStyle(STEP, FAILED)).isEqualTo("\u001B[39m");
+        assertThat(theme.beginStyle(STEP, PASSED)).isEmpty();
+        assertThat(theme.beginStyle(LOCATION)).isEmpty();
+        assertThat(theme.style(STEP, FAILED, "text")).isEqualTo("\u001B[31mtext\u001B[39m");
+        assertThat(theme.style(LOCATION, "text")).isEqualTo("text");
+    }
+
+    @Test
+    void stylesProgressIconsOnce() {
+        Theme theme = Theme.builder()
+                .style(PROGRESS_ICON, FAILED, Ansi.with(FOREGROUND_RED), Ansi.with(FOREGROUND_DEFAULT))
+                .progressIcon(FAILED, "F")
+                .progressIcon(PASSED, ".")
+                .build();
+
+        assertThat(theme.styledProgressIcon(FAILED)).isEqualTo("\u001B[31mF\u001B[39m");
+        assertThat(theme.styledProgressIcon(FAILED)).isSameAs(theme.styledProgressIcon(FAILED));
+        assertThat(theme.styledProgressIcon(PASSED)).isEqualTo(".");
+        assertThat(theme.styledProgressIcon(UNKNOWN)).isEqualTo(" ");
+    }
+
+    @Test
+    void usesBlankIconsByDefault() {
+        Theme theme = Theme.builder().build();
+
+        assertThat(theme.hasStatusIcons()).isFalse();
+        assertThat(theme.statusIcon(UNKNOWN)).isEqualTo(" ");
+        assertThat(theme.progressIcon(UNKNOWN)).isEqualTo(" ");
+    }
+}
@@ -0,0 +1,52 @@
+package io.cucumber.prettyformatter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriFormatterTest {
+
+    @Test
+    void leaves_uris_without_rules_as_is() {
+        UriFormatter formatter = UriFormatter.builder().build();
+        assertThat(formatter.apply("file:///home/user/project/example.feature"))
+                .isEqualTo("file:///home/user/project/example.feature");
+    }
+
+    @Test
+    void replaces_the_longest_matching_prefix() {
+        UriFormatter formatter = UriFormatter.builder()
+                .replacePrefix("file:///home/user/project/", "")
+                .replacePrefix("file:///home/user/project/module-a/", "a:")
+                .replacePrefix("classpath:", "")
+                .build();
+        assertThat(formatter.apply("file:///home/user/project/example.feature"))
+                .isEqualTo("example.feature");
+        assertThat(formatter.apply("file:///home/user/project/module-a/example.feature"))
+                .isEqualTo("a:example.feature");
+        assertThat(formatter.apply("classpath:com/example/example.feature"))
+                .isEqualTo("com/example/example.feature");
+        assertThat(formatter.apply("file:///home/user/other/example.feature"))
+                .isEqualTo("file:///home/user/other/example.feature");
+    }
+
+    @Test
+    void replaces_a_prefix_with_the_last_replacement() {
+        UriFormatter formatter = UriFormatter.builder()
+                .replacePrefix("classpath:", "cp:")
+                .replacePrefix("classpath:", "")
+                .build();
+        assertThat(formatter.apply("classpath:example.feature"))
+                .isEqualTo("example.feature");
+    }
+
+    @Test
+    void rewrites_each_uri_once() {
+        UriFormatter formatter = UriFormatter.builder()
+                .replacePrefix("classpath:", "")
+                .build();
+        String formatted = formatter.apply("classpath:example.feature");
+        assertThat(formatter.apply(new String("classpath:example.feature")))
+                .isSameAs(formatted);
+    }
+}
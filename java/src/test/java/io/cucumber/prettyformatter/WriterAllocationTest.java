@@ -0,0 +1,135 @@
+package io.cucumber.prettyformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.cucumber.prettyformatter.Theme.cucumber;
+import static io.cucumber.prettyformatter.Theme.none;
+import static io.cucumber.prettyformatter.Theme.plain;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the CCK samples through each writer and compares the bytes
+ * allocated per message to the budgets in
+ * {@code allocation-budgets.properties}.
+ */
+class WriterAllocationTest {
+
+    private static final int WARM_UP_ITERATIONS = 3;
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    private static final Map<String, Theme> themes = Map.of(
+            "cucumber", cucumber(),
+            "plain", plain(),
+            "none", none());
+
+    static List<String> writersAndThemes() {
+        List<String> writersAndThemes = new ArrayList<>();
+        for (String writer : List.of("pretty", "summary", "progress")) {
+            for (String theme : List.of("cucumber", "plain", "none")) {
+                writersAndThemes.add(writer + "." + theme);
+            }
+        }
+        return writersAndThemes;
+    }
+
+    @ParameterizedTest
+    @MethodSource("writersAndThemes")
+    void allocatesWithinBudgetPerMessage(String writerAndTheme) throws IOException {
+        long budget = Long.parseLong(requireNonNull(readBudgets().getProperty(writerAndTheme), writerAndTheme));
+        String writer = writerAndTheme.substring(0, writerAndTheme.indexOf('.'));
+        Theme theme = themes.get(writerAndTheme.substring(writerAndTheme.indexOf('.') + 1));
+        List<List<Envelope>> samples = readSamples();
+        long messages = samples.stream().mapToLong(List::size).sum();
+        AllocationMeter meter = AllocationMeter.create();
+
+        // Warm up, gives the JIT a chance to eliminate short-lived objects
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            replay(writer, theme, samples);
+        }
+        long before = meter.allocatedBytes();
+        replay(writer, theme, samples);
+        long allocatedPerMessage = (meter.allocatedBytes() - before) / messages;
+
+        assertThat(allocatedPerMessage)
+                .withFailMessage("%s allocated %d bytes per message, the budget is %d", writerAndTheme, allocatedPerMessage, budget)
+                .isLessThanOrEqualTo(budget);
+    }
+
+    private static void replay(String writer, Theme theme, List<List<Envelope>> samples) throws IOException {
+        for (List<Envelope> sample : samples) {
+            OutputStream out = OutputStream.nullOutputStream();
+            switch (writer) {
+                case "pretty" -> {
+                    try (MessagesToPrettyWriter prettyWriter = MessagesToPrettyWriter.builder().theme(theme).build(out)) {
+                        for (Envelope envelope : sample) {
+                            prettyWriter.write(envelope);
+                        }
+                    }
+                }
+                case "summary" -> {
+                    try (MessagesToSummaryWriter summaryWriter = MessagesToSummaryWriter.builder().theme(theme).build(out)) {
+                        for (Envelope envelope : sample) {
+                            summaryWriter.write(envelope);
+                        }
+                    }
+                }
+                case "progress" -> {
+                    try (MessagesToProgressWriter progressWriter = MessagesToProgressWriter.builder().theme(theme).build(out)) {
+                        for (Envelope envelope : sample) {
+                            progressWriter.write(envelope);
+                        }
+                    }
+                }
+                default -> throw new IllegalArgumentException(writer);
+            }
+        }
+    }
+
+    private static Properties readBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream in = requireNonNull(WriterAllocationTest.class.getResourceAsStream("allocation-budgets.properties"))) {
+            budgets.load(in);
+        }
+        return budgets;
+    }
+
+    private static List<List<Envelope>> readSamples() throws IOException {
+        List<Path> sources;
+        try (Stream<Path> paths = Files.list(Paths.get("..", "testdata", "src"))) {
+            sources = paths
+                    .filter(path -> path.getFileName().toString().endsWith(".ndjson"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<List<Envelope>> samples = new ArrayList<>();
+        for (Path source : sources) {
+            try (var in = Files.newInputStream(source)) {
+                try (var reader = new NdjsonToMessageReader(in, deserializer)) {
+                    samples.add(reader.lines().toList());
+                }
+            }
+        }
+        return samples;
+    }
+}
@@ -30,7 +30,9 @@ function formatBase64Attachment(
   stream: NodeJS.WritableStream
 ): string {
   const builder = new TextBuilder(stream)
-  const bytes = (data.length / 4) * 3
+  // Every 4 characters encode 3 bytes, padding encodes nothing
+  const padding = data.length - data.replace(/=+$/, '').length
+  const bytes = Math.floor(((data.length - padding) * 3) / 4)
   if (fileName) {
     builder.append(`Embedding ${fileName} [${mediaType} ${bytes} bytes]`)
   } else {